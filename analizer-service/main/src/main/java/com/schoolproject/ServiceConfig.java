@@ -0,0 +1,53 @@
+package com.schoolproject;
+
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * Optional tuning settings for the analyzer service.
+ * Values are read from application.properties when present and can be
+ * overridden per run with -Dkey=value; every key has a built-in default.
+ */
+public final class ServiceConfig {
+
+    private static final Properties PROPS = new Properties();
+
+    static {
+        try (InputStream in = ServiceConfig.class.getResourceAsStream("/application.properties")) {
+            if (in != null) PROPS.load(in);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to load service configuration: " + e.getMessage(), e);
+        }
+    }
+
+    private ServiceConfig() {}
+
+    public static String get(String key, String defaultValue) {
+        String v = System.getProperty(key);
+        if (v == null) v = PROPS.getProperty(key);
+        return v == null || v.isBlank() ? defaultValue : v.trim();
+    }
+
+    public static int getInt(String key, int defaultValue) {
+        String v = get(key, null);
+        try {
+            return v == null ? defaultValue : Integer.parseInt(v);
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("Invalid integer for '" + key + "': " + v, e);
+        }
+    }
+
+    public static long getLong(String key, long defaultValue) {
+        String v = get(key, null);
+        try {
+            return v == null ? defaultValue : Long.parseLong(v);
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("Invalid number for '" + key + "': " + v, e);
+        }
+    }
+
+    public static boolean getBoolean(String key, boolean defaultValue) {
+        String v = get(key, null);
+        return v == null ? defaultValue : Boolean.parseBoolean(v);
+    }
+}
@@ -0,0 +1,47 @@
+package com.schoolproject.analyzer;
+
+import com.schoolproject.analyzer.MidiDifficultyAnalyzer.AnalysisResult;
+import com.schoolproject.analyzer.MidiDifficultyAnalyzer.PhaseTimings;
+import com.schoolproject.smf.MeterMap;
+import com.schoolproject.smf.TempoMap;
+
+/**
+ * One analysis over the note stream. All selected passes are driven by a
+ * single {@link AnalysisSession}, so they share one traversal of the decoded
+ * events and adding a pass never adds a parse or a second loop.
+ *
+ * Register new passes with {@link AnalysisPasses#register}; they become
+ * selectable with {@code ?passes=}. Instances are per analysis and are only
+ * called from one thread.
+ */
+public interface AnalysisPass {
+
+    /** A note starts (velocity &gt; 0). */
+    int NOTE_ON = 1;
+    /** A note ends (including note-on with velocity 0). */
+    int NOTE_OFF = 2;
+    /** A note already sounding when a windowed analysis starts; not an onset. */
+    int HELD = 3;
+
+    /**
+     * Shared, read-mostly state handed to every pass before the first event;
+     * {@code startTick} is where the analyzed range begins (0, or a window's first bar).
+     */
+    record Context(ChordAnalysisEngine engine, TempoMap tempo, MeterMap meter,
+                   boolean keepTimeline, PhaseTimings timings, long startTick) {
+    }
+
+    /** Name used in {@code ?passes=}. */
+    String name();
+
+    default void start(Context ctx) {}
+
+    /** Called for every note event in tick order; must not allocate per call. */
+    void onEvent(long tick, int kind, int note, int velocity, int track);
+
+    /** Completes any buffered work so far (e.g. an open onset cluster). */
+    default void flush() {}
+
+    /** Writes this pass's output into the result. */
+    void finish(AnalysisResult result);
+}
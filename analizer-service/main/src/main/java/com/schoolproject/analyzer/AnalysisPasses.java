@@ -0,0 +1,69 @@
+package com.schoolproject.analyzer;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Registry of named {@link AnalysisPass} factories. The built-in passes are
+ * polyphony, chords, rhythm, tempo and key; all registered passes run by
+ * default. Passes always run in registration order, whatever order they are
+ * requested in, so a pass can rely on the results of those registered
+ * before it (key re-resolves the chord timeline).
+ */
+public final class AnalysisPasses {
+
+    private static final Map<String, Supplier<AnalysisPass>> FACTORIES = new LinkedHashMap<>();
+
+    static {
+        register("polyphony", PolyphonyPass::new);
+        register("chords", ChordPass::new);
+        register("rhythm", RhythmPass::new);
+        register("tempo", TempoPass::new);
+        register("key", KeyPass::new);
+    }
+
+    private AnalysisPasses() {}
+
+    public static synchronized void register(String name, Supplier<AnalysisPass> factory) {
+        FACTORIES.put(name, factory);
+    }
+
+    public static synchronized List<String> names() {
+        return List.copyOf(FACTORIES.keySet());
+    }
+
+    /**
+     * Parses a {@code ?passes=} value ("chords,rhythm"); null or blank selects
+     * every registered pass.
+     * @throws IllegalArgumentException for an unknown pass name
+     */
+    public static synchronized List<String> parse(String csv) {
+        if (csv == null || csv.isBlank()) return names();
+        List<String> requested = new ArrayList<>();
+        for (String raw : csv.split(",")) {
+            String name = raw.trim();
+            if (name.isEmpty()) continue;
+            if (!FACTORIES.containsKey(name)) {
+                throw new IllegalArgumentException("Unknown analysis pass '" + name + "'; available: " + FACTORIES.keySet());
+            }
+            requested.add(name);
+        }
+        List<String> out = new ArrayList<>();
+        for (String name : FACTORIES.keySet()) if (requested.contains(name)) out.add(name);
+        return out;
+    }
+
+    /** New pass instances for one analysis; null selects every registered pass. */
+    public static synchronized List<AnalysisPass> create(List<String> names) {
+        List<AnalysisPass> passes = new ArrayList<>();
+        for (String name : names == null ? FACTORIES.keySet() : names) {
+            Supplier<AnalysisPass> factory = FACTORIES.get(name);
+            if (factory == null) throw new IllegalArgumentException("Unknown analysis pass '" + name + "'");
+            passes.add(factory.get());
+        }
+        return passes;
+    }
+}
@@ -0,0 +1,178 @@
+package com.schoolproject.analyzer;
+
+import java.util.List;
+
+import com.schoolproject.analyzer.MidiDifficultyAnalyzer.AnalysisResult;
+import com.schoolproject.smf.MeterMap;
+import com.schoolproject.smf.TempoMap;
+
+/**
+ * Push-style, event-at-a-time difficulty analysis.
+ *
+ * Callers feed note and tempo events in tick order and may take a
+ * {@link #snapshot()} at any point; {@link #finish()} produces the same
+ * {@link AnalysisResult} the batch analyzer returns.
+ *
+ * The session is the single traversal that drives every selected
+ * {@link AnalysisPass}: each event is normalized once (velocity-0 note-ons
+ * become note-offs) and handed to the passes in order. The total difficulty
+ * combines whichever of the built-in chord, rhythm and polyphony passes ran.
+ * Not thread-safe.
+ */
+public final class AnalysisSession {
+
+    private final TempoMap tempo;
+    private final MeterMap meter;
+
+    private final AnalysisResult result = new AnalysisResult();
+    private final AnalysisPass[] passes;
+
+    // built-in passes, kept typed so snapshot() stays constant time; null when not selected
+    private final PolyphonyPass polyphony;
+    private final ChordPass chords;
+    private final RhythmPass rhythm;
+
+    private long lastTick = -1;
+
+    /**
+     * Session that learns tempo and meter from {@link #onTempo} / {@link #onMeter}
+     * (120 BPM, 4/4 until told otherwise), running every registered pass.
+     *
+     * @param keepTimeline false for long-running sessions (live) that only need
+     *                     scores; chord changes are then counted, not stored
+     */
+    public AnalysisSession(ChordAnalysisEngine engine, int ppq, boolean keepTimeline) {
+        this(engine, new TempoMap(ppq), new MeterMap(ppq), keepTimeline);
+    }
+
+    /** Session over tempo and meter maps collected up front (batch and windowed analysis). */
+    public AnalysisSession(ChordAnalysisEngine engine, TempoMap tempo, MeterMap meter, boolean keepTimeline) {
+        this(engine, tempo, meter, keepTimeline, AnalysisPasses.create(null));
+    }
+
+    /** Session running only the given passes, in order. */
+    public AnalysisSession(ChordAnalysisEngine engine, TempoMap tempo, MeterMap meter, boolean keepTimeline,
+                           List<AnalysisPass> selected) {
+        this(engine, tempo, meter, keepTimeline, selected, 0);
+    }
+
+    /** Session over the range starting at {@code startTick} (windowed analysis), running the given passes. */
+    public AnalysisSession(ChordAnalysisEngine engine, TempoMap tempo, MeterMap meter, boolean keepTimeline,
+                           List<AnalysisPass> selected, long startTick) {
+        this.tempo = tempo;
+        this.meter = meter;
+        this.passes = selected.toArray(new AnalysisPass[0]);
+
+        PolyphonyPass p = null;
+        ChordPass c = null;
+        RhythmPass r = null;
+        AnalysisPass.Context ctx = new AnalysisPass.Context(engine, tempo, meter, keepTimeline, result.timings, startTick);
+        for (AnalysisPass pass : passes) {
+            if (pass instanceof PolyphonyPass pp) p = pp;
+            else if (pass instanceof ChordPass cp) c = cp;
+            else if (pass instanceof RhythmPass rp) r = rp;
+            pass.start(ctx);
+        }
+        polyphony = p;
+        chords = c;
+        rhythm = r;
+    }
+
+    // -------------------------------------------------------
+    // EVENTS
+    // -------------------------------------------------------
+    public void onTempo(long tick, long usPerQuarterNote) {
+        tempo.add(tick, usPerQuarterNote);
+    }
+
+    /** Overrides the onset clustering window for this session; 0 clusters only same-tick onsets. */
+    public void setOnsetWindow(double seconds, long ticks) {
+        if (chords != null) chords.setOnsetWindow(seconds, ticks);
+    }
+
+    /** Time signature change; {@code denominator} is the note value (4, 8, ...). */
+    public void onMeter(long tick, int numerator, int denominator) {
+        meter.add(tick, numerator, denominator);
+    }
+
+    public void onNoteOn(long tick, int note, int velocity) {
+        onNoteOn(tick, note, velocity, 0);
+    }
+
+    public void onNoteOn(long tick, int note, int velocity, int track) {
+        lastTick = tick;
+        int kind = velocity == 0 ? AnalysisPass.NOTE_OFF : AnalysisPass.NOTE_ON;
+        for (AnalysisPass pass : passes) pass.onEvent(tick, kind, note, velocity, track);
+    }
+
+    public void onNoteOff(long tick, int note) {
+        onNoteOff(tick, note, 0);
+    }
+
+    public void onNoteOff(long tick, int note, int track) {
+        lastTick = tick;
+        for (AnalysisPass pass : passes) pass.onEvent(tick, AnalysisPass.NOTE_OFF, note, 0, track);
+    }
+
+    /**
+     * Marks a note as already sounding when analysis starts mid-piece
+     * (windowed analysis); it is not counted as an onset.
+     */
+    public void hold(int note) {
+        for (AnalysisPass pass : passes) pass.onEvent(lastTick, AnalysisPass.HELD, note, 0, 0);
+    }
+
+    /**
+     * Time in seconds at which the open onset cluster's window closes, or -1
+     * if none is open. A caller that gets no further onsets (live input) can
+     * {@link #flush()} once this has passed.
+     */
+    public double openClusterEndSeconds() {
+        return chords == null ? -1 : chords.clusterEndSeconds();
+    }
+
+    /** Completes buffered work in every pass, e.g. the open onset cluster's chord detection. */
+    public void flush() {
+        for (AnalysisPass pass : passes) pass.flush();
+    }
+
+    // -------------------------------------------------------
+    // RESULTS
+    // -------------------------------------------------------
+    /**
+     * Scores so far; constant time, independent of how many events were fed.
+     * An onset cluster that has not been flushed is not reflected yet.
+     */
+    public record Snapshot(long tick, int noteCount, int activeNotes, int maxPolyphony, int chordId,
+                           int chordDifficulty, int rhythmDifficulty, int totalDifficulty,
+                           int recentDifficulty, int timelineEntries) {
+    }
+
+    public Snapshot snapshot() {
+        int noteCount = polyphony == null ? 0 : polyphony.noteCount();
+        int maxPoly = polyphony == null ? 0 : polyphony.maxPolyphony();
+        int chord = chords == null ? 0 : chords.difficulty();
+        int rhythmScore = rhythm == null ? 0 : rhythm.difficulty();
+        return new Snapshot(lastTick, noteCount, activeNotes(), maxPoly,
+                chords == null ? ChordId.NONE : chords.chordId(),
+                chord, rhythmScore, totalDifficulty(chord, rhythmScore, maxPoly),
+                chords == null ? 0 : chords.recentDifficulty(),
+                chords == null ? 0 : chords.timelineEntries());
+    }
+
+    public int activeNotes() {
+        return polyphony == null ? 0 : polyphony.active();
+    }
+
+    /** Completes the scores; the session should not be fed afterwards. */
+    public AnalysisResult finish() {
+        flush();
+        for (AnalysisPass pass : passes) pass.finish(result);
+        result.totalDifficulty = totalDifficulty(result.chordDifficulty, result.rhythmDifficulty, result.maxPolyphony);
+        return result;
+    }
+
+    private static int totalDifficulty(int chord, int rhythm, int maxPolyphony) {
+        return chord + rhythm + Math.min(10, maxPolyphony * 2);
+    }
+}
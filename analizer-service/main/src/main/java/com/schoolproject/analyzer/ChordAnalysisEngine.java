@@ -1,9 +1,11 @@
 package com.schoolproject.analyzer;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class ChordAnalysisEngine {
 
@@ -57,108 +59,161 @@ public class ChordAnalysisEngine {
 
     private int[] rootOrder = ROOT_PRIORITIES.get("C"); // default root ordering
 
+    // one engine per key, so a detected key can be applied without touching shared engines
+    private static final Map<String, ChordAnalysisEngine> KEYED = new ConcurrentHashMap<>();
+
+    /**
+     * Shared engine with {@link #setKey} applied; never call setKey on it.
+     * Unknown keys fall back to C.
+     */
+    public static ChordAnalysisEngine forKey(String keyName) {
+        return KEYED.computeIfAbsent(ROOT_PRIORITIES.containsKey(keyName) ? keyName : "C", k -> {
+            ChordAnalysisEngine engine = new ChordAnalysisEngine();
+            engine.setKey(k);
+            return engine;
+        });
+    }
+
     public void setKey(String keyName) {
         if (ROOT_PRIORITIES.containsKey(keyName)) {
             rootOrder = ROOT_PRIORITIES.get(keyName);
+            Arrays.fill(idCache, 0); // cached ids depend on root order
         }
     }
 
     // ======== CHORD TEMPLATES (STANDARDIZED) ========
     private static class Template {
         final String label;
-        final int[] intervals; // 0 always the root
+        final int difficulty; // scoring weight for this quality, root-independent
+        final int mask;       // pitch classes above a C root, bit i = pc i
 
-        Template(String label, int... intervals) {
+        Template(String label, int difficulty, int... intervals) {
             this.label = label;
-            this.intervals = intervals;
+            this.difficulty = difficulty;
+            int m = 0;
+            for (int interval : intervals) m |= 1 << (interval % 12); // 0 always the root
+            this.mask = m;
         }
     }
 
     private static final List<Template> TEMPLATES = List.of(
             // triads
-            new Template("maj", 0,4,7),
-            new Template("min", 0,3,7),
-            new Template("sus2",0,2,7),
-            new Template("sus4",0,5,7),
-            new Template("dim",0,3,6),
-            new Template("aug",0,4,8),
+            new Template("maj", 1, 0,4,7),
+            new Template("min", 1, 0,3,7),
+            new Template("sus2",2, 0,2,7),
+            new Template("sus4",2, 0,5,7),
+            new Template("dim", 5, 0,3,6),
+            new Template("aug", 5, 0,4,8),
 
             // 7th chords
-            new Template("7",   0,4,7,10),
-            new Template("maj7",0,4,7,11),
-            new Template("m7",  0,3,7,10),
-            new Template("mMaj7",0,3,7,11),
-            new Template("7sus4",0,5,7,10),
+            new Template("7",    3, 0,4,7,10),
+            new Template("maj7", 3, 0,4,7,11),
+            new Template("m7",   3, 0,3,7,10),
+            new Template("mMaj7",3, 0,3,7,11),
+            new Template("7sus4",2, 0,5,7,10),
 
             // 6th
-            new Template("6",0,4,7,9),
-            new Template("m6",0,3,7,9),
+            new Template("6", 1, 0,4,7,9),
+            new Template("m6",1, 0,3,7,9),
 
             // 9th
-            new Template("9",0,4,7,10,14),
-            new Template("m9",0,3,7,10,14),
-            new Template("maj9",0,4,7,11,14),
-            new Template("7b9",0,4,7,10,13),
-            new Template("7#9",0,4,7,10,15),
+            new Template("9",   4, 0,4,7,10,14),
+            new Template("m9",  4, 0,3,7,10,14),
+            new Template("maj9",4, 0,4,7,11,14),
+            new Template("7b9", 4, 0,4,7,10,13),
+            new Template("7#9", 4, 0,4,7,10,15),
 
             // 11th
-            new Template("11",0,4,7,10,14,17),
-            new Template("m11",0,3,7,10,14,17),
+            new Template("11", 5, 0,4,7,10,14,17),
+            new Template("m11",5, 0,3,7,10,14,17),
 
             // 13th
-            new Template("13",0,4,7,10,14,17,21),
-            new Template("m13",0,3,7,10,14,17,21),
-            new Template("maj13",0,4,7,11,14,17,21)
+            new Template("13",   6, 0,4,7,10,14,17,21),
+            new Template("m13",  6, 0,3,7,10,14,17,21),
+            new Template("maj13",6, 0,4,7,11,14,17,21)
     );
 
+    // template masks rotated to every root: [root][template]
+    private static final int[][] ROOTED_MASKS = new int[12][TEMPLATES.size()];
+    static {
+        for (int root = 0; root < 12; root++) {
+            for (int t = 0; t < TEMPLATES.size(); t++) {
+                int m = TEMPLATES.get(t).mask;
+                ROOTED_MASKS[root][t] = ((m << root) | (m >>> (12 - root))) & 0xFFF;
+            }
+        }
+    }
+
+    static int templateCount() {
+        return TEMPLATES.size();
+    }
+
+    static String templateLabel(int quality) {
+        return TEMPLATES.get(quality).label;
+    }
+
+    static int templateDifficulty(int quality) {
+        return TEMPLATES.get(quality).difficulty;
+    }
+
     // ======== MAIN DETECTION ========
-    public ChordResult detect(Set<Integer> notes) {
-        if (notes == null || notes.isEmpty()) return null;
 
-        // Build pitch class boolean array
-        boolean[] pc = new boolean[12];
-        for (int n : notes) pc[n % 12] = true;
+    // pitch-class set -> ChordId + 1 for the current root order (0 = not computed yet)
+    private final int[] idCache = new int[1 << 12];
+
+    /**
+     * Detects the chord for a 12-bit pitch-class mask (bit i set = pitch class
+     * i sounding). Every possible mask resolves to the same id for a given
+     * key, so results are cached and repeat lookups are one array read.
+     * Safe to share between threads as long as {@link #setKey} is not
+     * called: racing writers store the same value.
+     */
+    public int detectId(int pcMask) {
+        if (pcMask == 0) return ChordId.NONE;
+        int cached = idCache[pcMask];
+        if (cached != 0) return cached - 1;
+
+        int id = resolve(pcMask);
+        idCache[pcMask] = id + 1;
+        return id;
+    }
 
-        int pressedCount = count(pc);
-        if (pressedCount == 1) return singleNote(pc);
+    private int resolve(int pcMask) {
+        int pressedCount = Integer.bitCount(pcMask);
+        if (pressedCount == 1) {
+            return ChordId.of(Integer.numberOfTrailingZeros(pcMask), ChordId.SINGLE_NOTE);
+        }
 
         // Try roots in your priority order
         for (int root : rootOrder) {
-            if (!pc[root]) continue; // root needs to be one of the notes
+            if ((pcMask & (1 << root)) == 0) continue; // root needs to be one of the notes
 
-            for (Template temp : TEMPLATES) {
-                if (matches(pc, root, temp.intervals)) {
-                    return new ChordResult(noteName(root) + temp.label, root, notes);
-                }
+            int[] masks = ROOTED_MASKS[root];
+            for (int t = 0; t < masks.length; t++) {
+                if ((pcMask & masks[t]) == masks[t]) return ChordId.of(root, t);
             }
         }
 
         // fallback
-        if (pressedCount == 2) return new ChordResult("interval", -1, notes);
-        if (pressedCount >= 3) return new ChordResult("unknown", -1, notes);
-        return null;
+        return pressedCount == 2 ? ChordId.INTERVAL : ChordId.UNKNOWN;
     }
 
-    private boolean matches(boolean[] pc, int root, int[] intervals) {
-        for (int interval : intervals) {
-            int idx = (root + interval) % 12;
-            if (!pc[idx]) return false;
-        }
-        return true;
-    }
+    /** Set-based entry point kept for callers that hold MIDI note numbers. */
+    public ChordResult detect(Set<Integer> notes) {
+        if (notes == null || notes.isEmpty()) return null;
 
-    private ChordResult singleNote(boolean[] pc) {
-        for (int i = 0; i < 12; i++) if (pc[i]) return new ChordResult(noteName(i), i, Set.of(i));
-        return null;
-    }
+        int mask = 0;
+        for (int n : notes) mask |= 1 << (n % 12);
 
-    private int count(boolean[] pc) {
-        int c = 0;
-        for (boolean b : pc) if (b) c++;
-        return c;
+        int id = detectId(mask);
+        if (id == ChordId.NONE) return null;
+        if (Integer.bitCount(mask) == 1) {
+            return new ChordResult(ChordId.name(id), ChordId.root(id), Set.of(ChordId.root(id)));
+        }
+        return new ChordResult(ChordId.name(id), ChordId.root(id), notes);
     }
 
-    private String noteName(int pc) {
+    static String noteName(int pc) {
         return switch(pc) {
             case 0 -> "C";
             case 1 -> "C#";
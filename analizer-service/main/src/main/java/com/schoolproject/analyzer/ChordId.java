@@ -0,0 +1,65 @@
+package com.schoolproject.analyzer;
+
+/**
+ * Interned chord identity: root pitch class × quality packed into one int.
+ *
+ * Detection, difficulty scoring and the timeline all pass these ints around;
+ * names exist only in a precomputed table and are looked up at output time.
+ * Ids are stable for a given template list, so clients may cache
+ * {@code chordNames} across responses.
+ */
+public final class ChordId {
+
+    private ChordId() {}
+
+    /** Template qualities plus one slot for "single pitch class". */
+    public static final int QUALITIES = ChordAnalysisEngine.templateCount() + 1;
+    public static final int SINGLE_NOTE = QUALITIES - 1;
+
+    public static final int INTERVAL = 12 * QUALITIES; // two pitch classes, no template
+    public static final int UNKNOWN = INTERVAL + 1;    // three or more, no template
+    public static final int COUNT = UNKNOWN + 1;
+    public static final int NONE = -1;                  // nothing sounding
+
+    private static final String[] NAMES = new String[COUNT];
+    private static final int[] DIFFICULTY = new int[COUNT];
+
+    static {
+        for (int root = 0; root < 12; root++) {
+            for (int q = 0; q < QUALITIES; q++) {
+                int id = of(root, q);
+                String rootName = ChordAnalysisEngine.noteName(root);
+                NAMES[id] = q == SINGLE_NOTE ? rootName : rootName + ChordAnalysisEngine.templateLabel(q);
+                DIFFICULTY[id] = q == SINGLE_NOTE ? 1 : ChordAnalysisEngine.templateDifficulty(q);
+            }
+        }
+        NAMES[INTERVAL] = "interval";
+        NAMES[UNKNOWN] = "unknown";
+    }
+
+    public static int of(int root, int quality) {
+        return root * QUALITIES + quality;
+    }
+
+    /** True for ids that name a real chord (or single pitch class) rather than a fallback. */
+    public static boolean isChord(int id) {
+        return id >= 0 && id < INTERVAL;
+    }
+
+    public static int root(int id) {
+        return isChord(id) ? id / QUALITIES : -1;
+    }
+
+    public static int quality(int id) {
+        return isChord(id) ? id % QUALITIES : -1;
+    }
+
+    public static String name(int id) {
+        return id >= 0 && id < COUNT ? NAMES[id] : null;
+    }
+
+    /** Difficulty weight by quality; fallbacks score 0. */
+    public static int difficulty(int id) {
+        return id >= 0 && id < COUNT ? DIFFICULTY[id] : 0;
+    }
+}
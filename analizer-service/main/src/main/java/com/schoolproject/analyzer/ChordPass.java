@@ -0,0 +1,221 @@
+package com.schoolproject.analyzer;
+
+import com.schoolproject.ServiceConfig;
+import com.schoolproject.analyzer.MidiDifficultyAnalyzer.AnalysisResult;
+import com.schoolproject.analyzer.MidiDifficultyAnalyzer.PhaseTimings;
+import com.schoolproject.jfr.ChordDetectEvent;
+import com.schoolproject.smf.MeterMap;
+import com.schoolproject.smf.TempoMap;
+
+import jdk.jfr.EventType;
+
+/**
+ * Chord detection, chord timeline and chord difficulty.
+ *
+ * Near-simultaneous onsets (a rolled or slightly spread chord) are grouped
+ * into one cluster and the chord is detected once per cluster, when the
+ * next onset falls outside the window, a note is released, or the session
+ * is flushed. The window is {@code analyzer.onset-window-ms} (default 30)
+ * or, if set above 0, {@code analyzer.onset-window-ticks}.
+ *
+ * Held notes live in a 128-bit set plus per-pitch-class counts, so events
+ * cost no allocation beyond amortized timeline growth.
+ */
+final class ChordPass implements AnalysisPass {
+
+    // chord changes closer than this are not added to the timeline
+    private static final double MIN_CHORD_GAP_SECONDS = 0.03;
+
+    private static final double DEFAULT_WINDOW_SECONDS =
+            ServiceConfig.getInt("analyzer.onset-window-ms", 30) / 1000.0;
+    private static final long DEFAULT_WINDOW_TICKS = ServiceConfig.getLong("analyzer.onset-window-ticks", 0);
+
+    private static final EventType CHORD_DETECT_TYPE = EventType.getEventType(ChordDetectEvent.class);
+
+    private ChordAnalysisEngine engine;
+    private TempoMap tempo;
+    private MeterMap meter;
+    private boolean keepTimeline;
+    private PhaseTimings timings;
+    private final ChordTimeline timeline = new ChordTimeline();
+
+    // ---- held notes ----
+    private long heldLo, heldHi;          // note bitset 0-63 / 64-127
+    private final byte[] pcCount = new byte[12];
+    private int pcMask;
+    private int activeCount;
+
+    // ---- scoring ----
+    private int chordId = ChordId.NONE;   // last timeline chord
+    private long chordTick = -1;
+    private double chordSeconds = -1;
+    private int timelineEntries;
+    private int difficulty;
+    private int recentDifficulty;         // EMA of chord difficulty, × 100
+
+    // ---- onset cluster awaiting detection ----
+    private double windowSeconds = DEFAULT_WINDOW_SECONDS;
+    private long windowTicks = DEFAULT_WINDOW_TICKS;
+    private long clusterTick = -1;        // first onset of the open cluster, -1 = none
+    private double clusterSeconds;
+
+    @Override
+    public String name() {
+        return "chords";
+    }
+
+    @Override
+    public void start(Context ctx) {
+        engine = ctx.engine();
+        tempo = ctx.tempo();
+        meter = ctx.meter();
+        keepTimeline = ctx.keepTimeline();
+        timings = ctx.timings();
+    }
+
+    /** Overrides the onset clustering window; 0 clusters only same-tick onsets. */
+    void setOnsetWindow(double seconds, long ticks) {
+        windowSeconds = seconds;
+        windowTicks = ticks;
+    }
+
+    @Override
+    public void onEvent(long tick, int kind, int note, int velocity, int track) {
+        if (kind == NOTE_OFF) {
+            if (!isHeld(note)) return;
+            flush(); // the cluster's chord is what sounded before this release
+            setHeld(note, false);
+            activeCount--;
+            if (--pcCount[note % 12] == 0) pcMask &= ~(1 << (note % 12));
+            return;
+        }
+
+        if (kind == HELD) {
+            hold(note);
+            return;
+        }
+
+        if (clusterTick >= 0) {
+            boolean inWindow = tick >= clusterTick && (windowTicks > 0
+                    ? tick - clusterTick <= windowTicks
+                    : tempo.seconds(tick) - clusterSeconds <= windowSeconds);
+            if (!inWindow) flush(); // the open cluster's chord, without this onset
+        }
+        hold(note);
+        if (clusterTick < 0) {
+            clusterTick = tick;
+            clusterSeconds = windowTicks > 0 ? 0 : tempo.seconds(tick);
+        }
+    }
+
+    private void hold(int note) {
+        if (isHeld(note)) return;
+        setHeld(note, true);
+        activeCount++;
+        if (pcCount[note % 12]++ == 0) pcMask |= 1 << (note % 12);
+    }
+
+    /** Time in seconds at which the open onset cluster's window closes; -1 if no cluster is open. */
+    double clusterEndSeconds() {
+        if (clusterTick < 0) return -1;
+        return windowTicks > 0 ? tempo.seconds(clusterTick + windowTicks) : clusterSeconds + windowSeconds;
+    }
+
+    /** Runs chord detection for the open onset cluster, if any. */
+    @Override
+    public void flush() {
+        long tick = clusterTick;
+        if (tick < 0) return;
+        clusterTick = -1;
+
+        if (activeCount < 2) return;
+
+        // only every SAMPLE_EVERY-th detection pays for a JFR event, and only while recording
+        ChordDetectEvent sampled = timings.detections % ChordDetectEvent.SAMPLE_EVERY == 0
+                && CHORD_DETECT_TYPE.isEnabled() ? new ChordDetectEvent() : null;
+        if (sampled != null) sampled.begin();
+
+        long d0 = System.nanoTime();
+        int id = engine.detectId(pcMask);
+        long d1 = System.nanoTime();
+        timings.detectNanos += d1 - d0;
+        timings.detections++;
+
+        if (sampled != null && sampled.shouldCommit()) {
+            sampled.activeNotes = activeCount;
+            sampled.tick = tick;
+            sampled.chord = ChordId.name(id);
+            sampled.commit();
+        }
+
+        if (id != ChordId.NONE) {
+            onChord(id, tick);
+            timings.timelineNanos += System.nanoTime() - d1;
+        }
+    }
+
+    private void onChord(int id, long tick) {
+        if (!ChordId.isChord(id))
+            return;
+
+        double seconds = tempo.seconds(tick);
+
+        if (tick == chordTick && id == chordId)
+            return;
+
+        if (chordSeconds >= 0 && (seconds - chordSeconds) < MIN_CHORD_GAP_SECONDS)
+            return;
+
+        int d = ChordId.difficulty(id);
+        if (keepTimeline) {
+            timeline.add(tick, round2(seconds), meter.bar(tick), round2(meter.beat(tick)), id, pcMask);
+        }
+        timelineEntries++;
+        difficulty += d;
+        recentDifficulty += (d * 100 - recentDifficulty) >> 3;
+
+        chordId = id;
+        chordTick = tick;
+        chordSeconds = seconds;
+    }
+
+    int chordId() {
+        return chordId;
+    }
+
+    int difficulty() {
+        return difficulty;
+    }
+
+    int recentDifficulty() {
+        return recentDifficulty;
+    }
+
+    int timelineEntries() {
+        return timelineEntries;
+    }
+
+    @Override
+    public void finish(AnalysisResult result) {
+        flush();
+        result.chordDifficulty = difficulty;
+        result.chordTimeline = timeline;
+    }
+
+    // -------------------------------------------------------
+    // HELPERS
+    // -------------------------------------------------------
+    private boolean isHeld(int note) {
+        return note < 64 ? (heldLo & (1L << note)) != 0 : (heldHi & (1L << (note - 64))) != 0;
+    }
+
+    private void setHeld(int note, boolean held) {
+        long bit = 1L << (note & 63);
+        if (note < 64) heldLo = held ? heldLo | bit : heldLo & ~bit;
+        else heldHi = held ? heldHi | bit : heldHi & ~bit;
+    }
+
+    private static double round2(double v) {
+        return Math.round(v * 100.0) / 100.0;
+    }
+}
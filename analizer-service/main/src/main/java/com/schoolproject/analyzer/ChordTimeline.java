@@ -0,0 +1,159 @@
+package com.schoolproject.analyzer;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Locale;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+/**
+ * Chord changes over time, stored column-wise in parallel primitive arrays
+ * (tick, seconds, bar, beat, {@link ChordId}) instead of one formatted string
+ * per entry. Serialized to JSON in the same columnar shape, with a name
+ * lookup for just the ids that occur:
+ *
+ * <pre>
+ * { "count": 2, "tick": [0, 480], "seconds": [0.0, 0.5], "bar": [1, 1],
+ *   "beat": [1.0, 2.0], "chord": [0, 168], "chordNames": {"0": "Cmaj", "168": "Gmaj"} }
+ * </pre>
+ *
+ * The pitch-class mask each chord was detected from is kept alongside (not
+ * serialized) so the entries can be re-resolved once the key is known.
+ *
+ * The human-readable "t=..s, Bar .., Beat ..: name" form is only produced
+ * on demand by {@link #label(int)} (used by the HTML view).
+ */
+@JsonSerialize(using = ChordTimeline.Serializer.class)
+public final class ChordTimeline {
+
+    // allocated on first add, so results that never record a chord stay small
+    private long[] tick = new long[0];
+    private float[] seconds = new float[0];
+    private int[] bar = new int[0];
+    private float[] beat = new float[0];
+    private int[] chord = new int[0];
+    private short[] mask = new short[0];
+    private int size;
+
+    public void add(long tickValue, double secondsValue, int barValue, double beatValue, int chordId) {
+        add(tickValue, secondsValue, barValue, beatValue, chordId, 0);
+    }
+
+    public void add(long tickValue, double secondsValue, int barValue, double beatValue, int chordId, int pcMask) {
+        if (size == tick.length) grow();
+        tick[size] = tickValue;
+        seconds[size] = (float) secondsValue;
+        bar[size] = barValue;
+        beat[size] = (float) beatValue;
+        chord[size] = chordId;
+        mask[size] = (short) pcMask;
+        size++;
+    }
+
+    private void grow() {
+        int n = Math.max(64, tick.length * 2);
+        tick = Arrays.copyOf(tick, n);
+        seconds = Arrays.copyOf(seconds, n);
+        bar = Arrays.copyOf(bar, n);
+        beat = Arrays.copyOf(beat, n);
+        chord = Arrays.copyOf(chord, n);
+        mask = Arrays.copyOf(mask, n);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long tick(int i) {
+        return tick[i];
+    }
+
+    public float seconds(int i) {
+        return seconds[i];
+    }
+
+    public int bar(int i) {
+        return bar[i];
+    }
+
+    public float beat(int i) {
+        return beat[i];
+    }
+
+    public int chordId(int i) {
+        return chord[i];
+    }
+
+    /** 12-bit pitch-class set the chord was detected from; 0 if not recorded. */
+    public int pcMask(int i) {
+        return mask[i];
+    }
+
+    /** Replaces an entry's chord, e.g. after re-resolving it in the detected key. */
+    public void setChordId(int i, int chordId) {
+        chord[i] = chordId;
+    }
+
+    public String chordName(int i) {
+        return ChordId.name(chord[i]);
+    }
+
+    /** Legacy display form, e.g. {@code t=1.50s, Bar 1, Beat 4.00: Cmin}. */
+    public String label(int i) {
+        return String.format(Locale.ROOT, "t=%.2fs, Bar %d, Beat %.2f: %s",
+                seconds[i], bar[i], beat[i], chordName(i));
+    }
+
+    // -------------------------------------------------------
+    // JSON (streamed straight from the arrays)
+    // -------------------------------------------------------
+    static final class Serializer extends StdSerializer<ChordTimeline> {
+
+        private static final long serialVersionUID = 1L;
+
+        Serializer() {
+            super(ChordTimeline.class);
+        }
+
+        @Override
+        public void serialize(ChordTimeline t, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            int n = t.size;
+            gen.writeStartObject();
+            gen.writeNumberField("count", n);
+
+            gen.writeFieldName("tick");
+            gen.writeArray(t.tick, 0, n);
+
+            gen.writeFieldName("seconds");
+            gen.writeStartArray();
+            for (int i = 0; i < n; i++) gen.writeNumber(t.seconds[i]);
+            gen.writeEndArray();
+
+            gen.writeFieldName("bar");
+            gen.writeArray(t.bar, 0, n);
+
+            gen.writeFieldName("beat");
+            gen.writeStartArray();
+            for (int i = 0; i < n; i++) gen.writeNumber(t.beat[i]);
+            gen.writeEndArray();
+
+            gen.writeFieldName("chord");
+            gen.writeArray(t.chord, 0, n);
+
+            gen.writeFieldName("chordNames");
+            gen.writeStartObject();
+            BitSet used = new BitSet(ChordId.COUNT);
+            for (int i = 0; i < n; i++) used.set(t.chord[i]);
+            for (int id = used.nextSetBit(0); id >= 0; id = used.nextSetBit(id + 1)) {
+                gen.writeStringField(Integer.toString(id), ChordId.name(id));
+            }
+            gen.writeEndObject();
+
+            gen.writeEndObject();
+        }
+    }
+}
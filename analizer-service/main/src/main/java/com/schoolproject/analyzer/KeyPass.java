@@ -0,0 +1,235 @@
+package com.schoolproject.analyzer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.schoolproject.ServiceConfig;
+import com.schoolproject.analyzer.MidiDifficultyAnalyzer.AnalysisResult;
+import com.schoolproject.smf.MeterMap;
+
+/**
+ * Key finding (Krumhansl-Schmuckler): a duration-weighted pitch-class
+ * histogram is built per bar during the traversal and correlated with the
+ * major and minor key profiles at every root. The winner is applied by
+ * re-resolving the chord timeline with {@link ChordAnalysisEngine#forKey},
+ * so root choice and chord difficulty follow the detected key instead of C.
+ *
+ * With {@code analyzer.key.window-bars} above 0 (default 8) a local key is
+ * also estimated over a sliding window of that many bars and reported where
+ * it changes. Per event the pass only updates a start tick or adds one
+ * duration; the bar bookkeeping runs once per bar.
+ */
+final class KeyPass implements AnalysisPass {
+
+    private static final int WINDOW_BARS = ServiceConfig.getInt("analyzer.key.window-bars", 8);
+
+    // Krumhansl-Kessler probe-tone profiles, tonic first
+    private static final double[] MAJOR = {6.35, 2.23, 3.48, 2.33, 4.38, 4.09, 2.52, 5.19, 2.39, 3.66, 2.29, 2.88};
+    private static final double[] MINOR = {6.33, 2.68, 3.52, 5.38, 2.60, 3.53, 2.54, 4.75, 3.98, 2.69, 3.34, 3.17};
+
+    private MeterMap meter;
+
+    // ---- sounding notes ----
+    private final long[] start = new long[128]; // tick the note's uncounted duration starts at
+    private long heldLo, heldHi;                // note bitset 0-63 / 64-127
+    private boolean pendingHeld;                // HELD notes waiting for the first real tick
+
+    // ---- per-bar histograms, row-major [bar - firstBar][pc] ----
+    private double[] bars = new double[0];
+    private int firstBar = -1;
+    private int bar;
+    private long barEnd = Long.MIN_VALUE;       // first tick of the next bar
+    private long lastTick;
+
+    @Override
+    public String name() {
+        return "key";
+    }
+
+    @Override
+    public void start(Context ctx) {
+        meter = ctx.meter();
+    }
+
+    @Override
+    public void onEvent(long tick, int kind, int note, int velocity, int track) {
+        if (kind == HELD) {
+            setHeld(note, true);
+            start[note] = tick;
+            pendingHeld = true;
+            return;
+        }
+        if (pendingHeld) {
+            // notes sounding at the window start count from its first event
+            for (int n = 0; n < 128; n++) if (start[n] < tick) start[n] = tick;
+            pendingHeld = false;
+        }
+        if (tick >= barEnd) advanceBar(tick);
+        lastTick = tick;
+
+        if (isHeld(note)) {
+            addDuration(note, tick);
+            if (kind == NOTE_OFF) setHeld(note, false);
+            else start[note] = tick;
+        } else if (kind == NOTE_ON) {
+            setHeld(note, true);
+            start[note] = tick;
+        }
+    }
+
+    /** Closes the current bar (and any empty ones) up to the bar containing {@code tick}. */
+    private void advanceBar(long tick) {
+        if (firstBar < 0) {
+            bar = firstBar = meter.bar(tick);
+        } else if ((heldLo | heldHi) == 0) {
+            bar = meter.bar(tick);
+        } else {
+            // split still-sounding notes at each boundary so every bar gets its own share
+            while (tick >= barEnd) {
+                for (long m = heldLo; m != 0; m &= m - 1) addDuration(Long.numberOfTrailingZeros(m), barEnd);
+                for (long m = heldHi; m != 0; m &= m - 1) addDuration(64 + Long.numberOfTrailingZeros(m), barEnd);
+                bar++;
+                ensureRows();
+                barEnd = meter.barStartTick(bar + 1);
+            }
+        }
+        barEnd = meter.barStartTick(bar + 1);
+        ensureRows();
+    }
+
+    private void ensureRows() {
+        int need = (bar - firstBar + 1) * 12;
+        if (bars.length < need) bars = Arrays.copyOf(bars, Math.max(need, bars.length * 2));
+    }
+
+    private void addDuration(int note, long tick) {
+        long d = tick - start[note];
+        if (d > 0) bars[(bar - firstBar) * 12 + note % 12] += d;
+        start[note] = tick;
+    }
+
+    @Override
+    public void finish(AnalysisResult result) {
+        if (firstBar < 0) return; // no notes
+        for (int n = 0; n < 128; n++) if (isHeld(n)) addDuration(n, lastTick);
+
+        int rows = bar - firstBar + 1;
+        double[] total = new double[12];
+        for (int i = 0; i < rows * 12; i++) total[i % 12] += bars[i];
+
+        double[] score = new double[2];
+        int key = bestKey(total, score);
+        if (key < 0) return;
+        result.key = keyName(key);
+
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("confidence", Math.round(score[0] * 1000) / 1000.0);
+        out.put("margin", Math.round((score[0] - score[1]) * 1000) / 1000.0);
+        if (WINDOW_BARS > 0) out.put("local", localKeys(rows));
+        result.put("keyDetection", out);
+
+        applyKey(result, ChordAnalysisEngine.forKey(result.key));
+    }
+
+    /** Re-resolves every timeline chord in the detected key and rescores chord difficulty. */
+    private static void applyKey(AnalysisResult result, ChordAnalysisEngine engine) {
+        ChordTimeline timeline = result.chordTimeline;
+        if (timeline.size() == 0) return;
+        int difficulty = 0;
+        for (int i = 0; i < timeline.size(); i++) {
+            int mask = timeline.pcMask(i);
+            if (mask != 0) timeline.setChordId(i, engine.detectId(mask));
+            difficulty += ChordId.difficulty(timeline.chordId(i));
+        }
+        result.chordDifficulty = difficulty;
+    }
+
+    /** Key per bar over a centered window; one entry per bar where it changes. */
+    private List<Map<String, Object>> localKeys(int rows) {
+        List<Map<String, Object>> out = new ArrayList<>();
+        double[] window = new double[12];
+        double[] score = new double[2];
+        int lo = 0, hi = 0; // window rows [lo, hi)
+        int previous = -1;
+        for (int r = 0; r < rows; r++) {
+            int wantLo = Math.max(0, r - WINDOW_BARS / 2);
+            int wantHi = Math.min(rows, wantLo + WINDOW_BARS);
+            while (hi < wantHi) { for (int pc = 0; pc < 12; pc++) window[pc] += bars[hi * 12 + pc]; hi++; }
+            while (lo < wantLo) { for (int pc = 0; pc < 12; pc++) window[pc] -= bars[lo * 12 + pc]; lo++; }
+
+            int key = bestKey(window, score);
+            if (key < 0 || key == previous) continue;
+            Map<String, Object> change = new LinkedHashMap<>();
+            change.put("bar", firstBar + r);
+            change.put("key", keyName(key));
+            out.add(change);
+            previous = key;
+        }
+        return out;
+    }
+
+    /**
+     * Index of the best-correlated key (0-11 major roots, 12-23 minor roots),
+     * or -1 for an empty histogram; {@code score} receives the best and
+     * runner-up correlations.
+     */
+    static int bestKey(double[] histogram, double[] score) {
+        double sum = 0;
+        for (double v : histogram) sum += v;
+        if (sum <= 0) return -1;
+
+        int best = -1;
+        score[0] = score[1] = -2;
+        for (int k = 0; k < 24; k++) {
+            double r = correlation(histogram, k < 12 ? MAJOR : MINOR, k % 12);
+            if (r > score[0]) {
+                score[1] = score[0];
+                score[0] = r;
+                best = k;
+            } else if (r > score[1]) {
+                score[1] = r;
+            }
+        }
+        return best;
+    }
+
+    private static double correlation(double[] histogram, double[] profile, int root) {
+        double mx = 0, my = 0;
+        for (int pc = 0; pc < 12; pc++) {
+            mx += histogram[pc];
+            my += profile[pc];
+        }
+        mx /= 12;
+        my /= 12;
+        double sxy = 0, sxx = 0, syy = 0;
+        for (int pc = 0; pc < 12; pc++) {
+            double x = histogram[(pc + root) % 12] - mx;
+            double y = profile[pc] - my;
+            sxy += x * y;
+            sxx += x * x;
+            syy += y * y;
+        }
+        return sxx == 0 ? 0 : sxy / Math.sqrt(sxx * syy);
+    }
+
+    /** Key names as understood by {@link ChordAnalysisEngine#setKey}: "D", "F#m". */
+    static String keyName(int key) {
+        return ChordAnalysisEngine.noteName(key % 12) + (key < 12 ? "" : "m");
+    }
+
+    // -------------------------------------------------------
+    // HELPERS
+    // -------------------------------------------------------
+    private boolean isHeld(int note) {
+        return note < 64 ? (heldLo & (1L << note)) != 0 : (heldHi & (1L << (note - 64))) != 0;
+    }
+
+    private void setHeld(int note, boolean held) {
+        long bit = 1L << (note & 63);
+        if (note < 64) heldLo = held ? heldLo | bit : heldLo & ~bit;
+        else heldHi = held ? heldHi | bit : heldHi & ~bit;
+    }
+}
@@ -1,27 +1,44 @@
 package com.schoolproject.analyzer;
 
-import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.util.ArrayList;
-import java.util.HashSet;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Set;
-
-import javax.sound.midi.MetaMessage;
-import javax.sound.midi.MidiEvent;
-import javax.sound.midi.MidiMessage;
-import javax.sound.midi.MidiSystem;
-import javax.sound.midi.Sequence;
-import javax.sound.midi.ShortMessage;
-import javax.sound.midi.Track;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.annotation.JsonAnyGetter;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.schoolproject.ServiceConfig;
+import com.schoolproject.jfr.AnalysisEvent;
+import com.schoolproject.metrics.Metrics;
+import com.schoolproject.smf.BarIndex;
+import com.schoolproject.smf.EventColumns;
+import com.schoolproject.smf.EventColumnsCache;
+import com.schoolproject.smf.SmfTrackReader;
 
 public class MidiDifficultyAnalyzer {
 
-    private final ChordAnalysisEngine chordEngine = new ChordAnalysisEngine();
+    private static final Logger log = LoggerFactory.getLogger(MidiDifficultyAnalyzer.class);
+
+    /**
+     * Identifies what this analyzer produces for a given file: bump
+     * {@code VERSION} whenever scoring or output changes. Includes the
+     * settings that change results, so HTTP validators (ETags) and other
+     * caches keyed on it go stale when either changes.
+     */
+    private static final int VERSION = 4;
+    public static final String FINGERPRINT = VERSION
+            + ";onset-ms=" + ServiceConfig.getInt("analyzer.onset-window-ms", 30)
+            + ";onset-ticks=" + ServiceConfig.getLong("analyzer.onset-window-ticks", 0)
+            + ";key-window=" + ServiceConfig.getInt("analyzer.key.window-bars", 8)
+            + ";passes=" + String.join(",", AnalysisPasses.names());
 
-    private String lastPrintedChord;
-    private long lastPrintedTick;
-    private double lastPrintedTime;
+    private final ChordAnalysisEngine chordEngine = new ChordAnalysisEngine();
 
     // -------------------------------------------------------
     // RESULT CLASS
@@ -32,7 +49,28 @@ public class MidiDifficultyAnalyzer {
         public int chordDifficulty;
         public int rhythmDifficulty;
         public int totalDifficulty;
-        public List<String> chordTimeline = new ArrayList<>();
+        public ChordTimeline chordTimeline = new ChordTimeline();
+
+        /** Detected key ("G", "Em"); null when the key pass did not run or found no notes. */
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        public String key;
+
+        /** Per-phase timings of the analysis that produced this result (not serialized). */
+        @JsonIgnore
+        public final PhaseTimings timings = new PhaseTimings();
+
+        // outputs of passes without a dedicated field, serialized as top-level properties
+        private final Map<String, Object> extra = new LinkedHashMap<>();
+
+        /** Adds a named pass output (e.g. "tempo") to the result. */
+        public void put(String name, Object value) {
+            extra.put(name, value);
+        }
+
+        @JsonAnyGetter
+        public Map<String, Object> extra() {
+            return extra;
+        }
 
         @Override
         public String toString() {
@@ -41,20 +79,31 @@ public class MidiDifficultyAnalyzer {
                     "  noteCount=" + noteCount + ",\n" +
                     "  chordDifficulty=" + chordDifficulty + ",\n" +
                     "  rhythmDifficulty=" + rhythmDifficulty + ",\n" +
-                    "  totalDifficulty=" + totalDifficulty + "\n" +
+                    "  totalDifficulty=" + totalDifficulty + ",\n" +
+                    "  key=" + key + "\n" +
                     "}\n";
         }
     }
 
+    // -------------------------------------------------------
+    // PHASE TIMINGS
+    // -------------------------------------------------------
+    public static class PhaseTimings {
+        public long parseNanos;     // hashing + decode into EventColumns (near zero on a cache hit)
+        public long eventsNanos;    // whole event loop, including detect + timeline
+        public long detectNanos;    // chordEngine.detectId calls
+        public long timelineNanos;  // timeline bookkeeping and difficulty scoring
+        public long detections;     // number of chordEngine.detectId calls
+    }
+
     // -------------------------------------------------------
     // FILE ENTRYPOINT
     // -------------------------------------------------------
     public AnalysisResult analyze(File midiFile) {
         try {
-            Sequence seq = MidiSystem.getSequence(midiFile);
-            return analyzeSequence(seq);
-        } catch (Exception e) {
-            e.printStackTrace();
+            return analyzeBytes(Files.readAllBytes(midiFile.toPath()));
+        } catch (IOException e) {
+            log.warn("Could not read file={}: {}", midiFile, e.toString());
             return new AnalysisResult();
         }
     }
@@ -63,12 +112,46 @@ public class MidiDifficultyAnalyzer {
     // BYTE ARRAY ENTRYPOINT (USED BY WEB SERVER)
     // -------------------------------------------------------
     public AnalysisResult analyzeBytes(byte[] midiData) {
+        return analyzeBytes(midiData, null);
+    }
+
+    /** @param passes pass names from {@link AnalysisPasses#parse}; null runs all */
+    public AnalysisResult analyzeBytes(byte[] midiData, List<String> passes) {
+        AnalysisEvent event = new AnalysisEvent();
+        event.begin();
         try {
-            ByteArrayInputStream bais = new ByteArrayInputStream(midiData);
-            Sequence seq = MidiSystem.getSequence(bais);
-            return analyzeSequence(seq);
+            long t0 = System.nanoTime();
+            String hash = EventColumnsCache.sha256(midiData);
+            EventColumns columns = EventColumnsCache.SHARED.get(hash);
+            if (columns == null) {
+                columns = EventColumns.decode(midiData);
+                EventColumnsCache.SHARED.put(hash, columns);
+            }
+            long parseNanos = System.nanoTime() - t0;
+
+            AnalysisResult result = analyzeColumns(columns, passes);
+            result.timings.parseNanos = parseNanos;
+            Metrics.PHASE_PARSE.observeNanos(parseNanos);
+
+            if (event.shouldCommit()) {
+                event.fileSize = midiData.length;
+                event.noteCount = result.noteCount;
+                event.maxPolyphony = result.maxPolyphony;
+                event.timelineEntries = result.chordTimeline.size();
+                event.detections = result.timings.detections;
+                event.parsed = true;
+                event.commit();
+            }
+            return result;
         } catch (Exception e) {
-            e.printStackTrace();
+            Metrics.ANALYSIS_FAILURES.inc();
+            if (event.shouldCommit()) {
+                event.fileSize = midiData.length;
+                event.commit();
+            }
+            // bad uploads are expected; the message is enough, the stack only at DEBUG
+            log.warn("Could not analyze {} bytes: {}", midiData.length, e.toString());
+            log.debug("Analysis failure detail", e);
             return new AnalysisResult();
         }
     }
@@ -76,144 +159,107 @@ public class MidiDifficultyAnalyzer {
     // -------------------------------------------------------
     // INTERNAL CORE ANALYZER
     // -------------------------------------------------------
-    private AnalysisResult analyzeSequence(Sequence seq) {
-
-        lastPrintedChord = null;
-        lastPrintedTick = -1;
-        lastPrintedTime = -1;
-
-        AnalysisResult result = new AnalysisResult();
-
-        int ppq = seq.getResolution();
-        long usPerQuarter = detectTempoUSPerQuarter(seq);
-        int beatsPerBar = 4;
-
-        Set<Integer> activeNotes = new HashSet<>();
-        long lastEventTick = -1;
-        int rapidChanges = 0;
-
-        for (Track track : seq.getTracks()) {
-            for (int i = 0; i < track.size(); i++) {
-
-                MidiEvent event = track.get(i);
-                long tick = event.getTick();
-                MidiMessage msg = event.getMessage();
-
-                if (!(msg instanceof ShortMessage sm)) continue;
-
-                // NOTE ON
-                if (sm.getCommand() == ShortMessage.NOTE_ON && sm.getData2() > 0) {
-
-                    int note = sm.getData1();
-                    activeNotes.add(note);
-                    result.noteCount++;
-
-                    result.maxPolyphony = Math.max(result.maxPolyphony, activeNotes.size());
-
-                    if (lastEventTick != -1 && (tick - lastEventTick) <= 15)
-                        rapidChanges++;
+    /** Runs the difficulty analysis over already-decoded events. */
+    public AnalysisResult analyzeColumns(EventColumns ev) {
+        return analyzeColumns(ev, null);
+    }
 
-                    lastEventTick = tick;
+    /** Runs the selected passes fused into one loop over already-decoded events. */
+    public AnalysisResult analyzeColumns(EventColumns ev, List<String> passes) {
 
-                    if (activeNotes.size() >= 2) {
-                        var chord = chordEngine.detect(activeNotes);
-                        if (chord != null) {
-                            processChordEvent(result, chord.name, tick, ppq, beatsPerBar, usPerQuarter);
-                        }
-                    }
-                }
+        long loopStart = System.nanoTime();
 
-                // NOTE OFF
-                if (sm.getCommand() == ShortMessage.NOTE_OFF ||
-                        (sm.getCommand() == ShortMessage.NOTE_ON && sm.getData2() == 0)) {
+        AnalysisSession session = new AnalysisSession(chordEngine, ev.tempo, ev.meter, true,
+                AnalysisPasses.create(passes));
 
-                    activeNotes.remove(sm.getData1());
-                }
-            }
+        long[] tick = ev.tick;
+        byte[] type = ev.type;
+        byte[] note = ev.note;
+        byte[] velocity = ev.velocity;
+        short[] track = ev.track;
+        for (int i = 0; i < ev.size; i++) {
+            if (type[i] == EventColumns.NOTE_ON) session.onNoteOn(tick[i], note[i], velocity[i], track[i]);
+            else session.onNoteOff(tick[i], note[i], track[i]);
         }
 
-        result.rhythmDifficulty = Math.min(10, rapidChanges / 30);
-        result.totalDifficulty =
-                result.chordDifficulty +
-                        result.rhythmDifficulty +
-                        Math.min(10, result.maxPolyphony * 2);
-
+        AnalysisResult result = session.finish();
+        result.timings.eventsNanos = System.nanoTime() - loopStart;
+        recordMetrics(result.timings);
         return result;
     }
 
     // -------------------------------------------------------
-    // TIMELINE
+    // BAR WINDOW (DECODES ONLY THE INDEXED BYTE RANGES)
     // -------------------------------------------------------
-    private void processChordEvent(AnalysisResult result, String chordName, long tick,
-                                   int ppq, int beatsPerBar, long usPerQuarter) {
-
-        if (chordName.equals("unknown") || chordName.equals("interval"))
-            return;
-
-        double seconds = tickToSeconds(tick, usPerQuarter, ppq);
-
-        if (tick == lastPrintedTick && chordName.equals(lastPrintedChord))
-            return;
-
-        if (lastPrintedTime >= 0 && (seconds - lastPrintedTime) < 0.03)
-            return;
-
-        double beat = (double) tick / ppq;
-        int bar = (int) (beat / beatsPerBar) + 1;
-        double beatInBar = (beat % beatsPerBar) + 1;
-
-        String label = String.format(
-                "t=%.2fs, Bar %d, Beat %.2f: %s",
-                round2(seconds), bar, round2(beatInBar), chordName
-        );
-
-        result.chordTimeline.add(label);
-        result.chordDifficulty += computeChordDifficultyName(chordName);
-
-        lastPrintedChord = chordName;
-        lastPrintedTick = tick;
-        lastPrintedTime = seconds;
+    /**
+     * Analyzes bars {@code fromBar..toBar} (1-based, inclusive).
+     * {@code trackBytes[t]} must hold exactly the file bytes
+     * {@code [index.windowStart(t, fromBar), index.windowEnd(t, toBar))}.
+     */
+    public AnalysisResult analyzeWindow(BarIndex index, byte[][] trackBytes, int fromBar, int toBar) {
+        return analyzeWindow(index, trackBytes, fromBar, toBar, null);
     }
 
-    private int computeChordDifficultyName(String name) {
-        if (name.endsWith("maj") || name.endsWith("min")) return 1;
-        if (name.contains("sus")) return 2;
-        if (name.contains("7") && !name.contains("9") &&
-                !name.contains("11") && !name.contains("13")) return 3;
-        if (name.contains("9")) return 4;
-        if (name.contains("11")) return 5;
-        if (name.contains("13")) return 6;
-        if (name.contains("dim") || name.contains("aug") ||
-                name.contains("#") || name.contains("b")) return 5;
-
-        return 1;
-    }
+    public AnalysisResult analyzeWindow(BarIndex index, byte[][] trackBytes, int fromBar, int toBar,
+                                        List<String> passes) {
+        long t0 = System.nanoTime();
 
-    private long detectTempoUSPerQuarter(Sequence seq) {
-        long defaultUsPerQuarter = 500_000; // 120 BPM
-        try {
-            for (Track track : seq.getTracks()) {
-                for (int i = 0; i < track.size(); i++) {
-                    MidiEvent event = track.get(i);
-                    if (event.getMessage() instanceof MetaMessage meta &&
-                            meta.getType() == 0x51) {
-
-                        byte[] d = meta.getData();
-                        return ((d[0] & 0xFF) << 16)
-                                | ((d[1] & 0xFF) << 8)
-                                | (d[2] & 0xFF);
-                    }
-                }
+        SmfTrackReader[] readers = new SmfTrackReader[index.tracks()];
+        for (int t = 0; t < readers.length; t++) {
+            int start = index.windowStart(t, fromBar);
+            readers[t] = new SmfTrackReader().reset(trackBytes[t], start, start, start + trackBytes[t].length,
+                    index.startTick(t, fromBar), index.startStatus(t, fromBar));
+        }
+        EventColumns ev = EventColumns.decode(readers, index.tempo, index.meter, false);
+        long parseNanos = System.nanoTime() - t0;
+
+        long fromTick = index.barStartTick(fromBar);
+        long endTick = index.barStartTick(toBar + 1);
+        long loopStart = System.nanoTime();
+        AnalysisSession session = new AnalysisSession(chordEngine, index.tempo, index.meter, true,
+                AnalysisPasses.create(passes), fromTick);
+
+        // notes sounding at the window start: held at the indexed boundary, then
+        // replayed up to fromTick here only, so no pass sees pre-window events
+        long lo = 0, hi = 0;
+        for (int t = 0; t < readers.length; t++) {
+            lo |= index.heldLo(t, fromBar);
+            hi |= index.heldHi(t, fromBar);
+        }
+        int i = 0;
+        for (; i < ev.size && ev.tick[i] < fromTick; i++) {
+            int n = ev.note[i];
+            long bit = 1L << (n & 63);
+            boolean on = ev.type[i] == EventColumns.NOTE_ON;
+            if (n < 64) lo = on ? lo | bit : lo & ~bit;
+            else hi = on ? hi | bit : hi & ~bit;
+        }
+        for (int n = 0; n < 64; n++) {
+            if ((lo & (1L << n)) != 0) session.hold(n);
+            if ((hi & (1L << n)) != 0) session.hold(n + 64);
+        }
+
+        for (; i < ev.size && ev.tick[i] < endTick; i++) {
+            if (ev.type[i] == EventColumns.NOTE_ON) {
+                session.onNoteOn(ev.tick[i], ev.note[i], ev.velocity[i], ev.track[i]);
+            } else {
+                session.onNoteOff(ev.tick[i], ev.note[i], ev.track[i]);
             }
-        } catch (Exception ignore) {}
-        return defaultUsPerQuarter;
-    }
+        }
 
-    private double tickToSeconds(long tick, long usPerQuarter, int ppq) {
-        return (tick / (double) ppq) * (usPerQuarter / 1_000_000.0);
+        AnalysisResult result = session.finish();
+        result.timings.parseNanos = parseNanos;
+        result.timings.eventsNanos = System.nanoTime() - loopStart;
+        Metrics.PHASE_PARSE.observeNanos(parseNanos);
+        recordMetrics(result.timings);
+        return result;
     }
 
-    private double round2(double v) {
-        return Math.round(v * 100.0) / 100.0;
+    private void recordMetrics(PhaseTimings timings) {
+        Metrics.PHASE_EVENTS.observeNanos(timings.eventsNanos);
+        Metrics.PHASE_DETECT.observeNanos(timings.detectNanos);
+        Metrics.PHASE_TIMELINE.observeNanos(timings.timelineNanos);
+        Metrics.CHORD_DETECTIONS.add(timings.detections);
+        Metrics.FILES_ANALYZED.inc();
     }
 }
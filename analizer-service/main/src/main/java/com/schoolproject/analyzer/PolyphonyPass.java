@@ -0,0 +1,56 @@
+package com.schoolproject.analyzer;
+
+import com.schoolproject.analyzer.MidiDifficultyAnalyzer.AnalysisResult;
+
+/** Note count and maximum number of simultaneously held notes. */
+final class PolyphonyPass implements AnalysisPass {
+
+    private long heldLo, heldHi;          // note bitset 0-63 / 64-127
+    private int active;
+    private int noteCount;
+    private int maxPolyphony;
+
+    @Override
+    public String name() {
+        return "polyphony";
+    }
+
+    @Override
+    public void onEvent(long tick, int kind, int note, int velocity, int track) {
+        long bit = 1L << (note & 63);
+        boolean held = note < 64 ? (heldLo & bit) != 0 : (heldHi & bit) != 0;
+
+        if (kind == NOTE_OFF) {
+            if (!held) return;
+            if (note < 64) heldLo &= ~bit; else heldHi &= ~bit;
+            active--;
+            return;
+        }
+        if (!held) {
+            if (note < 64) heldLo |= bit; else heldHi |= bit;
+            active++;
+        }
+        if (kind == NOTE_ON) {
+            noteCount++;
+            maxPolyphony = Math.max(maxPolyphony, active);
+        }
+    }
+
+    int active() {
+        return active;
+    }
+
+    int noteCount() {
+        return noteCount;
+    }
+
+    int maxPolyphony() {
+        return maxPolyphony;
+    }
+
+    @Override
+    public void finish(AnalysisResult result) {
+        result.noteCount = noteCount;
+        result.maxPolyphony = maxPolyphony;
+    }
+}
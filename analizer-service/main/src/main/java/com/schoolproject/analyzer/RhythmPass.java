@@ -0,0 +1,35 @@
+package com.schoolproject.analyzer;
+
+import com.schoolproject.analyzer.MidiDifficultyAnalyzer.AnalysisResult;
+
+/** Rhythm difficulty from how often onsets follow each other closely. */
+final class RhythmPass implements AnalysisPass {
+
+    // note-ons closer than this many ticks count as rapid changes
+    private static final int RAPID_ONSET_TICKS = 15;
+
+    private long lastOnsetTick = -1;
+    private int rapidChanges;
+
+    @Override
+    public String name() {
+        return "rhythm";
+    }
+
+    @Override
+    public void onEvent(long tick, int kind, int note, int velocity, int track) {
+        if (kind != NOTE_ON) return;
+        if (lastOnsetTick != -1 && (tick - lastOnsetTick) <= RAPID_ONSET_TICKS)
+            rapidChanges++;
+        lastOnsetTick = tick;
+    }
+
+    int difficulty() {
+        return Math.min(10, rapidChanges / 30);
+    }
+
+    @Override
+    public void finish(AnalysisResult result) {
+        result.rhythmDifficulty = difficulty();
+    }
+}
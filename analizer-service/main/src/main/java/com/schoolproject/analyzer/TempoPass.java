@@ -0,0 +1,68 @@
+package com.schoolproject.analyzer;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.schoolproject.analyzer.MidiDifficultyAnalyzer.AnalysisResult;
+import com.schoolproject.smf.TempoMap;
+
+/**
+ * Tempo summary over the played range (from the session's start tick to the
+ * last event): number of changes, min/max BPM and the time-weighted mean.
+ * Reads the tempo map at the end; per event it only tracks the last tick.
+ */
+final class TempoPass implements AnalysisPass {
+
+    private TempoMap tempo;
+    private long startTick;
+    private long lastTick;
+
+    @Override
+    public String name() {
+        return "tempo";
+    }
+
+    @Override
+    public void start(Context ctx) {
+        tempo = ctx.tempo();
+        startTick = ctx.startTick();
+        lastTick = startTick;
+    }
+
+    @Override
+    public void onEvent(long tick, int kind, int note, int velocity, int track) {
+        if (tick > lastTick) lastTick = tick;
+    }
+
+    @Override
+    public void finish(AnalysisResult result) {
+        // the tempo in effect at the start, then every change inside the range
+        double min = bpm(tempo.usPerQuarterAt(startTick)), max = min;
+        int changes = 0;
+        for (int i = 0; i < tempo.size() && tempo.tick(i) <= lastTick; i++) {
+            if (tempo.tick(i) <= startTick) continue;
+            double bpm = bpm(tempo.usPerQuarter(i));
+            min = Math.min(min, bpm);
+            max = Math.max(max, bpm);
+            changes++;
+        }
+        double seconds = tempo.seconds(lastTick) - tempo.seconds(startTick);
+        double mean = seconds > 0 ? 60.0 * (lastTick - startTick) / tempo.ppq() / seconds : min;
+
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("changes", changes);
+        out.put("minBpm", round2(min));
+        out.put("maxBpm", round2(max));
+        out.put("meanBpm", round2(mean));
+        out.put("durationSeconds", round2(seconds));
+        result.put("tempo", out);
+    }
+
+    private static double bpm(long usPerQuarter) {
+        return 60_000_000.0 / usPerQuarter;
+    }
+
+    private static double round2(double v) {
+        return Math.round(v * 100.0) / 100.0;
+    }
+}
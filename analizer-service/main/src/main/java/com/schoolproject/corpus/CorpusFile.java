@@ -0,0 +1,200 @@
+package com.schoolproject.corpus;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import com.schoolproject.smf.MeterMap;
+import com.schoolproject.smf.TempoMap;
+
+/**
+ * Read side of a columnar corpus file: every exported MIDI file's decoded
+ * note events (see {@link com.schoolproject.smf.EventColumns}) packed into
+ * one file and memory-mapped read-only, so batch jobs scan the whole archive
+ * without database round trips, decoding, or copying onto the heap.
+ *
+ * Layout (little-endian), written by {@link CorpusWriter}:
+ * <pre>
+ * header    MAGIC, VERSION, file count, directory offset, directory length
+ * record*   int tempoCount, int meterCount,
+ *           tempoCount × (long tick, long usPerQuarter),
+ *           meterCount × (long tick, int numerator, int denominator),
+ *           long tick[n], short track[n], byte type[n], byte note[n], byte velocity[n],
+ *           padding to 8 bytes
+ * directory per file: long offset, int events, int ppq, byte[32] sha256, short nameLength, name
+ * </pre>
+ * Records never straddle a {@link #CHUNK_BYTES} boundary, so each one lies
+ * inside a single mapping (a MappedByteBuffer is limited to 2 GB).
+ * Instances are immutable and safe to share between threads; every accessor
+ * works on its own buffer duplicate.
+ */
+public final class CorpusFile implements AutoCloseable {
+
+    static final long MAGIC = ByteBuffer.wrap("TBCORPUS".getBytes(StandardCharsets.US_ASCII))
+            .order(ByteOrder.LITTLE_ENDIAN).getLong();
+    public static final int VERSION = 1;
+    static final int HEADER_BYTES = 32;
+    static final long CHUNK_BYTES = 1L << 30;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] chunks;
+    private final long sizeBytes;
+
+    private final String[] names;
+    private final long[] offset;
+    private final int[] events;
+    private final int[] ppq;
+    private final byte[][] sha256;
+
+    private CorpusFile(FileChannel channel) throws IOException {
+        this.channel = channel;
+        this.sizeBytes = channel.size();
+
+        ByteBuffer header = read(channel, 0, HEADER_BYTES);
+        if (header.getLong() != MAGIC) throw new IllegalArgumentException("Not a corpus file");
+        int version = header.getInt();
+        if (version != VERSION) throw new IllegalArgumentException("Unsupported corpus version " + version);
+        int count = header.getInt();
+        long dirOffset = header.getLong();
+        long dirLength = header.getLong();
+
+        names = new String[count];
+        offset = new long[count];
+        events = new int[count];
+        ppq = new int[count];
+        sha256 = new byte[count][];
+        ByteBuffer dir = read(channel, dirOffset, Math.toIntExact(dirLength));
+        for (int i = 0; i < count; i++) {
+            offset[i] = dir.getLong();
+            events[i] = dir.getInt();
+            ppq[i] = dir.getInt();
+            sha256[i] = new byte[32];
+            dir.get(sha256[i]);
+            byte[] name = new byte[dir.getShort() & 0xFFFF];
+            dir.get(name);
+            names[i] = new String(name, StandardCharsets.UTF_8);
+        }
+
+        chunks = new MappedByteBuffer[(int) ((dirOffset + CHUNK_BYTES - 1) / CHUNK_BYTES)];
+        for (int c = 0; c < chunks.length; c++) {
+            long start = c * CHUNK_BYTES;
+            chunks[c] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(CHUNK_BYTES, dirOffset - start));
+        }
+    }
+
+    public static CorpusFile open(Path path) {
+        try {
+            return new CorpusFile(FileChannel.open(path, StandardOpenOption.READ));
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open corpus " + path + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static ByteBuffer read(FileChannel ch, long position, int length) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buf.hasRemaining()) {
+            if (ch.read(buf, position + buf.position()) < 0) throw new IOException("Truncated corpus file");
+        }
+        return buf.flip();
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    public long sizeBytes() {
+        return sizeBytes;
+    }
+
+    public String name(int file) {
+        return names[file];
+    }
+
+    public int eventCount(int file) {
+        return events[file];
+    }
+
+    /** SHA-256 of the original MIDI bytes (same key as the decoded-event cache). */
+    public byte[] sha256(int file) {
+        return sha256[file].clone();
+    }
+
+    /** Zero-copy view of one file's record. */
+    public Events events(int file) {
+        ByteBuffer chunk = chunks[(int) (offset[file] / CHUNK_BYTES)].duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        chunk.position((int) (offset[file] % CHUNK_BYTES));
+        return new Events(chunk.slice().order(ByteOrder.LITTLE_ENDIAN), events[file], ppq[file]);
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close(); // the mappings stay valid until garbage collected
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to close corpus: " + e.getMessage(), e);
+        }
+    }
+
+    // -------------------------------------------------------
+    // RECORD VIEW
+    // -------------------------------------------------------
+    /** One file's events, read straight from the mapping by absolute index. */
+    public static final class Events {
+
+        public final int size;
+        public final TempoMap tempo;
+        public final MeterMap meter;
+
+        private final ByteBuffer buf;
+        private final int tickAt, trackAt, typeAt, noteAt, velocityAt;
+
+        Events(ByteBuffer buf, int size, int ppq) {
+            this.buf = buf;
+            this.size = size;
+            int tempoCount = buf.getInt(0);
+            int meterCount = buf.getInt(4);
+            int p = 8;
+            tempo = new TempoMap(ppq);
+            for (int i = 0; i < tempoCount; i++, p += 16) tempo.add(buf.getLong(p), buf.getLong(p + 8));
+            meter = new MeterMap(ppq);
+            for (int i = 0; i < meterCount; i++, p += 16) meter.add(buf.getLong(p), buf.getInt(p + 8), buf.getInt(p + 12));
+            tickAt = p;
+            trackAt = tickAt + size * 8;
+            typeAt = trackAt + size * 2;
+            noteAt = typeAt + size;
+            velocityAt = noteAt + size;
+        }
+
+        public long tick(int i) {
+            return buf.getLong(tickAt + i * 8);
+        }
+
+        public int track(int i) {
+            return buf.getShort(trackAt + i * 2);
+        }
+
+        /** {@code EventColumns.NOTE_ON} or {@code NOTE_OFF}. */
+        public byte type(int i) {
+            return buf.get(typeAt + i);
+        }
+
+        public byte note(int i) {
+            return buf.get(noteAt + i);
+        }
+
+        public byte velocity(int i) {
+            return buf.get(velocityAt + i);
+        }
+
+        /** Bytes of the record, header included. */
+        static int recordBytes(int tempoCount, int meterCount, int size) {
+            int bytes = 8 + tempoCount * 16 + meterCount * 16 + size * 13;
+            return (bytes + 7) & ~7;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.schoolproject.corpus;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.schoolproject.analyzer.AnalysisPasses;
+import com.schoolproject.analyzer.AnalysisSession;
+import com.schoolproject.analyzer.ChordAnalysisEngine;
+import com.schoolproject.analyzer.MidiDifficultyAnalyzer.AnalysisResult;
+import com.schoolproject.db.MidiDBConnector;
+import com.schoolproject.db.MidiDBOperations;
+import com.schoolproject.loadtest.LoadTestDriver;
+import com.schoolproject.smf.EventColumns;
+import com.schoolproject.smf.EventColumnsCache;
+
+/**
+ * Exports the archive into a {@link CorpusFile} and runs batch analysis
+ * over it on every core.
+ *
+ * Usage:
+ *   CorpusTool export --out corpus.tbc [--from-dir dir]   (default: all files in the database)
+ *   CorpusTool scan --corpus corpus.tbc [--threads N] [--passes chords,key] [--out results.ndjson]
+ */
+public final class CorpusTool {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private CorpusTool() {}
+
+    // -------------------------------------------------------
+    // EXPORT
+    // -------------------------------------------------------
+    /** Decodes every file once and packs it into {@code out}; undecodable files are skipped. */
+    static void export(Path out, Path fromDir) throws IOException {
+        long start = System.nanoTime();
+        AtomicInteger skipped = new AtomicInteger();
+        AtomicLong sourceBytes = new AtomicLong();
+
+        try (CorpusWriter writer = new CorpusWriter(out)) {
+            BiConsumer<String, byte[]> add = (name, bytes) -> {
+                sourceBytes.addAndGet(bytes.length);
+                try {
+                    byte[] sha = HexFormat.of().parseHex(EventColumnsCache.sha256(bytes));
+                    writer.add(name, sha, EventColumns.decode(bytes));
+                } catch (RuntimeException e) {
+                    skipped.incrementAndGet();
+                    System.err.println("Skipping " + name + ": " + e.getMessage());
+                }
+            };
+            if (fromDir != null) {
+                try (Stream<Path> files = Files.list(fromDir)) {
+                    for (Path p : files.filter(f -> f.getFileName().toString().endsWith(".mid")).sorted().toList()) {
+                        add.accept(p.getFileName().toString(), Files.readAllBytes(p));
+                    }
+                }
+            } else {
+                new MidiDBOperations(new MidiDBConnector()).forEachFile(add);
+            }
+            writer.finish();
+            System.out.printf(Locale.ROOT, "Exported %d files (%d events, %d skipped) from %.1f MB in %.1f s%n",
+                    writer.count(), writer.events(), skipped.get(), sourceBytes.get() / 1e6,
+                    (System.nanoTime() - start) / 1e9);
+        }
+        System.out.printf(Locale.ROOT, "Corpus %s: %.1f MB%n", out, Files.size(out) / 1e6);
+    }
+
+    // -------------------------------------------------------
+    // SCAN
+    // -------------------------------------------------------
+    /**
+     * Analyzes every file in the corpus straight from the mapping. Workers
+     * pull file indexes from a shared counter, so large and small files
+     * balance across threads; the chord engine is shared (read-only).
+     */
+    static void scan(Path corpusPath, int threads, List<String> passes, Path out) throws Exception {
+        ChordAnalysisEngine engine = new ChordAnalysisEngine();
+        AtomicInteger next = new AtomicInteger();
+        AtomicLong events = new AtomicLong();
+        AtomicLong difficulty = new AtomicLong();
+
+        try (CorpusFile corpus = CorpusFile.open(corpusPath);
+             BufferedWriter results = out == null ? null : Files.newBufferedWriter(out)) {
+            long start = System.nanoTime();
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            try {
+                List<Future<?>> workers = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    workers.add(pool.submit(() -> {
+                        for (int i = next.getAndIncrement(); i < corpus.size(); i = next.getAndIncrement()) {
+                            AnalysisResult r = analyze(engine, corpus.events(i), passes);
+                            events.addAndGet(corpus.eventCount(i));
+                            difficulty.addAndGet(r.totalDifficulty);
+                            if (results != null) writeResult(results, corpus.name(i), r);
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> w : workers) w.get();
+            } finally {
+                pool.shutdown();
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf(Locale.ROOT,
+                    "Scanned %d files, %d events in %.2f s on %d threads: %.1f M events/s, %.1f MB/s mapped, mean difficulty %.1f%n",
+                    corpus.size(), events.get(), seconds, threads, events.get() / seconds / 1e6,
+                    corpus.sizeBytes() / seconds / 1e6, corpus.size() == 0 ? 0.0 : (double) difficulty.get() / corpus.size());
+        }
+    }
+
+    /** Same traversal as {@code MidiDifficultyAnalyzer.analyzeColumns}, reading the mapped columns. */
+    static AnalysisResult analyze(ChordAnalysisEngine engine, CorpusFile.Events ev, List<String> passes) {
+        AnalysisSession session = new AnalysisSession(engine, ev.tempo, ev.meter, true, AnalysisPasses.create(passes));
+        for (int i = 0; i < ev.size; i++) {
+            if (ev.type(i) == EventColumns.NOTE_ON) session.onNoteOn(ev.tick(i), ev.note(i), ev.velocity(i), ev.track(i));
+            else session.onNoteOff(ev.tick(i), ev.note(i), ev.track(i));
+        }
+        return session.finish();
+    }
+
+    private static void writeResult(BufferedWriter out, String name, AnalysisResult r) {
+        Map<String, Object> line = new LinkedHashMap<>();
+        line.put("file", name);
+        line.put("noteCount", r.noteCount);
+        line.put("maxPolyphony", r.maxPolyphony);
+        line.put("chordDifficulty", r.chordDifficulty);
+        line.put("rhythmDifficulty", r.rhythmDifficulty);
+        line.put("totalDifficulty", r.totalDifficulty);
+        if (r.key != null) line.put("key", r.key);
+        try {
+            String json = MAPPER.writeValueAsString(line);
+            synchronized (out) {
+                out.write(json);
+                out.newLine();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // -------------------------------------------------------
+    // CLI
+    // -------------------------------------------------------
+    public static void main(String[] args) throws Exception {
+        String command = args.length > 0 ? args[0] : "";
+        Map<String, String> opts = LoadTestDriver.parseArgs(args);
+        switch (command) {
+            case "export" -> export(Path.of(opts.getOrDefault("out", "corpus.tbc")),
+                    opts.containsKey("from-dir") ? Path.of(opts.get("from-dir")) : null);
+            case "scan" -> scan(Path.of(opts.getOrDefault("corpus", "corpus.tbc")),
+                    Integer.parseInt(opts.getOrDefault("threads", String.valueOf(Runtime.getRuntime().availableProcessors()))),
+                    AnalysisPasses.parse(opts.get("passes")),
+                    opts.containsKey("out") ? Path.of(opts.get("out")) : null);
+            default -> System.err.println("Usage: CorpusTool export --out corpus.tbc [--from-dir dir]\n"
+                    + "       CorpusTool scan --corpus corpus.tbc [--threads N] [--passes a,b] [--out results.ndjson]");
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.schoolproject.corpus;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import com.schoolproject.smf.EventColumns;
+import com.schoolproject.smf.MeterMap;
+import com.schoolproject.smf.TempoMap;
+
+/**
+ * Appends decoded files to a new {@link CorpusFile}. Records go to a
+ * temporary file that only {@link #finish()} moves into place; {@link #close()}
+ * without it deletes the temporary file, so an interrupted export never
+ * leaves a half-written corpus behind. Not thread-safe.
+ */
+public final class CorpusWriter implements AutoCloseable {
+
+    private final Path target;
+    private final Path temp;
+    private final FileChannel channel;
+
+    private ByteBuffer record = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+    private ByteBuffer directory = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+    private long position = CorpusFile.HEADER_BYTES;
+    private int count;
+    private long events;
+    private boolean finished;
+
+    public CorpusWriter(Path target) {
+        this.target = target;
+        this.temp = target.resolveSibling(target.getFileName() + ".part");
+        try {
+            channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to create corpus " + temp + ": " + e.getMessage(), e);
+        }
+    }
+
+    public void add(String name, byte[] sha256, EventColumns ev) {
+        TempoMap tempo = ev.tempo;
+        MeterMap meter = ev.meter;
+        int bytes = CorpusFile.Events.recordBytes(tempo.size(), meter.size(), ev.size);
+        if (bytes > CorpusFile.CHUNK_BYTES) throw new IllegalArgumentException("File too large for corpus: " + name);
+
+        record = ensure(record, bytes);
+        record.putInt(tempo.size()).putInt(meter.size());
+        for (int i = 0; i < tempo.size(); i++) record.putLong(tempo.tick(i)).putLong(tempo.usPerQuarter(i));
+        for (int i = 0; i < meter.size(); i++) {
+            record.putLong(meter.tick(i)).putInt(meter.numerator(i)).putInt(meter.denominator(i));
+        }
+        for (int i = 0; i < ev.size; i++) record.putLong(ev.tick[i]);
+        for (int i = 0; i < ev.size; i++) record.putShort(ev.track[i]);
+        record.put(ev.type, 0, ev.size).put(ev.note, 0, ev.size).put(ev.velocity, 0, ev.size);
+        while (record.position() < bytes) record.put((byte) 0);
+
+        // keep each record inside one mapping chunk
+        long inChunk = position % CorpusFile.CHUNK_BYTES;
+        if (inChunk + bytes > CorpusFile.CHUNK_BYTES) position += CorpusFile.CHUNK_BYTES - inChunk;
+        write(record.flip(), position);
+
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        if (nameBytes.length > 0xFFFF) throw new IllegalArgumentException("Name too long: " + name);
+        directory = ensureAppend(directory, 8 + 4 + 4 + 32 + 2 + nameBytes.length);
+        directory.putLong(position).putInt(ev.size).putInt(tempo.ppq()).put(sha256)
+                .putShort((short) nameBytes.length).put(nameBytes);
+
+        position += bytes;
+        count++;
+        events += ev.size;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public long events() {
+        return events;
+    }
+
+    /** Writes directory and header, then moves the finished corpus into place. */
+    public void finish() {
+        try {
+            long dirOffset = position;
+            write(directory.flip(), dirOffset);
+            ByteBuffer header = ByteBuffer.allocate(CorpusFile.HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putLong(CorpusFile.MAGIC).putInt(CorpusFile.VERSION).putInt(count)
+                    .putLong(dirOffset).putLong(directory.limit());
+            write(header.flip(), 0);
+            channel.force(false);
+            channel.close();
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            finished = true;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to finish corpus " + target + ": " + e.getMessage(), e);
+        }
+    }
+
+    /** Discards the temporary file unless {@link #finish()} succeeded; the target is left untouched. */
+    @Override
+    public void close() {
+        if (finished) return;
+        try {
+            channel.close();
+            Files.deleteIfExists(temp);
+        } catch (IOException e) {
+            System.err.println("WARNING: could not delete " + temp + ": " + e.getMessage());
+        }
+    }
+
+    private void write(ByteBuffer buf, long at) {
+        try {
+            while (buf.hasRemaining()) at += channel.write(buf, at);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write corpus " + temp + ": " + e.getMessage(), e);
+        }
+    }
+
+    /** Cleared buffer with room for {@code bytes}. */
+    private static ByteBuffer ensure(ByteBuffer buf, int bytes) {
+        if (buf.capacity() < bytes) buf = ByteBuffer.allocate(Math.max(bytes, buf.capacity() * 2)).order(ByteOrder.LITTLE_ENDIAN);
+        return buf.clear();
+    }
+
+    /** Same buffer, or a larger copy, with room for {@code bytes} more. */
+    private static ByteBuffer ensureAppend(ByteBuffer buf, int bytes) {
+        if (buf.remaining() >= bytes) return buf;
+        ByteBuffer bigger = ByteBuffer.allocate(Math.max(buf.capacity() * 2, buf.position() + bytes)).order(ByteOrder.LITTLE_ENDIAN);
+        return bigger.put(buf.flip());
+    }
+}
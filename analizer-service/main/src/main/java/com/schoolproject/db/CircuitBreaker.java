@@ -0,0 +1,88 @@
+package com.schoolproject.db;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Fails database calls fast while the database is unreachable, instead of
+ * letting every request thread wait out a connection timeout.
+ *
+ * CLOSED: calls go through; {@code failures} connection-level failures
+ * within {@code window} open the circuit. OPEN: calls are refused
+ * immediately for {@code openFor}. HALF_OPEN: the next call is let through
+ * as a probe (others are still refused); its success closes the circuit,
+ * its failure opens it again.
+ */
+public final class CircuitBreaker {
+
+    private static final Logger log = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold;
+    private final long windowNanos;
+    private final long openNanos;
+
+    // guarded by this
+    private State state = State.CLOSED;
+    private final ArrayDeque<Long> failures = new ArrayDeque<>();
+    private long openedAt;
+
+    public CircuitBreaker(int failureThreshold, long windowMs, long openMs) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMs);
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMs);
+    }
+
+    /** True if a call may go to the database now; an allowed call must report its outcome. */
+    public synchronized boolean tryAcquire() {
+        if (state == State.CLOSED) return true;
+        if (state == State.OPEN && System.nanoTime() - openedAt >= openNanos) {
+            state = State.HALF_OPEN;
+            return true; // this caller is the probe
+        }
+        return false;
+    }
+
+    public synchronized void onSuccess() {
+        if (state != State.CLOSED) log.info("Database reachable again, closing circuit");
+        state = State.CLOSED;
+        failures.clear();
+    }
+
+    public synchronized void onFailure() {
+        long now = System.nanoTime();
+        if (state == State.HALF_OPEN) {
+            open(now);
+            return;
+        }
+        if (state == State.OPEN) return;
+        failures.addLast(now);
+        while (now - failures.peekFirst() > windowNanos) failures.pollFirst();
+        if (failures.size() >= failureThreshold) open(now);
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+
+    /** Seconds until the next probe is allowed; at least 1, for Retry-After. */
+    public synchronized int retryAfterSeconds() {
+        if (state == State.CLOSED) return 1;
+        long remaining = openNanos - (System.nanoTime() - openedAt);
+        return (int) Math.max(1, TimeUnit.NANOSECONDS.toSeconds(remaining + 999_999_999L));
+    }
+
+    private void open(long now) {
+        if (state == State.CLOSED) {
+            log.warn("Database unavailable ({} failures), opening circuit for {} ms",
+                    failures.size(), TimeUnit.NANOSECONDS.toMillis(openNanos));
+        }
+        state = State.OPEN;
+        openedAt = now;
+        failures.clear();
+    }
+}
@@ -0,0 +1,302 @@
+package com.schoolproject.db;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * Bulk export/import of {@code midi_files} with PostgreSQL binary COPY.
+ *
+ * Export writes the table in id order as parts of at most {@code partRows}
+ * rows ({@code part-00001.copy}, ...) and records each finished part, with
+ * its id range, row count, size and SHA-256, in {@code manifest.json}. The
+ * manifest is rewritten after every part, so a re-run skips finished parts
+ * and continues after the last exported id.
+ *
+ * Import checks each part file against the manifest, COPYs it into a
+ * temporary staging table, rejects the part if any row's data does not
+ * match its content hash, and merges it with ON CONFLICT (filename) DO
+ * NOTHING in one transaction. Imported parts are recorded in
+ * {@code import-progress.json}; re-importing a part is harmless either way.
+ *
+ * All file and COPY traffic goes through fixed {@link #BUFFER_BYTES} buffers,
+ * so memory use does not depend on archive or part size.
+ */
+public final class CopyArchive {
+
+    private static final Logger log = LoggerFactory.getLogger(CopyArchive.class);
+
+    static final int BUFFER_BYTES = 1 << 20;
+    private static final String MANIFEST = "manifest.json";
+    private static final String PROGRESS = "import-progress.json";
+    private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    // rows without a stored hash are hashed by the server during export
+    private static final String COLUMNS = "filename, data, uploaded_at, bar_index, content_hash";
+    private static final String EXPORT_COLUMNS =
+            "filename, data, uploaded_at, bar_index, coalesce(content_hash, sha256(data))";
+
+    /** One exported part; {@code fromId} exclusive, {@code toId} inclusive. */
+    public record Part(String file, long fromId, long toId, long rows, long bytes, String sha256) {
+    }
+
+    public record Manifest(int version, List<Part> parts) {
+    }
+
+    public record Progress(List<String> imported) {
+    }
+
+    /** What one export or import run did; {@code resumedParts} were already done before it started. */
+    public record Summary(int parts, int resumedParts, long rows, long bytes, long duplicates, double seconds) {
+    }
+
+    private final MidiDBConnector db;
+
+    CopyArchive(MidiDBConnector db) {
+        this.db = db;
+    }
+
+    // -------------------------------------------------------
+    // EXPORT
+    // -------------------------------------------------------
+    Summary export(Path dir, int partRows) {
+        DbCall call = new DbCall("exportArchive", null);
+        long start = System.nanoTime();
+        try {
+            Files.createDirectories(dir);
+            List<Part> parts = new ArrayList<>(readManifest(dir).parts());
+            int resumed = parts.size();
+            long lastId = parts.isEmpty() ? 0 : parts.get(parts.size() - 1).toId();
+            long rows = 0, bytes = 0;
+
+            try (Connection conn = db.connect()) {
+                unbounded(conn);
+                CopyManager copy = conn.unwrap(PGConnection.class).getCopyAPI();
+                long toId;
+                while ((toId = partEnd(conn, lastId, partRows)) > lastId) {
+                    Part part = exportPart(copy, dir, parts.size() + 1, lastId, toId);
+                    parts.add(part);
+                    writeJson(dir.resolve(MANIFEST), new Manifest(1, parts));
+                    rows += part.rows();
+                    bytes += part.bytes();
+                    lastId = toId;
+                    log.info("Exported {} rows={} bytes={}", part.file(), part.rows(), part.bytes());
+                }
+            }
+            if (parts.isEmpty()) writeJson(dir.resolve(MANIFEST), new Manifest(1, parts));
+
+            call.rows = rows;
+            call.bytes = bytes;
+            return new Summary(parts.size(), resumed, rows, bytes, 0, (System.nanoTime() - start) / 1e9);
+        } catch (SQLException | IOException e) {
+            throw new RuntimeException("Archive export failed: " + e.getMessage(), e);
+        } finally {
+            call.end();
+        }
+    }
+
+    // a part can legitimately take longer than the service's socket timeout (db.socket-timeout-seconds)
+    private static void unbounded(Connection conn) throws SQLException {
+        conn.setNetworkTimeout(Runnable::run, 0);
+    }
+
+    /** Highest id among the next {@code partRows} rows after {@code afterId}, or afterId if none are left. */
+    private static long partEnd(Connection conn, long afterId, int partRows) throws SQLException {
+        String sql = "SELECT max(id) FROM (SELECT id FROM midi_files WHERE id > ? ORDER BY id LIMIT ?) next_part";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setLong(1, afterId);
+            ps.setInt(2, partRows);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                long max = rs.getLong(1);
+                return rs.wasNull() ? afterId : max;
+            }
+        }
+    }
+
+    private static Part exportPart(CopyManager copy, Path dir, int number, long fromId, long toId)
+            throws SQLException, IOException {
+        String name = String.format("part-%05d.copy", number);
+        Path tmp = dir.resolve(name + ".tmp");
+        // COPY does not take bind parameters; the ids are longs we produced
+        String sql = "COPY (SELECT " + EXPORT_COLUMNS + " FROM midi_files WHERE id > " + fromId
+                + " AND id <= " + toId + " ORDER BY id) TO STDOUT (FORMAT binary)";
+
+        MessageDigest digest = sha256();
+        long rows;
+        try (OutputStream out = new DigestOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(tmp), BUFFER_BYTES), digest)) {
+            rows = copy.copyOut(sql, out);
+        }
+        long bytes = Files.size(tmp);
+        Files.move(tmp, dir.resolve(name), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return new Part(name, fromId, toId, rows, bytes, HexFormat.of().formatHex(digest.digest()));
+    }
+
+    // -------------------------------------------------------
+    // IMPORT
+    // -------------------------------------------------------
+    Summary importAll(Path dir) {
+        DbCall call = new DbCall("importArchive", null);
+        long start = System.nanoTime();
+        try {
+            if (!Files.exists(dir.resolve(MANIFEST))) throw new IllegalArgumentException("No " + MANIFEST + " in " + dir);
+            Manifest manifest = readManifest(dir);
+            Path progressFile = dir.resolve(PROGRESS);
+            List<String> imported = Files.exists(progressFile)
+                    ? new ArrayList<>(MAPPER.readValue(progressFile.toFile(), Progress.class).imported())
+                    : new ArrayList<>();
+            int resumed = 0;
+            long rows = 0, bytes = 0, duplicates = 0;
+
+            try (Connection conn = db.connect()) {
+                unbounded(conn);
+                CopyManager copy = conn.unwrap(PGConnection.class).getCopyAPI();
+                for (Part part : manifest.parts()) {
+                    if (imported.contains(part.file())) {
+                        resumed++;
+                        continue;
+                    }
+                    long inserted = importPart(conn, copy, dir, part);
+                    imported.add(part.file());
+                    writeJson(progressFile, new Progress(imported));
+                    rows += inserted;
+                    bytes += part.bytes();
+                    duplicates += part.rows() - inserted;
+                    log.info("Imported {} rows={} skipped={}", part.file(), inserted, part.rows() - inserted);
+                }
+            }
+
+            call.rows = rows;
+            call.bytes = bytes;
+            return new Summary(manifest.parts().size(), resumed, rows, bytes, duplicates,
+                    (System.nanoTime() - start) / 1e9);
+        } catch (SQLException | IOException e) {
+            throw new RuntimeException("Archive import failed: " + e.getMessage(), e);
+        } finally {
+            call.end();
+        }
+    }
+
+    /** Stages and merges one part in a single transaction; returns the rows actually inserted. */
+    private static long importPart(Connection conn, CopyManager copy, Path dir, Part part)
+            throws SQLException, IOException {
+        Path file = dir.resolve(part.file());
+        if (Files.size(file) != part.bytes()) {
+            throw new IllegalStateException(part.file() + " has " + Files.size(file) + " bytes, manifest says " + part.bytes());
+        }
+
+        conn.setAutoCommit(false);
+        try {
+            try (Statement st = conn.createStatement()) {
+                st.execute("CREATE TEMP TABLE midi_import (filename TEXT, data BYTEA, uploaded_at TIMESTAMPTZ, "
+                        + "bar_index BYTEA, content_hash BYTEA) ON COMMIT DROP");
+            }
+
+            MessageDigest digest = sha256();
+            long staged;
+            try (InputStream in = new DigestInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_BYTES), digest)) {
+                staged = copy.copyIn("COPY midi_import (" + COLUMNS + ") FROM STDIN (FORMAT binary)", in, BUFFER_BYTES);
+            }
+            String fileHash = HexFormat.of().formatHex(digest.digest());
+            if (!fileHash.equals(part.sha256())) {
+                throw new IllegalStateException(part.file() + " does not match its manifest hash");
+            }
+            if (staged != part.rows()) {
+                throw new IllegalStateException(part.file() + " staged " + staged + " rows, manifest says " + part.rows());
+            }
+
+            try (Statement st = conn.createStatement()) {
+                try (ResultSet rs = st.executeQuery(
+                        "SELECT count(*) FROM midi_import WHERE content_hash IS DISTINCT FROM sha256(data)")) {
+                    rs.next();
+                    if (rs.getLong(1) > 0) {
+                        throw new IllegalStateException(part.file() + ": " + rs.getLong(1) + " rows fail the content hash check");
+                    }
+                }
+                try (ResultSet rs = st.executeQuery("SELECT count(*) FROM midi_import i JOIN midi_files f USING (filename) "
+                        + "WHERE f.content_hash IS DISTINCT FROM i.content_hash")) {
+                    rs.next();
+                    if (rs.getLong(1) > 0) {
+                        log.warn("{}: {} files already exist here with different content; keeping the existing ones",
+                                part.file(), rs.getLong(1));
+                    }
+                }
+                long inserted = st.executeUpdate("INSERT INTO midi_files (" + COLUMNS + ") SELECT " + COLUMNS
+                        + " FROM midi_import ON CONFLICT (filename) DO NOTHING");
+                conn.commit();
+                return inserted;
+            }
+        } catch (SQLException | IOException | RuntimeException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    // -------------------------------------------------------
+    // HELPERS
+    // -------------------------------------------------------
+    private static Manifest readManifest(Path dir) throws IOException {
+        Path file = dir.resolve(MANIFEST);
+        return Files.exists(file) ? MAPPER.readValue(file.toFile(), Manifest.class) : new Manifest(1, List.of());
+    }
+
+    /** Writes next to the target and renames, so an interruption never leaves half a file. */
+    private static void writeJson(Path file, Object value) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        MAPPER.writeValue(tmp.toFile(), value);
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Manual entry point:
+     * {@code CopyArchive export <dir> [partRows]} or {@code CopyArchive import <dir>}.
+     */
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: CopyArchive export <dir> [partRows=5000] | import <dir>");
+            return;
+        }
+        MidiDBOperations ops = new MidiDBOperations(new MidiDBConnector());
+        Path dir = Path.of(args[1]);
+        Summary s = args[0].equals("import")
+                ? ops.importArchive(dir)
+                : ops.exportArchive(dir, args.length > 2 ? Integer.parseInt(args[2]) : 5000);
+        System.out.println(args[0] + ": " + s);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.schoolproject.db;
+
+import com.schoolproject.jfr.DbOperationEvent;
+import com.schoolproject.metrics.Metrics;
+
+/**
+ * Instrumentation for one MidiDBOperations call: feeds the per-method
+ * latency histogram and, while a flight recording is running, emits a
+ * {@link DbOperationEvent} with the rows and bytes the call moved.
+ */
+final class DbCall {
+
+    private final String method;
+    private final String filename;
+    private final long startNanos = System.nanoTime();
+    private final DbOperationEvent event = new DbOperationEvent();
+
+    long rows;
+    long bytes;
+
+    DbCall(String method, String filename) {
+        this.method = method;
+        this.filename = filename;
+        event.begin();
+    }
+
+    void end() {
+        Metrics.DB_CALL.labels(method).observeSince(startNanos);
+        if (event.shouldCommit()) {
+            event.method = method;
+            event.filename = filename;
+            event.rows = rows;
+            event.bytes = bytes;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.schoolproject.db;
+
+/**
+ * The database could not be reached: the circuit is open, or a connection
+ * or network-level failure occurred. Callers may serve cached data or
+ * answer 503 with {@link #retryAfterSeconds}.
+ */
+public class DbUnavailableException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int retryAfterSeconds;
+
+    public DbUnavailableException(String message, int retryAfterSeconds, Throwable cause) {
+        super(message, cause);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public int retryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
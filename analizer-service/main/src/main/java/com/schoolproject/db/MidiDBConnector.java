@@ -4,19 +4,60 @@ import java.io.InputStream;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientConnectionException;
 import java.util.Properties;
 
+import com.schoolproject.ServiceConfig;
+import com.schoolproject.metrics.Gauge;
+import com.schoolproject.metrics.Metrics;
+
 /**
  * Handles database connectivity for the MIDI application.
  * Loads PostgreSQL credentials from application.properties.
+ *
+ * Connections use short connect and socket timeouts and go through a
+ * {@link CircuitBreaker}: while the database is unreachable, connect()
+ * fails immediately with {@link DbUnavailableException} instead of
+ * blocking the caller for the full timeout.
  */
 public class MidiDBConnector {
 
-    private static final String URL;
-    private static final String USER;
-    private static final String PASS;
+    private final String url;
+    private final Properties connectProps = new Properties();
+    private final CircuitBreaker breaker = new CircuitBreaker(
+            ServiceConfig.getInt("db.breaker.failures", 3),
+            ServiceConfig.getLong("db.breaker.window-ms", 10_000),
+            ServiceConfig.getLong("db.breaker.open-ms", 5_000));
+
+    public MidiDBConnector() {
+        this(loadProperties());
+    }
+
+    private MidiDBConnector(Properties props) {
+        this(props.getProperty("db.url"), props.getProperty("db.user"), props.getProperty("db.pass"));
+    }
 
-    static {
+    /** Connector for explicit credentials (e.g. a database behind a local proxy). */
+    public MidiDBConnector(String url, String user, String pass) {
+        if (url == null || user == null || pass == null) {
+            throw new RuntimeException(
+                "Missing required DB properties in application.properties: " +
+                "db.url, db.user, db.pass"
+            );
+        }
+        this.url = url;
+        connectProps.setProperty("user", user);
+        connectProps.setProperty("password", pass);
+        // pgjdbc timeouts are in seconds; 0 would mean wait forever
+        connectProps.setProperty("connectTimeout", ServiceConfig.get("db.connect-timeout-seconds", "3"));
+        connectProps.setProperty("loginTimeout", ServiceConfig.get("db.connect-timeout-seconds", "3"));
+        connectProps.setProperty("socketTimeout", ServiceConfig.get("db.socket-timeout-seconds", "10"));
+
+        Metrics.DB_CIRCUIT_STATE.register("", new Gauge(() -> breaker.state().ordinal()));
+    }
+
+    private static Properties loadProperties() {
         Properties props = new Properties();
 
         try (InputStream in = MidiDBConnector.class.getResourceAsStream("/application.properties")) {
@@ -35,24 +76,46 @@ public class MidiDBConnector {
                 "Failed to load database configuration: " + e.getMessage(), e
             );
         }
-
-        URL  = props.getProperty("db.url");
-        USER = props.getProperty("db.user");
-        PASS = props.getProperty("db.pass");
-
-        if (URL == null || USER == null || PASS == null) {
-            throw new RuntimeException(
-                "Missing required DB properties in application.properties: " +
-                "db.url, db.user, db.pass"
-            );
-        }
+        return props;
     }
 
     /**
      * Opens and returns a JDBC connection using loaded properties.
+     *
+     * @throws DbUnavailableException if the circuit is open or the database cannot be reached
      */
     public Connection connect() throws SQLException {
-        return DriverManager.getConnection(URL, USER, PASS);
+        if (!breaker.tryAcquire()) {
+            Metrics.DB_CIRCUIT_REJECTED.inc();
+            throw new DbUnavailableException("Database unavailable (circuit open)", breaker.retryAfterSeconds(), null);
+        }
+        try {
+            Connection conn = DriverManager.getConnection(url, connectProps);
+            breaker.onSuccess();
+            return conn;
+        } catch (SQLException e) {
+            breaker.onFailure();
+            throw new DbUnavailableException("Database connection failed: " + e.getMessage(),
+                    breaker.retryAfterSeconds(), e);
+        }
+    }
+
+    /**
+     * Reports a failed statement. Returns true, and counts it against the
+     * circuit, if it was a connection-level failure (lost connection,
+     * network timeout) rather than an error in the statement itself.
+     */
+    public boolean reportFailure(SQLException e) {
+        String state = e.getSQLState();
+        boolean unavailable = e instanceof SQLTransientConnectionException
+                || e instanceof SQLTimeoutException
+                || (state != null && (state.startsWith("08") || state.startsWith("57P")));
+        if (unavailable) breaker.onFailure();
+        return unavailable;
+    }
+
+    public CircuitBreaker breaker() {
+        return breaker;
     }
 
     /**
@@ -61,7 +124,7 @@ public class MidiDBConnector {
     public static void main(String[] args) {
         try (Connection conn = new MidiDBConnector().connect()) {
             System.out.println("✅ Connection successful: " + conn.getMetaData().getURL());
-        } catch (SQLException e) {
+        } catch (SQLException | DbUnavailableException e) {
             System.err.println("❌ Connection failed: " + e.getMessage());
         }
     }
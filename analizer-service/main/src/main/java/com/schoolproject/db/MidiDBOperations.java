@@ -3,6 +3,8 @@ package com.schoolproject.db;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -11,7 +13,17 @@ import java.sql.Statement;
 import java.sql.Timestamp;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.schoolproject.metrics.Metrics;
+import com.schoolproject.smf.BarIndex;
 
 /**
  * Repository class for managing MIDI files in the PostgreSQL database.
@@ -19,6 +31,8 @@ import java.util.List;
  */
 public class MidiDBOperations {
 
+    private static final Logger log = LoggerFactory.getLogger(MidiDBOperations.class);
+
     private final MidiDBConnector db;
 
     public MidiDBOperations(MidiDBConnector dbConnector) {
@@ -39,27 +53,54 @@ public class MidiDBOperations {
                         uploaded_at TIMESTAMPTZ DEFAULT NOW()
                     );
                     CREATE INDEX IF NOT EXISTS idx_midi_uploaded_at ON midi_files (uploaded_at DESC);
+                    -- bar -> byte offset index for windowed analysis (smf.BarIndex)
+                    ALTER TABLE midi_files ADD COLUMN IF NOT EXISTS bar_index BYTEA;
+                    -- SHA-256 of data, checked by bulk import (NULL rows are backfilled before each lookup)
+                    ALTER TABLE midi_files ADD COLUMN IF NOT EXISTS content_hash BYTEA;
+                    CREATE INDEX IF NOT EXISTS idx_midi_content_hash ON midi_files (content_hash);
                 """;
+        // keep new files uncompressed so substring() reads only the TOAST chunks it needs;
+        // altered only when needed, as ALTER TABLE takes an ACCESS EXCLUSIVE lock
+        String storage = "SELECT attstorage FROM pg_attribute "
+                + "WHERE attrelid = 'midi_files'::regclass AND attname = 'data'";
         try (Connection conn = db.connect(); Statement st = conn.createStatement()) {
             st.execute(ddl);
+            try (ResultSet rs = st.executeQuery(storage)) {
+                if (rs.next() && !"e".equals(rs.getString(1))) {
+                    st.execute("ALTER TABLE midi_files ALTER COLUMN data SET STORAGE EXTERNAL");
+                    log.info("Set midi_files.data storage to EXTERNAL");
+                }
+            }
         } catch (SQLException e) {
-            throw new RuntimeException("Failed to ensure table: " + e.getMessage(), e);
+            throw failed("Failed to ensure table", e);
         }
     }
 
     // ---------- HELPERS ----------
 
+    /** Wraps a failed statement; connection-level failures become {@link DbUnavailableException}. */
+    private RuntimeException failed(String what, SQLException e) {
+        String message = what + ": " + e.getMessage();
+        if (db.reportFailure(e)) return new DbUnavailableException(message, db.breaker().retryAfterSeconds(), e);
+        return new RuntimeException(message, e);
+    }
+
     /** Returns true if a row with this exact (case-sensitive) filename exists. */
     public boolean exists(String filename) {
+        DbCall call = new DbCall("exists", filename);
         String sql = "SELECT 1 FROM midi_files WHERE filename = ? LIMIT 1";
         try (Connection conn = db.connect();
                 PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, filename);
             try (ResultSet rs = ps.executeQuery()) {
-                return rs.next();
+                boolean found = rs.next();
+                call.rows = found ? 1 : 0;
+                return found;
             }
         } catch (SQLException e) {
-            throw new RuntimeException("Exists check failed: " + e.getMessage(), e);
+            throw failed("Exists check failed", e);
+        } finally {
+            call.end();
         }
     }
 
@@ -70,16 +111,20 @@ public class MidiDBOperations {
      * already exists.
      */
     public void save(String filename, Path midiPath) {
+        DbCall call = new DbCall("save", filename);
         try {
             byte[] bytes = Files.readAllBytes(midiPath);
-            String sql = "INSERT INTO midi_files (filename, data, uploaded_at) VALUES (?, ?, ?)";
+            String sql = "INSERT INTO midi_files (filename, data, uploaded_at, bar_index, content_hash) VALUES (?, ?, ?, ?, ?)";
             try (Connection conn = db.connect();
                     PreparedStatement ps = conn.prepareStatement(sql)) {
                 ps.setString(1, filename);
                 ps.setBytes(2, bytes);
                 ps.setTimestamp(3, Timestamp.from(Instant.now()));
-                ps.executeUpdate();
-                System.out.println("✅ Saved '" + filename + "' to DB (" + bytes.length + " bytes).");
+                ps.setBytes(4, buildBarIndex(filename, bytes));
+                ps.setBytes(5, sha256(bytes));
+                call.rows = ps.executeUpdate();
+                call.bytes = bytes.length;
+                log.info("Saved file={} bytes={}", filename, bytes.length);
             }
         } catch (IOException e) {
             throw new RuntimeException("Failed to read file: " + midiPath + "\n" + e.getMessage(), e);
@@ -88,29 +133,148 @@ public class MidiDBOperations {
             if ("23505".equals(e.getSQLState())) {
                 throw new IllegalStateException("A file named '" + filename + "' already exists.", e);
             }
-            throw new RuntimeException("Database insert failed: " + e.getMessage(), e);
+            throw failed("Database insert failed", e);
+        } finally {
+            call.end();
+        }
+    }
+
+    /** A file to store with {@link #saveBatch}; {@code contentHash} is the SHA-256 of data. */
+    public record NewFile(String filename, byte[] data, byte[] contentHash, byte[] barIndex) {
+    }
+
+    public enum StoreStatus { STORED, DUPLICATE_CONTENT, NAME_TAKEN }
+
+    /** Per-file result of {@link #saveBatch}; {@code existing} names the stored copy of a duplicate. */
+    public record StoreOutcome(StoreStatus status, String existing) {
+    }
+
+    /**
+     * Stores a batch of files in one transaction with a single batched INSERT.
+     * Files whose content is already stored (by content hash) are not
+     * inserted again; files whose name is taken are skipped. Outcomes are in
+     * the order of {@code files}. Rows still without a content hash are
+     * hashed first, so content stored by older writers is recognised too.
+     */
+    public List<StoreOutcome> saveBatch(List<NewFile> files) {
+        backfillContentHashes();
+        DbCall call = new DbCall("saveBatch", null);
+        StoreOutcome[] outcomes = new StoreOutcome[files.size()];
+        try (Connection conn = db.connect()) {
+            conn.setAutoCommit(false);
+            try {
+                // 1) content already stored under some name
+                Map<String, String> existing = new HashMap<>();
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "SELECT filename, content_hash FROM midi_files WHERE content_hash = ANY(?)")) {
+                    // byte[][], not Object[]: pgjdbc only encodes bytea[] from a byte[][]
+                    byte[][] hashes = new byte[files.size()][];
+                    for (int i = 0; i < hashes.length; i++) hashes[i] = files.get(i).contentHash();
+                    ps.setArray(1, conn.createArrayOf("bytea", hashes));
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) existing.put(HexFormat.of().formatHex(rs.getBytes(2)), rs.getString(1));
+                    }
+                }
+
+                // 2) one batched insert for the rest
+                String sql = "INSERT INTO midi_files (filename, data, uploaded_at, bar_index, content_hash) "
+                        + "VALUES (?, ?, ?, ?, ?) ON CONFLICT (filename) DO NOTHING";
+                List<Integer> inserted = new ArrayList<>();
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    Timestamp now = Timestamp.from(Instant.now());
+                    for (int i = 0; i < files.size(); i++) {
+                        NewFile f = files.get(i);
+                        String stored = existing.get(HexFormat.of().formatHex(f.contentHash()));
+                        if (stored != null) {
+                            outcomes[i] = new StoreOutcome(StoreStatus.DUPLICATE_CONTENT, stored);
+                            continue;
+                        }
+                        ps.setString(1, f.filename());
+                        ps.setBytes(2, f.data());
+                        ps.setTimestamp(3, now);
+                        ps.setBytes(4, f.barIndex());
+                        ps.setBytes(5, f.contentHash());
+                        ps.addBatch();
+                        inserted.add(i);
+                        call.bytes += f.data().length;
+                    }
+                    int[] counts = inserted.isEmpty() ? new int[0] : ps.executeBatch();
+                    for (int k = 0; k < counts.length; k++) {
+                        int i = inserted.get(k);
+                        boolean stored = counts[k] > 0 || counts[k] == Statement.SUCCESS_NO_INFO;
+                        outcomes[i] = new StoreOutcome(stored ? StoreStatus.STORED : StoreStatus.NAME_TAKEN,
+                                stored ? null : files.get(i).filename());
+                        if (stored) call.rows++;
+                    }
+                }
+                conn.commit();
+                log.info("Saved batch files={} stored={}", files.size(), call.rows);
+                return List.of(outcomes);
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw failed("Database batch insert failed", e);
+        } finally {
+            call.end();
+        }
+    }
+
+    // rows hashed per statement (and per transaction) in backfillContentHashes
+    private static final int HASH_BACKFILL_ROWS = 256;
+
+    /**
+     * Sets content_hash on every row that has none, {@code HASH_BACKFILL_ROWS}
+     * rows per statement so no single transaction hashes (or locks) the whole
+     * table. Cheap when nothing is missing: one index lookup. Returns the
+     * number of rows hashed.
+     */
+    public long backfillContentHashes() {
+        DbCall call = new DbCall("backfillHashes", null);
+        String sql = "UPDATE midi_files SET content_hash = sha256(data) WHERE content_hash IS NULL AND id IN "
+                + "(SELECT id FROM midi_files WHERE content_hash IS NULL ORDER BY id LIMIT ?)";
+        try (Connection conn = db.connect();
+                PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, HASH_BACKFILL_ROWS);
+            int rows;
+            do {
+                rows = ps.executeUpdate();
+                call.rows += rows;
+            } while (rows > 0);
+            if (call.rows > 0) log.info("Backfilled content_hash rows={}", call.rows);
+            return call.rows;
+        } catch (SQLException e) {
+            throw failed("Content hash backfill failed", e);
+        } finally {
+            call.end();
         }
     }
 
     /** Deletes a file by its exact (case-sensitive) name. */
     public boolean delete(String filename) {
+        DbCall call = new DbCall("delete", filename);
         String sql = "DELETE FROM midi_files WHERE filename = ?";
         try (Connection conn = db.connect();
                 PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, filename);
             int rows = ps.executeUpdate();
+            call.rows = rows;
             if (rows > 0)
-                System.out.println("🗑️ Deleted '" + filename + "' from DB.");
+                log.info("Deleted file={}", filename);
             else
-                System.out.println("⚠️ No file named '" + filename + "' found.");
+                log.debug("Delete found no file={}", filename);
             return rows > 0;
         } catch (SQLException e) {
-            throw new RuntimeException("Database delete failed: " + e.getMessage(), e);
+            throw failed("Database delete failed", e);
+        } finally {
+            call.end();
         }
     }
 
     /** Loads a file’s binary data by exact name (case-sensitive). */
     public byte[] load(String filename) {
+        DbCall call = new DbCall("load", filename);
         String sql = "SELECT data FROM midi_files WHERE filename = ? LIMIT 1";
         try (Connection conn = db.connect();
                 PreparedStatement ps = conn.prepareStatement(sql)) {
@@ -118,34 +282,198 @@ public class MidiDBOperations {
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
                     byte[] bytes = rs.getBytes("data");
-                    System.out.println("📥 Loaded '" + filename + "' (" + bytes.length + " bytes).");
+                    Metrics.BYTES_LOADED.add(bytes.length);
+                    call.rows = 1;
+                    call.bytes = bytes.length;
+                    log.debug("Loaded file={} bytes={}", filename, bytes.length);
                     return bytes;
                 }
             }
         } catch (SQLException e) {
-            throw new RuntimeException("Database load failed: " + e.getMessage(), e);
+            throw failed("Database load failed", e);
+        } finally {
+            call.end();
         }
-        System.out.println("⚠️ No file named '" + filename + "' found.");
+        log.debug("Load found no file={}", filename);
         return null;
     }
 
-    /** Downloads the specified MIDI file from DB and saves it locally. */
+    /** Metadata of a stored file: SHA-256 of its data and its size in bytes. */
+    public record FileInfo(byte[] contentHash, long size) {
+    }
+
+    /**
+     * Content hash and size of a stored file without transferring its data;
+     * null if the file does not exist. Rows stored before content_hash
+     * existed are hashed by the server on first use and the hash is kept.
+     */
+    public FileInfo loadInfo(String filename) {
+        DbCall call = new DbCall("loadInfo", filename);
+        try (Connection conn = db.connect()) {
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "SELECT content_hash, octet_length(data) FROM midi_files WHERE filename = ? LIMIT 1")) {
+                ps.setString(1, filename);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (!rs.next()) return null;
+                    call.rows = 1;
+                    byte[] hash = rs.getBytes(1);
+                    if (hash != null) return new FileInfo(hash, rs.getLong(2));
+                }
+            }
+            try (PreparedStatement ps = conn.prepareStatement("UPDATE midi_files SET content_hash = sha256(data) "
+                    + "WHERE filename = ? RETURNING content_hash, octet_length(data)")) {
+                ps.setString(1, filename);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return rs.next() ? new FileInfo(rs.getBytes(1), rs.getLong(2)) : null;
+                }
+            }
+        } catch (SQLException e) {
+            throw failed("Database file info lookup failed", e);
+        } finally {
+            call.end();
+        }
+    }
+
+    /** Downloads the specified MIDI file from DB and saves it locally; the DB read is recorded as "load". */
     public boolean download(String filename, Path destination) {
         byte[] data = load(filename);
-        if (data == null)
-            return false;
+        if (data == null) return false;
         try {
             if (destination.getParent() != null) {
                 Files.createDirectories(destination.getParent());
             }
             Files.write(destination, data);
-            System.out.println("💾 Downloaded '" + filename + "' → " + destination);
+            log.info("Downloaded file={} to={}", filename, destination);
             return true;
         } catch (IOException e) {
             throw new RuntimeException("Failed to write file: " + destination + "\n" + e.getMessage(), e);
         }
     }
 
+    // ---------- BAR INDEX / RANGES ----------
+
+    /** Returned by {@link #loadBarIndex} when the file exists but has no index yet. */
+    public static final byte[] NO_INDEX = new byte[0];
+
+    /**
+     * Loads the stored bar index: null if the file does not exist,
+     * {@link #NO_INDEX} if it was stored before indexes existed.
+     */
+    public byte[] loadBarIndex(String filename) {
+        DbCall call = new DbCall("loadBarIndex", filename);
+        String sql = "SELECT bar_index FROM midi_files WHERE filename = ? LIMIT 1";
+        try (Connection conn = db.connect();
+                PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, filename);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return null;
+                byte[] index = rs.getBytes(1);
+                call.rows = 1;
+                call.bytes = index == null ? 0 : index.length;
+                return index == null ? NO_INDEX : index;
+            }
+        } catch (SQLException e) {
+            throw failed("Database bar index load failed", e);
+        } finally {
+            call.end();
+        }
+    }
+
+    public void saveBarIndex(String filename, byte[] index) {
+        DbCall call = new DbCall("saveBarIndex", filename);
+        String sql = "UPDATE midi_files SET bar_index = ? WHERE filename = ?";
+        try (Connection conn = db.connect();
+                PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setBytes(1, index);
+            ps.setString(2, filename);
+            call.rows = ps.executeUpdate();
+            call.bytes = index.length;
+        } catch (SQLException e) {
+            throw failed("Database bar index update failed", e);
+        } finally {
+            call.end();
+        }
+    }
+
+    /**
+     * Loads byte ranges {@code [start[i], end[i])} of a file in one round trip,
+     * without transferring the rest of it. Returns null if the file does not exist.
+     */
+    public byte[][] loadRanges(String filename, int[] start, int[] end) {
+        DbCall call = new DbCall("loadRanges", filename);
+        StringBuilder sql = new StringBuilder("SELECT ");
+        for (int i = 0; i < start.length; i++) {
+            sql.append(i == 0 ? "" : ", ").append("substring(data FROM ? FOR ?)");
+        }
+        if (start.length == 0) sql.append("1");
+        sql.append(" FROM midi_files WHERE filename = ? LIMIT 1");
+
+        try (Connection conn = db.connect();
+                PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+            int p = 1;
+            for (int i = 0; i < start.length; i++) {
+                ps.setInt(p++, start[i] + 1); // SQL offsets are 1-based
+                ps.setInt(p++, end[i] - start[i]);
+            }
+            ps.setString(p, filename);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return null;
+                byte[][] ranges = new byte[start.length][];
+                long total = 0;
+                for (int i = 0; i < start.length; i++) {
+                    ranges[i] = rs.getBytes(i + 1);
+                    total += ranges[i].length;
+                }
+                Metrics.BYTES_LOADED.add(total);
+                call.rows = 1;
+                call.bytes = total;
+                return ranges;
+            }
+        } catch (SQLException e) {
+            throw failed("Database range load failed", e);
+        } finally {
+            call.end();
+        }
+    }
+
+    /** Builds the bar index for a new file; files our reader can't parse are stored without one. */
+    public static byte[] buildBarIndex(String filename, byte[] bytes) {
+        try {
+            return BarIndex.build(bytes).toBytes();
+        } catch (RuntimeException e) {
+            log.warn("No bar index for file={}: {}", filename, e.getMessage());
+            return null;
+        }
+    }
+
+    /** Content hash as stored in {@code content_hash}. */
+    public static byte[] sha256(byte[] bytes) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(bytes);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    // ---------- BULK COPY ----------
+
+    /**
+     * Exports the whole table into {@code dir} as binary COPY parts of
+     * {@code partRows} rows plus a manifest; re-running resumes after the
+     * last completed part.
+     */
+    public CopyArchive.Summary exportArchive(Path dir, int partRows) {
+        return new CopyArchive(db).export(dir, partRows);
+    }
+
+    /**
+     * Imports an exported archive. Parts are hash-checked, staged and merged
+     * with ON CONFLICT DO NOTHING, so an interrupted import can simply be re-run.
+     */
+    public CopyArchive.Summary importArchive(Path dir) {
+        return new CopyArchive(db).importAll(dir);
+    }
+
     public byte[] downloadBytes(String filename) {
         return load(filename);
     }
@@ -153,6 +481,7 @@ public class MidiDBOperations {
     // Search functionality
     public List<String> search(String query, int limit) {
         List<String> result = new ArrayList<>();
+        DbCall call = new DbCall("search", query);
         String sql = "SELECT filename FROM midi_files WHERE filename ILIKE ? ORDER BY uploaded_at DESC LIMIT ?";
         try (Connection conn = db.connect();
                 PreparedStatement ps = conn.prepareStatement(sql)) {
@@ -163,14 +492,52 @@ public class MidiDBOperations {
                     result.add(rs.getString("filename"));
             }
         } catch (SQLException e) {
-            throw new RuntimeException("Search failed: " + e.getMessage(), e);
+            throw failed("Search failed", e);
+        } finally {
+            call.rows = result.size();
+            call.end();
         }
         return result;
     }
 
+    // rows per cursor fetch in forEachFile
+    private static final int FETCH_ROWS = 64;
+
+    /**
+     * Streams every stored file (oldest first) to {@code visitor} over one
+     * server-side cursor, instead of a listAll plus one load per file.
+     * Only {@code FETCH_ROWS} files are held in memory at a time.
+     */
+    public void forEachFile(BiConsumer<String, byte[]> visitor) {
+        DbCall call = new DbCall("forEachFile", null);
+        String sql = "SELECT filename, data FROM midi_files ORDER BY id";
+        try (Connection conn = db.connect()) {
+            conn.setAutoCommit(false); // the driver only uses a cursor inside a transaction
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setFetchSize(FETCH_ROWS);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        byte[] bytes = rs.getBytes(2);
+                        call.rows++;
+                        call.bytes += bytes.length;
+                        visitor.accept(rs.getString(1), bytes);
+                    }
+                }
+            } finally {
+                conn.rollback();
+            }
+            Metrics.BYTES_LOADED.add(call.bytes);
+        } catch (SQLException e) {
+            throw failed("Failed to stream files", e);
+        } finally {
+            call.end();
+        }
+    }
+
     /** Lists all stored MIDI filenames (newest first). */
     public List<String> listAll() {
         List<String> result = new ArrayList<>();
+        DbCall call = new DbCall("listAll", null);
         String sql = "SELECT filename FROM midi_files ORDER BY uploaded_at DESC";
         try (Connection conn = db.connect();
                 PreparedStatement ps = conn.prepareStatement(sql);
@@ -178,7 +545,10 @@ public class MidiDBOperations {
             while (rs.next())
                 result.add(rs.getString("filename"));
         } catch (SQLException e) {
-            throw new RuntimeException("Failed to list files: " + e.getMessage(), e);
+            throw failed("Failed to list files", e);
+        } finally {
+            call.rows = result.size();
+            call.end();
         }
         return result;
     }
@@ -0,0 +1,37 @@
+package com.schoolproject.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** One complete file analysis (parse + event loop). */
+@Name("com.schoolproject.Analysis")
+@Label("MIDI Analysis")
+@Category({"TheoryBench", "Analyzer"})
+@Description("Parsing and analysis of one MIDI file")
+@StackTrace(false)
+public class AnalysisEvent extends jdk.jfr.Event {
+
+    @Label("File Size")
+    @DataAmount(DataAmount.BYTES)
+    public long fileSize;
+
+    @Label("Note Count")
+    public int noteCount;
+
+    @Label("Max Polyphony")
+    public int maxPolyphony;
+
+    @Label("Timeline Entries")
+    public int timelineEntries;
+
+    @Label("Chord Detections")
+    public long detections;
+
+    @Label("Parsed")
+    @Description("False when the bytes were not a readable MIDI file")
+    public boolean parsed;
+}
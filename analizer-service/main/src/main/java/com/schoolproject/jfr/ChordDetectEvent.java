@@ -0,0 +1,35 @@
+package com.schoolproject.jfr;
+
+import com.schoolproject.ServiceConfig;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A single chord detection. Detection runs once per onset cluster, as a
+ * {@code ChordAnalysisEngine.detectId(pcMask)} lookup, so only every
+ * {@link #SAMPLE_EVERY}th detection per file creates an event at all.
+ */
+@Name("com.schoolproject.ChordDetect")
+@Label("Chord Detection (sampled)")
+@Category({"TheoryBench", "Analyzer"})
+@Description("Sampled chord detection for one onset cluster, via ChordAnalysisEngine.detectId")
+@StackTrace(false)
+public class ChordDetectEvent extends jdk.jfr.Event {
+
+    /** Sampling interval in detections; configured via analyzer.jfr.chord-sample-every. */
+    public static final int SAMPLE_EVERY = Math.max(1, ServiceConfig.getInt("analyzer.jfr.chord-sample-every", 64));
+
+    @Label("Active Notes")
+    public int activeNotes;
+
+    @Label("Tick")
+    @Description("First onset of the cluster")
+    public long tick;
+
+    @Label("Chord")
+    public String chord;
+}
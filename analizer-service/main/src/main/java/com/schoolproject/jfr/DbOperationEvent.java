@@ -0,0 +1,30 @@
+package com.schoolproject.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** One MidiDBOperations call, including connection setup. */
+@Name("com.schoolproject.DbOperation")
+@Label("DB Operation")
+@Category({"TheoryBench", "Database"})
+@Description("A MidiDBOperations call with the rows and bytes it moved")
+@StackTrace(false)
+public class DbOperationEvent extends jdk.jfr.Event {
+
+    @Label("Method")
+    public String method;
+
+    @Label("Filename")
+    public String filename;
+
+    @Label("Rows")
+    public long rows;
+
+    @Label("Bytes")
+    @DataAmount(DataAmount.BYTES)
+    public long bytes;
+}
@@ -0,0 +1,101 @@
+package com.schoolproject.loadtest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiEvent;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Track;
+
+import com.schoolproject.analyzer.ChordTimeline;
+import com.schoolproject.analyzer.MidiDifficultyAnalyzer;
+
+/**
+ * Checks onset clustering on small hand-written files: a chord is detected
+ * from the notes of its own cluster only, at that cluster's tick, and a
+ * rolled chord within the onset window counts once.
+ *
+ * Usage: ChordClusterCheck
+ * Exits non-zero if any check fails.
+ */
+public class ChordClusterCheck {
+
+    private static final int PPQ = 480;   // 120 bpm default tempo: 960 ticks per second
+    private static final int C4 = 60, E4 = 64, G4 = 67, B4 = 71;
+
+    private final MidiDifficultyAnalyzer analyzer = new MidiDifficultyAnalyzer();
+    private int failures;
+
+    // -------------------------------------------------------
+    // CHECKS
+    // -------------------------------------------------------
+    /** E-G-B, then C a second later: the first chord is Emin, without the C. */
+    private void laterOnsetNotInPreviousChord() {
+        ChordTimeline t = analyze(new int[][] {
+                {E4, 0, 1920}, {G4, 0, 1920}, {B4, 0, 1920}, {C4, 960, 1920}});
+        boolean first = t.size() >= 1 && t.tick(0) == 0 && t.chordName(0).startsWith("Emin")
+                && t.pcMask(0) == mask(E4, G4, B4);
+        boolean second = t.size() == 2 && t.tick(1) == 960 && t.pcMask(1) == mask(C4, E4, G4, B4);
+        check("E-G-B then C: " + describe(t), first && second);
+    }
+
+    /** C, E, G a few ms apart: one Cmaj at the first onset. */
+    private void rolledChordOnce() {
+        ChordTimeline t = analyze(new int[][] {{C4, 0, 960}, {E4, 5, 960}, {G4, 10, 960}});
+        check("rolled C-E-G: " + describe(t),
+                t.size() == 1 && t.tick(0) == 0 && t.chordName(0).startsWith("Cmaj") && t.pcMask(0) == mask(C4, E4, G4));
+    }
+
+    // -------------------------------------------------------
+    // HELPERS
+    // -------------------------------------------------------
+    /** Analyzes one track of {note, onTick, offTick} triples. */
+    private ChordTimeline analyze(int[][] notes) {
+        try {
+            Sequence seq = new Sequence(Sequence.PPQ, PPQ);
+            Track track = seq.createTrack();
+            for (int[] n : notes) {
+                track.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_ON, 0, n[0], 90), n[1]));
+                track.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_OFF, 0, n[0], 0), n[2]));
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            MidiSystem.write(seq, 1, out);
+            return analyzer.analyzeBytes(out.toByteArray()).chordTimeline;
+        } catch (InvalidMidiDataException | IOException e) {
+            throw new RuntimeException("Failed to build test file: " + e.getMessage(), e);
+        }
+    }
+
+    private static int mask(int... notes) {
+        int m = 0;
+        for (int n : notes) m |= 1 << (n % 12);
+        return m;
+    }
+
+    private static String describe(ChordTimeline t) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < t.size(); i++) {
+            sb.append(i == 0 ? "" : ", ").append(t.chordName(i)).append('@').append(t.tick(i))
+                    .append(" mask=").append(Integer.toBinaryString(t.pcMask(i)));
+        }
+        return sb.append(']').toString();
+    }
+
+    private void check(String what, boolean ok) {
+        System.out.println((ok ? "OK    " : "FAIL  ") + what);
+        if (!ok) failures++;
+    }
+
+    // -------------------------------------------------------
+    // CLI
+    // -------------------------------------------------------
+    public static void main(String[] args) {
+        ChordClusterCheck check = new ChordClusterCheck();
+        check.laterOnsetNotInPreviousChord();
+        check.rolledChordOnce();
+        if (check.failures > 0) System.exit(1);
+    }
+}
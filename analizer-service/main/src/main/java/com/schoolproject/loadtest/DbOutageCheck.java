@@ -0,0 +1,187 @@
+package com.schoolproject.loadtest;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.schoolproject.ServiceConfig;
+import com.schoolproject.db.MidiDBConnector;
+import com.schoolproject.db.MidiDBOperations;
+import com.schoolproject.web.WebServer;
+
+/**
+ * Takes the database away from a running service and checks that it stays
+ * responsive: an in-process server talks to the configured database through
+ * a {@link FaultProxy}, which is switched to BLACKHOLE (or REFUSE) for the
+ * outage and back to PASS afterwards.
+ *
+ * During the outage every request must answer 200 (served stale) within
+ * {@code --max-ms}; after it, the stale entries must be revalidated in the
+ * background so responses are fresh again within {@code --recover} seconds.
+ *
+ * Usage: DbOutageCheck [--port 3102] [--file name.mid] [--mode blackhole|refuse]
+ *                      [--outage 20] [--recover 30] [--max-ms 4000]
+ * Uses db.url / db.user / db.pass from application.properties. The proxy
+ * listens on 127.0.0.1, so the URL needs {@code sslmode=require} rather
+ * than verify-full; for Neon the endpoint id is passed in {@code options}
+ * since SNI no longer carries it. Exits non-zero if a check fails.
+ */
+public class DbOutageCheck {
+
+    private static final Pattern PG_URL = Pattern.compile("jdbc:postgresql://([^/:?]+)(?::(\\d+))?(.*)");
+
+    private final HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+
+    // -------------------------------------------------------
+    // ONE PHASE
+    // -------------------------------------------------------
+    private static final class Phase {
+        final String name;
+        final Map<String, Integer> statuses = new TreeMap<>();
+        int requests;
+        int stale;
+        long maxMs;
+
+        Phase(String name) {
+            this.name = name;
+        }
+
+        void record(int status, boolean wasStale, long ms) {
+            requests++;
+            statuses.merge(String.valueOf(status), 1, Integer::sum);
+            if (wasStale) stale++;
+            maxMs = Math.max(maxMs, ms);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-8s requests=%d statuses=%s stale=%d maxMs=%d", name, requests, statuses, stale, maxMs);
+        }
+    }
+
+    private record Response(int status, boolean stale, long ms) {
+    }
+
+    private Response get(String url) {
+        long t0 = System.nanoTime();
+        try {
+            HttpResponse<byte[]> res = http.send(HttpRequest.newBuilder(URI.create(url))
+                    .timeout(Duration.ofSeconds(30)).GET().build(), HttpResponse.BodyHandlers.ofByteArray());
+            boolean stale = res.headers().firstValue("X-Stale").isPresent();
+            return new Response(res.statusCode(), stale, (System.nanoTime() - t0) / 1_000_000);
+        } catch (Exception e) {
+            return new Response(-1, false, (System.nanoTime() - t0) / 1_000_000);
+        }
+    }
+
+    /** Requests every URL in turn for {@code seconds}, or until {@code stopWhenFresh} and a full round was fresh. */
+    private Phase run(String name, List<String> urls, int seconds, boolean stopWhenFresh) throws InterruptedException {
+        Phase phase = new Phase(name);
+        long end = System.nanoTime() + seconds * 1_000_000_000L;
+        while (System.nanoTime() < end) {
+            boolean allFresh = true;
+            for (String url : urls) {
+                Response r = get(url);
+                phase.record(r.status(), r.stale(), r.ms());
+                allFresh &= r.status() == 200 && !r.stale();
+            }
+            if (stopWhenFresh && allFresh) break;
+            Thread.sleep(200);
+        }
+        return phase;
+    }
+
+    /** The configured URL with host and port replaced by the proxy's. */
+    static String throughProxy(String url, int proxyPort) {
+        Matcher m = PG_URL.matcher(url);
+        if (!m.matches()) throw new IllegalArgumentException("Not a jdbc:postgresql URL: " + url);
+        String host = m.group(1);
+        String rest = m.group(3);
+        if (host.endsWith(".neon.tech") && !rest.contains("options=")) {
+            String endpoint = host.substring(0, host.indexOf('.')).replace("-pooler", "");
+            rest += (rest.contains("?") ? "&" : "?") + "options=endpoint%3D" + endpoint;
+        }
+        return "jdbc:postgresql://127.0.0.1:" + proxyPort + rest;
+    }
+
+    // -------------------------------------------------------
+    // CLI
+    // -------------------------------------------------------
+    public static void main(String[] args) throws Exception {
+        var opts = LoadTestDriver.parseArgs(args);
+        int port = Integer.parseInt(opts.getOrDefault("port", "3102"));
+        FaultProxy.Mode outageMode = FaultProxy.Mode.valueOf(opts.getOrDefault("mode", "blackhole").toUpperCase());
+        int outage = Integer.parseInt(opts.getOrDefault("outage", "20"));
+        int recover = Integer.parseInt(opts.getOrDefault("recover", "30"));
+        long maxMs = Long.parseLong(opts.getOrDefault("max-ms", "4000"));
+
+        String url = ServiceConfig.get("db.url", null);
+        if (url == null) throw new IllegalStateException("db.url is not configured");
+        Matcher m = PG_URL.matcher(url);
+        if (!m.matches()) throw new IllegalArgumentException("Not a jdbc:postgresql URL: " + url);
+        int dbPort = m.group(2) == null ? 5432 : Integer.parseInt(m.group(2));
+
+        try (FaultProxy proxy = new FaultProxy(m.group(1), dbPort)) {
+            MidiDBOperations ops = new MidiDBOperations(new MidiDBConnector(throughProxy(url, proxy.port()),
+                    ServiceConfig.get("db.user", null), ServiceConfig.get("db.pass", null)));
+
+            String file = opts.get("file");
+            if (file == null) {
+                List<String> stored = ops.listAll();
+                if (stored.isEmpty()) {
+                    file = "outage-check.mid";
+                    Path tmp = Files.createTempFile("outage-check", ".mid");
+                    Files.write(tmp, new SyntheticMidiGenerator().generateBytes(SyntheticMidiGenerator.profile("small")));
+                    ops.save(file, tmp);
+                    Files.delete(tmp);
+                } else {
+                    file = stored.get(0);
+                }
+            }
+            String encoded = URLEncoder.encode(file, StandardCharsets.UTF_8).replace("+", "%20");
+            String base = "http://localhost:" + port;
+            List<String> urls = List.of(base + "/files", base + "/analyze/" + encoded, base + "/analyze-html/" + encoded);
+
+            WebServer server = new WebServer(ops);
+            server.start(port);
+            DbOutageCheck check = new DbOutageCheck();
+            try {
+                Phase warm = check.run("warm", urls, 1, true);
+                System.out.println(warm);
+
+                proxy.mode(outageMode);
+                Phase down = check.run("outage", urls, outage, false);
+                System.out.println(down + "  (" + outageMode + ")");
+
+                proxy.mode(FaultProxy.Mode.PASS);
+                long t0 = System.nanoTime();
+                Phase up = check.run("recover", urls, recover, true);
+                long recoveredMs = (System.nanoTime() - t0) / 1_000_000;
+                System.out.println(up + "  freshAfterMs=" + recoveredMs);
+
+                boolean warmOk = warm.statuses.keySet().equals(Set.of("200")) && warm.stale == 0;
+                boolean downOk = down.statuses.keySet().equals(Set.of("200"))
+                        && down.stale == down.requests && down.maxMs <= maxMs;
+                boolean upOk = recoveredMs < recover * 1000L;
+                System.out.println((warmOk ? "OK    " : "FAIL  ") + "warm: fresh 200s before the outage");
+                System.out.println((downOk ? "OK    " : "FAIL  ") + "outage: every request served stale within " + maxMs + " ms");
+                System.out.println((upOk ? "OK    " : "FAIL  ") + "recover: fresh responses again after the database returns");
+                if (!(warmOk && downOk && upOk)) System.exit(1);
+            } finally {
+                server.stop();
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.schoolproject.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Local TCP proxy that can break the connection to an upstream server on
+ * command, for exercising the service's behaviour during a database outage.
+ *
+ * PASS forwards bytes both ways. BLACKHOLE accepts connections and reads
+ * from them but forwards nothing, like a host that stopped answering (the
+ * slow failure: callers only notice via their timeouts). REFUSE closes new
+ * and existing connections immediately, like a stopped server.
+ */
+public final class FaultProxy implements AutoCloseable {
+
+    public enum Mode { PASS, BLACKHOLE, REFUSE }
+
+    private final String targetHost;
+    private final int targetPort;
+    private final ServerSocket server;
+    private final Set<Socket> sockets = ConcurrentHashMap.newKeySet();
+    private volatile Mode mode = Mode.PASS;
+
+    public FaultProxy(String targetHost, int targetPort) throws IOException {
+        this.targetHost = targetHost;
+        this.targetPort = targetPort;
+        this.server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread accept = new Thread(this::acceptLoop, "fault-proxy-accept");
+        accept.setDaemon(true);
+        accept.start();
+    }
+
+    public int port() {
+        return server.getLocalPort();
+    }
+
+    public Mode mode() {
+        return mode;
+    }
+
+    public void mode(Mode mode) {
+        this.mode = mode;
+        if (mode == Mode.REFUSE) closeAll();
+    }
+
+    private void acceptLoop() {
+        while (!server.isClosed()) {
+            Socket client;
+            try {
+                client = server.accept();
+            } catch (IOException e) {
+                return; // closed
+            }
+            if (mode == Mode.REFUSE) {
+                quietClose(client);
+                continue;
+            }
+            sockets.add(client);
+            Thread t = new Thread(() -> connect(client), "fault-proxy-conn");
+            t.setDaemon(true);
+            t.start();
+        }
+    }
+
+    private void connect(Socket client) {
+        if (mode == Mode.BLACKHOLE) {
+            // never reach the upstream; swallow whatever the client sends
+            pump(client, null);
+            return;
+        }
+        Socket upstream = new Socket();
+        try {
+            upstream.connect(new InetSocketAddress(targetHost, targetPort), 5_000);
+        } catch (IOException e) {
+            quietClose(client);
+            quietClose(upstream);
+            return;
+        }
+        sockets.add(upstream);
+        Thread back = new Thread(() -> pump(upstream, client), "fault-proxy-pump");
+        back.setDaemon(true);
+        back.start();
+        pump(client, upstream);
+    }
+
+    /** Copies {@code from} to {@code to} while passing; drops the bytes while blackholed. */
+    private void pump(Socket from, Socket to) {
+        byte[] buf = new byte[16 * 1024];
+        try (InputStream in = from.getInputStream()) {
+            OutputStream out = to == null ? null : to.getOutputStream();
+            int n;
+            while ((n = in.read(buf)) >= 0) {
+                if (out != null && mode == Mode.PASS) {
+                    out.write(buf, 0, n);
+                    out.flush();
+                }
+            }
+        } catch (IOException e) {
+            // either side closed
+        } finally {
+            quietClose(from);
+            if (to != null) quietClose(to);
+        }
+    }
+
+    private void closeAll() {
+        for (Socket s : sockets) quietClose(s);
+    }
+
+    private void quietClose(Socket s) {
+        sockets.remove(s);
+        try {
+            s.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+        closeAll();
+    }
+}
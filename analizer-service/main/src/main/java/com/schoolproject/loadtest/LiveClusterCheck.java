@@ -0,0 +1,160 @@
+package com.schoolproject.loadtest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiEvent;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Track;
+
+import com.schoolproject.analyzer.ChordId;
+import com.schoolproject.analyzer.MidiDifficultyAnalyzer;
+import com.schoolproject.analyzer.MidiDifficultyAnalyzer.AnalysisResult;
+import com.schoolproject.web.LiveProtocol;
+import com.schoolproject.web.WebServer;
+
+/**
+ * Checks that {@code /live} clusters onsets like /analyze when a client
+ * sends each note as its own frame (as a MIDI keyboard delivers them), and
+ * that the last chord is reported without waiting for another frame.
+ *
+ * Usage: LiveClusterCheck [--port 3102]
+ * Exits non-zero if any check fails.
+ */
+public class LiveClusterCheck {
+
+    private static final int C4 = 60, F4 = 65, G4 = 67, E5 = 76;
+    // sounds Csus4 after three notes; the whole cluster is C-E-F-G
+    private static final int[] ROLLED = {C4, F4, G4, E5};
+    private static final int ROLL_MS = 5;
+
+    private final String url;
+    private final HttpClient http = HttpClient.newHttpClient();
+    private int failures;
+
+    LiveClusterCheck(String url) {
+        this.url = url;
+    }
+
+    // -------------------------------------------------------
+    // CHECKS
+    // -------------------------------------------------------
+    /** C, F, G, E 5 ms apart, one frame each: one chord for the whole cluster, as /analyze scores it. */
+    private void rolledOneNotePerFrame() throws Exception {
+        List<int[]> updates = play(true);
+        check("rolled C-F-G-E, one frame per note: " + describe(updates), matchesBatch(updates));
+    }
+
+    /** The same notes in one frame: the same result. */
+    private void rolledInOneFrame() throws Exception {
+        List<int[]> updates = play(false);
+        check("rolled C-F-G-E, one frame: " + describe(updates), matchesBatch(updates));
+    }
+
+    private boolean matchesBatch(List<int[]> updates) {
+        if (updates.isEmpty()) return false;
+        AnalysisResult batch = analyzeBatch();
+        int[] last = updates.get(updates.size() - 1);
+        return batch.chordTimeline.size() == 1 && ChordId.name(last[0]).equals(batch.chordTimeline.chordName(0))
+                && last[1] == batch.chordDifficulty;
+    }
+
+    // -------------------------------------------------------
+    // HELPERS
+    // -------------------------------------------------------
+    /** Sends the rolled chord and returns every UPDATE as {chordId, chordDifficulty}. */
+    private List<int[]> play(boolean framePerNote) throws Exception {
+        List<int[]> updates = new ArrayList<>();
+        WebSocket ws = http.newWebSocketBuilder().buildAsync(URI.create(url), new WebSocket.Listener() {
+            @Override
+            public CompletionStage<?> onBinary(WebSocket webSocket, ByteBuffer data, boolean last) {
+                if (data.remaining() >= LiveProtocol.UPDATE_BYTES && data.get(data.position()) == LiveProtocol.UPDATE) {
+                    synchronized (updates) {
+                        updates.add(new int[] {data.getShort(data.position() + 2), data.getInt(data.position() + 12)});
+                    }
+                }
+                webSocket.request(1);
+                return null;
+            }
+        }).get(10, TimeUnit.SECONDS);
+
+        ByteBuffer frame = ByteBuffer.allocate(ROLLED.length * LiveProtocol.EVENT_BYTES);
+        for (int i = 0; i < ROLLED.length; i++) {
+            LiveProtocol.putEvent(frame, i * ROLL_MS, LiveProtocol.NOTE_ON, ROLLED[i], 90);
+            if (framePerNote) {
+                ws.sendBinary(frame.flip(), true).get(10, TimeUnit.SECONDS);
+                frame.clear();
+                Thread.sleep(ROLL_MS);
+            }
+        }
+        if (!framePerNote) ws.sendBinary(frame.flip(), true).get(10, TimeUnit.SECONDS);
+
+        Thread.sleep(300); // well past the onset window: the server closes the cluster on its own
+        ws.abort();
+        synchronized (updates) {
+            return new ArrayList<>(updates);
+        }
+    }
+
+    /** The rolled chord as a file at 1 tick = 1 ms (PPQ 500 at the default 120 bpm). */
+    private static AnalysisResult analyzeBatch() {
+        try {
+            Sequence seq = new Sequence(Sequence.PPQ, 500);
+            Track track = seq.createTrack();
+            for (int i = 0; i < ROLLED.length; i++) {
+                track.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_ON, 0, ROLLED[i], 90), i * ROLL_MS));
+                track.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_OFF, 0, ROLLED[i], 0), 1000));
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            MidiSystem.write(seq, 1, out);
+            return new MidiDifficultyAnalyzer().analyzeBytes(out.toByteArray());
+        } catch (InvalidMidiDataException | IOException e) {
+            throw new RuntimeException("Failed to build test file: " + e.getMessage(), e);
+        }
+    }
+
+    private static String describe(List<int[]> updates) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < updates.size(); i++) {
+            int[] u = updates.get(i);
+            sb.append(i == 0 ? "" : ", ").append(u[0] < 0 ? "none" : ChordId.name(u[0])).append(" d=").append(u[1]);
+        }
+        AnalysisResult batch = analyzeBatch();
+        return sb.append("] batch ").append(batch.chordTimeline.size() == 0 ? "none" : batch.chordTimeline.chordName(0))
+                .append(" d=").append(batch.chordDifficulty).toString();
+    }
+
+    private void check(String what, boolean ok) {
+        System.out.println((ok ? "OK    " : "FAIL  ") + what);
+        if (!ok) failures++;
+    }
+
+    // -------------------------------------------------------
+    // CLI
+    // -------------------------------------------------------
+    public static void main(String[] args) throws Exception {
+        int port = Integer.parseInt(LoadTestDriver.parseArgs(args).getOrDefault("port", "3102"));
+        // /live needs no database
+        WebServer server = new WebServer(null);
+        server.start(port);
+        LiveClusterCheck check = new LiveClusterCheck("ws://localhost:" + port + "/live");
+        try {
+            check.rolledOneNotePerFrame();
+            check.rolledInOneFrame();
+        } finally {
+            server.stop();
+        }
+        System.exit(check.failures > 0 ? 1 : 0);
+    }
+}
@@ -0,0 +1,220 @@
+package com.schoolproject.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.schoolproject.loadtest.LoadTestDriver.EndpointStats;
+import com.schoolproject.loadtest.LoadTestDriver.Recorder;
+import com.schoolproject.loadtest.LoadTestDriver.RunReport;
+import com.schoolproject.web.LiveProtocol;
+import com.schoolproject.web.WebServer;
+
+/**
+ * Simulates many performers on the {@code /live} WebSocket.
+ *
+ * Each performer plays a seeded random triad progression at a fixed rate:
+ * every frame releases the previous chord and presses the next one. The
+ * round trip from sending a frame to receiving its UPDATE is recorded and
+ * reported in the same run format as {@link LoadTestDriver}, so
+ * {@code LoadTestDriver --compare} works on live runs too.
+ *
+ * Usage:
+ *   LiveLoadTest [--url ws://localhost:3000/live | --start-local true [--port 3101]]
+ *                [--sessions 1000] [--rate 4] [--ramp 5]
+ *                [--duration 30] [--warmup 5] [--runs-dir loadtest/runs] [--label live]
+ */
+public class LiveLoadTest {
+
+    private static final int[][] TRIADS = {{0, 4, 7}, {0, 3, 7}, {0, 4, 7, 10}, {0, 3, 7, 10}, {0, 5, 7}};
+
+    // -------------------------------------------------------
+    // ONE PERFORMER
+    // -------------------------------------------------------
+    private static final class Performer implements WebSocket.Listener {
+
+        private final Random random;
+        private final int stepMs;
+        private final Recorder recorder;
+        private final long warmupEnd;
+
+        // send time per frame, indexed by frame number; frame k carries timeMs = k * stepMs
+        private final long[] sentAt = new long[256];
+
+        private WebSocket ws;
+        private CompletableFuture<?> lastSend = CompletableFuture.completedFuture(null);
+        private int[] held = new int[0];
+        private int frame;
+        private ByteBuffer partial;
+
+        Performer(long seed, int stepMs, Recorder recorder, long warmupEnd) {
+            this.random = new Random(seed);
+            this.stepMs = stepMs;
+            this.recorder = recorder;
+            this.warmupEnd = warmupEnd;
+        }
+
+        /** Releases the held chord and presses the next one, in one frame. */
+        synchronized void step() {
+            if (ws == null || !lastSend.isDone()) return; // don't queue behind a slow connection
+
+            int timeMs = ++frame * stepMs;
+            int[] shape = TRIADS[random.nextInt(TRIADS.length)];
+            int root = 48 + random.nextInt(12);
+
+            ByteBuffer buf = ByteBuffer.allocate((held.length + shape.length) * LiveProtocol.EVENT_BYTES);
+            for (int note : held) LiveProtocol.putEvent(buf, timeMs, LiveProtocol.NOTE_OFF, note, 0);
+            held = new int[shape.length];
+            for (int i = 0; i < shape.length; i++) {
+                held[i] = root + shape[i];
+                LiveProtocol.putEvent(buf, timeMs, LiveProtocol.NOTE_ON, held[i], 64 + random.nextInt(40));
+            }
+
+            sentAt[frame & 255] = System.nanoTime();
+            lastSend = ws.sendBinary(buf.flip(), true).exceptionally(e -> {
+                recorder.errors.incrementAndGet();
+                return null;
+            });
+        }
+
+        @Override
+        public void onOpen(WebSocket webSocket) {
+            webSocket.request(1);
+        }
+
+        @Override
+        public CompletionStage<?> onBinary(WebSocket webSocket, ByteBuffer data, boolean last) {
+            if (!last || partial != null) {
+                ByteBuffer merged = ByteBuffer.allocate((partial == null ? 0 : partial.remaining()) + data.remaining());
+                if (partial != null) merged.put(partial);
+                partial = merged.put(data).flip();
+                if (!last) {
+                    webSocket.request(1);
+                    return null;
+                }
+                data = partial;
+                partial = null;
+            }
+            long now = System.nanoTime();
+            if (data.remaining() >= LiveProtocol.UPDATE_BYTES && data.get(data.position()) == LiveProtocol.UPDATE) {
+                int k = LiveProtocol.updateTimeMs(data) / stepMs;
+                long sent = sentAt[k & 255];
+                if (sent >= warmupEnd) recorder.record(now - sent);
+                sentAt[k & 255] = Long.MIN_VALUE; // the cluster-close UPDATE for the same frame is not a round trip
+            }
+            webSocket.request(1);
+            return null;
+        }
+
+        @Override
+        public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+            webSocket.request(1); // hello message
+            return null;
+        }
+
+        @Override
+        public void onError(WebSocket webSocket, Throwable error) {
+            recorder.errors.incrementAndGet();
+        }
+    }
+
+    // -------------------------------------------------------
+    // RUN
+    // -------------------------------------------------------
+    public RunReport run(String label, String url, int sessions, double ratePerSec,
+                         int rampSec, int durationSec, int warmupSec) throws InterruptedException {
+
+        HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+        Recorder recorder = new Recorder();
+        String startedAt = LocalDateTime.now().toString();
+
+        long warmupEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(rampSec + warmupSec);
+        int stepMs = Math.max(1, (int) Math.round(1000 / ratePerSec));
+
+        List<Performer> performers = new ArrayList<>();
+        List<WebSocket> sockets = new ArrayList<>();
+        AtomicInteger connectFailures = new AtomicInteger();
+        ScheduledExecutorService clock = Executors.newScheduledThreadPool(
+                Math.max(2, Runtime.getRuntime().availableProcessors() / 2));
+
+        // connect gradually over the ramp, then each performer plays on its own schedule
+        long rampNanos = TimeUnit.SECONDS.toNanos(rampSec);
+        for (int s = 0; s < sessions; s++) {
+            Performer p = new Performer(s, stepMs, recorder, warmupEnd);
+            performers.add(p);
+            long delay = sessions == 0 ? 0 : rampNanos * s / sessions;
+            clock.schedule(() -> http.newWebSocketBuilder().buildAsync(URI.create(url), p).whenComplete((ws, e) -> {
+                if (e != null) {
+                    connectFailures.incrementAndGet();
+                    return;
+                }
+                synchronized (p) {
+                    p.ws = ws;
+                }
+                synchronized (sockets) {
+                    sockets.add(ws);
+                }
+                clock.scheduleAtFixedRate(p::step, (long) (Math.random() * stepMs), stepMs, TimeUnit.MILLISECONDS);
+            }), delay, TimeUnit.NANOSECONDS);
+        }
+
+        Thread.sleep(TimeUnit.SECONDS.toMillis(rampSec + warmupSec + durationSec));
+        clock.shutdownNow();
+        synchronized (sockets) {
+            for (WebSocket ws : sockets) ws.abort();
+        }
+
+        if (connectFailures.get() > 0) System.out.println("Failed connections: " + connectFailures.get());
+        System.out.printf("Connected %d/%d sessions%n", sockets.size(), sessions);
+
+        EndpointStats stats = recorder.summarize("live", durationSec);
+        return new RunReport(label, startedAt, url, sessions, durationSec, 0, List.of(stats));
+    }
+
+    // -------------------------------------------------------
+    // CLI
+    // -------------------------------------------------------
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = LoadTestDriver.parseArgs(args);
+        boolean startLocal = Boolean.parseBoolean(opts.getOrDefault("start-local", "false"));
+        int port = Integer.parseInt(opts.getOrDefault("port", "3101"));
+        String url = startLocal ? "ws://localhost:" + port + "/live" : opts.getOrDefault("url", "ws://localhost:3000/live");
+        int sessions = Integer.parseInt(opts.getOrDefault("sessions", "1000"));
+        double rate = Double.parseDouble(opts.getOrDefault("rate", "4"));
+        int ramp = Integer.parseInt(opts.getOrDefault("ramp", "5"));
+        int duration = Integer.parseInt(opts.getOrDefault("duration", "30"));
+        int warmup = Integer.parseInt(opts.getOrDefault("warmup", "5"));
+        Path runsDir = Path.of(opts.getOrDefault("runs-dir", "loadtest/runs"));
+        String label = opts.getOrDefault("label", "live");
+
+        // /live needs no database, so the local server runs without one
+        WebServer server = null;
+        if (startLocal) {
+            server = new WebServer(null);
+            server.start(port);
+        }
+
+        try {
+            RunReport report = new LiveLoadTest().run(label, url, sessions, rate, ramp, duration, warmup);
+            LoadTestDriver.print(report);
+            System.out.println("Saved run: " + LoadTestDriver.save(report, runsDir));
+        } finally {
+            if (server != null) server.stop();
+        }
+        System.exit(0);
+    }
+}
@@ -0,0 +1,331 @@
+package com.schoolproject.loadtest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.schoolproject.db.MidiDBConnector;
+import com.schoolproject.db.MidiDBOperations;
+import com.schoolproject.web.WebServer;
+
+/**
+ * Closed-loop HTTP load driver for the analyzer service.
+ *
+ * Runs a fixed number of concurrent workers against the analysis endpoints,
+ * records per-endpoint latencies and writes a JSON run report so that runs
+ * can be compared against each other later.
+ *
+ * Usage:
+ *   LoadTestDriver [--base-url http://localhost:3000 | --start-local true [--port 3100]]
+ *                  [--corpus loadtest/corpus] [--seed true]
+ *                  [--endpoints analyze,analyze-html,files,analyze-bulk]
+ *                  [--concurrency 16] [--duration 30] [--warmup 5]
+ *                  [--runs-dir loadtest/runs] [--label name]
+ *   LoadTestDriver --compare baseline.json candidate.json
+ */
+public class LoadTestDriver {
+
+    public static final List<String> ENDPOINTS = List.of("analyze", "analyze-html", "files", "analyze-bulk");
+
+    private static final ObjectMapper JSON = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    // -------------------------------------------------------
+    // REPORT TYPES
+    // -------------------------------------------------------
+    public record EndpointStats(String endpoint, long requests, long errors, double throughputPerSec,
+                                double p50Ms, double p90Ms, double p99Ms, double p999Ms, double maxMs) {
+    }
+
+    public record RunReport(String label, String startedAt, String baseUrl, int concurrency,
+                            int durationSec, int corpusFiles, List<EndpointStats> endpoints) {
+    }
+
+    // -------------------------------------------------------
+    // LATENCY RECORDING
+    // -------------------------------------------------------
+    /** Grow-only latency sample buffer; one per endpoint (also used by {@link LiveLoadTest}). */
+    static final class Recorder {
+        private long[] samples = new long[4096];
+        private int size;
+        final AtomicLong errors = new AtomicLong();
+
+        synchronized void record(long nanos) {
+            if (size == samples.length) samples = Arrays.copyOf(samples, size * 2);
+            samples[size++] = nanos;
+        }
+
+        synchronized EndpointStats summarize(String endpoint, double seconds) {
+            long[] sorted = Arrays.copyOf(samples, size);
+            Arrays.sort(sorted);
+            return new EndpointStats(endpoint, size, errors.get(), size / seconds,
+                    percentileMs(sorted, 0.50), percentileMs(sorted, 0.90),
+                    percentileMs(sorted, 0.99), percentileMs(sorted, 0.999),
+                    sorted.length == 0 ? 0 : sorted[sorted.length - 1] / 1e6);
+        }
+
+        private static double percentileMs(long[] sorted, double p) {
+            if (sorted.length == 0) return 0;
+            int idx = (int) Math.ceil(p * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(sorted.length - 1, idx))] / 1e6;
+        }
+    }
+
+    // -------------------------------------------------------
+    // RUN
+    // -------------------------------------------------------
+    private final HttpClient http = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    public RunReport run(String label, String baseUrl, List<Path> corpus, List<String> endpoints,
+                         int concurrency, int durationSec, int warmupSec) throws InterruptedException {
+
+        if (corpus.isEmpty()) throw new IllegalArgumentException("Corpus is empty");
+
+        List<String> names = corpus.stream().map(p -> p.getFileName().toString()).toList();
+        List<byte[]> bulkBodies = buildBulkBodies(corpus);
+
+        Map<String, IntFunction<HttpRequest>> requests = new LinkedHashMap<>();
+        for (String ep : endpoints) {
+            requests.put(ep, switch (ep) {
+                case "analyze" -> i -> get(baseUrl + "/analyze/" + encode(names.get(i % names.size())));
+                case "analyze-html" -> i -> get(baseUrl + "/analyze-html/" + encode(names.get(i % names.size())));
+                case "files" -> i -> get(baseUrl + "/files");
+                case "analyze-bulk" -> i -> HttpRequest.newBuilder(URI.create(baseUrl + "/analyze-bulk"))
+                        .timeout(Duration.ofSeconds(60))
+                        .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+                        .POST(HttpRequest.BodyPublishers.ofByteArray(bulkBodies.get(i % bulkBodies.size())))
+                        .build();
+                default -> throw new IllegalArgumentException("Unknown endpoint: " + ep);
+            });
+        }
+
+        Map<String, Recorder> recorders = new LinkedHashMap<>();
+        requests.keySet().forEach(ep -> recorders.put(ep, new Recorder()));
+        List<String> order = new ArrayList<>(requests.keySet());
+
+        String startedAt = LocalDateTime.now().toString();
+        long warmupEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(warmupSec);
+        long deadline = warmupEnd + TimeUnit.SECONDS.toNanos(durationSec);
+
+        ExecutorService pool = Executors.newFixedThreadPool(concurrency);
+        for (int w = 0; w < concurrency; w++) {
+            final int worker = w;
+            pool.submit(() -> {
+                int i = worker;
+                while (System.nanoTime() < deadline) {
+                    String ep = order.get(i % order.size());
+                    HttpRequest req = requests.get(ep).apply(i / order.size());
+                    long t0 = System.nanoTime();
+                    boolean ok;
+                    try {
+                        HttpResponse<byte[]> res = http.send(req, HttpResponse.BodyHandlers.ofByteArray());
+                        ok = res.statusCode() < 400;
+                    } catch (IOException e) {
+                        ok = false;
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    long t1 = System.nanoTime();
+                    if (t0 >= warmupEnd && t1 <= deadline) {
+                        Recorder r = recorders.get(ep);
+                        if (ok) r.record(t1 - t0);
+                        else r.errors.incrementAndGet();
+                    }
+                    i += concurrency;
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(warmupSec + durationSec + 120L, TimeUnit.SECONDS);
+
+        List<EndpointStats> stats = new ArrayList<>();
+        recorders.forEach((ep, r) -> stats.add(r.summarize(ep, durationSec)));
+        return new RunReport(label, startedAt, baseUrl, concurrency, durationSec, corpus.size(), stats);
+    }
+
+    private static HttpRequest get(String url) {
+        return HttpRequest.newBuilder(URI.create(url)).timeout(Duration.ofSeconds(60)).GET().build();
+    }
+
+    private static String encode(String name) {
+        return URLEncoder.encode(name, StandardCharsets.UTF_8).replace("+", "%20");
+    }
+
+    // -------------------------------------------------------
+    // MULTIPART BODIES FOR /analyze-bulk
+    // -------------------------------------------------------
+    private static final String BOUNDARY = "theorybench-loadtest-boundary";
+
+    /** Pre-builds a few multipart bodies of 1-3 files each so workers don't rebuild them per request. */
+    private static List<byte[]> buildBulkBodies(List<Path> corpus) {
+        List<byte[]> bodies = new ArrayList<>();
+        try {
+            for (int start = 0; start < corpus.size(); start++) {
+                ByteArrayOutputStream body = new ByteArrayOutputStream();
+                int files = 1 + start % 3;
+                for (int k = 0; k < files; k++) {
+                    Path p = corpus.get((start + k) % corpus.size());
+                    body.write(("--" + BOUNDARY + "\r\n"
+                            + "Content-Disposition: form-data; name=\"files\"; filename=\""
+                            + p.getFileName() + "\"\r\n"
+                            + "Content-Type: audio/midi\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+                    body.write(Files.readAllBytes(p));
+                    body.write("\r\n".getBytes(StandardCharsets.UTF_8));
+                }
+                body.write(("--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8));
+                bodies.add(body.toByteArray());
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to build bulk upload bodies: " + e.getMessage(), e);
+        }
+        return bodies;
+    }
+
+    // -------------------------------------------------------
+    // REPORTING / COMPARISON
+    // -------------------------------------------------------
+    public static void print(RunReport report) {
+        System.out.printf("Run '%s' — %d workers, %ds, %d corpus files, %s%n",
+                report.label(), report.concurrency(), report.durationSec(), report.corpusFiles(), report.baseUrl());
+        System.out.printf("%-14s %9s %7s %10s %9s %9s %9s %9s %9s%n",
+                "endpoint", "requests", "errors", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (EndpointStats s : report.endpoints()) {
+            System.out.printf("%-14s %9d %7d %10.1f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                    s.endpoint(), s.requests(), s.errors(), s.throughputPerSec(),
+                    s.p50Ms(), s.p90Ms(), s.p99Ms(), s.p999Ms(), s.maxMs());
+        }
+    }
+
+    public static Path save(RunReport report, Path runsDir) throws IOException {
+        Files.createDirectories(runsDir);
+        String stamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+        Path out = runsDir.resolve("run-" + stamp + "-" + report.label() + ".json");
+        JSON.writeValue(out.toFile(), report);
+        return out;
+    }
+
+    public static void compare(Path baselineFile, Path candidateFile) throws IOException {
+        RunReport base = JSON.readValue(baselineFile.toFile(), RunReport.class);
+        RunReport cand = JSON.readValue(candidateFile.toFile(), RunReport.class);
+
+        Map<String, EndpointStats> baseByEp = new HashMap<>();
+        base.endpoints().forEach(s -> baseByEp.put(s.endpoint(), s));
+
+        System.out.printf("Comparing '%s' (baseline) → '%s'%n", base.label(), cand.label());
+        System.out.printf("%-14s %12s %12s %12s%n", "endpoint", "req/s Δ%", "p50 Δ%", "p99 Δ%");
+        for (EndpointStats c : cand.endpoints()) {
+            EndpointStats b = baseByEp.get(c.endpoint());
+            if (b == null) continue;
+            System.out.printf("%-14s %+11.1f%% %+11.1f%% %+11.1f%%%n", c.endpoint(),
+                    pct(b.throughputPerSec(), c.throughputPerSec()),
+                    pct(b.p50Ms(), c.p50Ms()),
+                    pct(b.p99Ms(), c.p99Ms()));
+        }
+    }
+
+    private static double pct(double before, double after) {
+        return before == 0 ? 0 : (after - before) * 100.0 / before;
+    }
+
+    // -------------------------------------------------------
+    // CLI
+    // -------------------------------------------------------
+    /** Parses {@code --key value} pairs; a trailing flag without value maps to "true". */
+    public static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> opts = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--")) continue;
+            String key = args[i].substring(2);
+            boolean hasValue = i + 1 < args.length && !args[i + 1].startsWith("--");
+            opts.put(key, hasValue ? args[++i] : "true");
+        }
+        return opts;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 3 && args[0].equals("--compare")) {
+            compare(Path.of(args[1]), Path.of(args[2]));
+            return;
+        }
+
+        Map<String, String> opts = parseArgs(args);
+        boolean startLocal = Boolean.parseBoolean(opts.getOrDefault("start-local", "false"));
+        int port = Integer.parseInt(opts.getOrDefault("port", "3100"));
+        String baseUrl = startLocal ? "http://localhost:" + port : opts.getOrDefault("base-url", "http://localhost:3000");
+        Path corpusDir = Path.of(opts.getOrDefault("corpus", "loadtest/corpus"));
+        boolean seed = Boolean.parseBoolean(opts.getOrDefault("seed", String.valueOf(startLocal)));
+        List<String> endpoints = List.of(opts.getOrDefault("endpoints", String.join(",", ENDPOINTS)).split(","));
+        int concurrency = Integer.parseInt(opts.getOrDefault("concurrency", "16"));
+        int duration = Integer.parseInt(opts.getOrDefault("duration", "30"));
+        int warmup = Integer.parseInt(opts.getOrDefault("warmup", "5"));
+        Path runsDir = Path.of(opts.getOrDefault("runs-dir", "loadtest/runs"));
+        String label = opts.getOrDefault("label", "run");
+
+        // 1) Corpus (generated on first use)
+        List<Path> corpus = listCorpus(corpusDir);
+        if (corpus.isEmpty()) {
+            System.out.println("Corpus empty, generating small/medium/large profiles into " + corpusDir);
+            corpus = new SyntheticMidiGenerator().writeCorpus(corpusDir, List.of("small", "medium", "large"), 2);
+        }
+
+        // 2) Seed the database the server reads from
+        MidiDBOperations ops = null;
+        if (seed || startLocal) {
+            ops = new MidiDBOperations(new MidiDBConnector());
+        }
+        if (seed) {
+            for (Path p : corpus) {
+                String name = p.getFileName().toString();
+                if (!ops.exists(name)) ops.save(name, p);
+            }
+        }
+
+        // 3) Optional in-process server
+        WebServer server = null;
+        if (startLocal) {
+            server = new WebServer(ops);
+            server.start(port);
+        }
+
+        try {
+            RunReport report = new LoadTestDriver().run(label, baseUrl, corpus, endpoints, concurrency, duration, warmup);
+            print(report);
+            System.out.println("Saved run: " + save(report, runsDir));
+        } finally {
+            if (server != null) server.stop();
+        }
+    }
+
+    private static List<Path> listCorpus(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) return List.of();
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.getFileName().toString().endsWith(".mid")).sorted().toList();
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.schoolproject.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.schoolproject.analyzer.MidiDifficultyAnalyzer;
+import com.schoolproject.analyzer.MidiDifficultyAnalyzer.AnalysisResult;
+import com.schoolproject.metrics.Counter;
+import com.schoolproject.metrics.Metrics;
+import com.schoolproject.web.SingleFlight;
+
+/**
+ * Checks request coalescing without a server or database: a stampede of
+ * identical requests through {@link SingleFlight} must cost one analysis,
+ * share one failure, and survive the leader being interrupted.
+ *
+ * Usage: StampedeCheck [--requests 100] [--profile medium]
+ * Exits non-zero if any check fails.
+ */
+public class StampedeCheck {
+
+    private static final String KEY = "song.mid\nsame-etag";
+
+    private final int requests;
+    private final byte[] midi;
+    private final MidiDifficultyAnalyzer analyzer = new MidiDifficultyAnalyzer();
+
+    private int failures;
+
+    private StampedeCheck(int requests, byte[] midi) {
+        this.requests = requests;
+        this.midi = midi;
+    }
+
+    // -------------------------------------------------------
+    // CHECKS
+    // -------------------------------------------------------
+    /** All requests share one analysis and receive the same result. */
+    private void stampede() throws Exception {
+        Counter runs = new Counter(), shared = new Counter();
+        SingleFlight<String, AnalysisResult> flight = new SingleFlight<>(runs, shared);
+        long analyzedBefore = Metrics.FILES_ANALYZED.sum();
+
+        List<Object> outcomes = race(() -> flight.run(KEY, () -> {
+            awaitSharers(shared);
+            return analyzer.analyzeBytes(midi);
+        }));
+
+        long analyses = Metrics.FILES_ANALYZED.sum() - analyzedBefore;
+        boolean sameResult = outcomes.stream().allMatch(o -> o == outcomes.get(0) && o instanceof AnalysisResult);
+        check("stampede: " + requests + " requests -> " + analyses + " analysis, " + shared.sum() + " shared",
+                analyses == 1 && runs.sum() == 1 && sameResult);
+    }
+
+    /** A failing run fails every request with the same exception, and the next request runs afresh. */
+    private void errorPropagation() throws Exception {
+        Counter runs = new Counter(), shared = new Counter();
+        SingleFlight<String, AnalysisResult> flight = new SingleFlight<>(runs, shared);
+        IllegalStateException boom = new IllegalStateException("database unavailable");
+
+        List<Object> outcomes = race(() -> flight.run(KEY, () -> {
+            awaitSharers(shared);
+            throw boom;
+        }));
+        boolean allBoom = outcomes.stream().allMatch(o -> o == boom);
+        AnalysisResult after = flight.run(KEY, () -> analyzer.analyzeBytes(midi));
+        check("errors: " + requests + " requests -> 1 failure, shared by all; next request re-runs",
+                allBoom && runs.sum() == 2 && after != null && flight.inFlight() == 0);
+    }
+
+    /** Interrupting the leader hands the work to a waiting request instead of failing the others. */
+    private void leaderCancelled() throws Exception {
+        Counter runs = new Counter(), shared = new Counter();
+        SingleFlight<String, AnalysisResult> flight = new SingleFlight<>(runs, shared);
+        CountDownLatch leaderRunning = new CountDownLatch(1);
+        Thread[] leader = new Thread[1];
+
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        Future<Object> first = pool.submit(() -> outcome(() -> flight.run(KEY, () -> {
+            leader[0] = Thread.currentThread();
+            leaderRunning.countDown();
+            Thread.sleep(60_000);
+            return null;
+        })));
+        leaderRunning.await();
+
+        // everyone joins the first flight, then all but the new leader re-join its run
+        List<Object> outcomes = race(() -> flight.run(KEY, () -> {
+            awaitSharers(shared, 2L * requests - 1);
+            return analyzer.analyzeBytes(midi);
+        }), () -> {
+            awaitSharers(shared);
+            leader[0].interrupt();
+        });
+        Object leaderOutcome = first.get();
+        pool.shutdown();
+
+        boolean othersServed = outcomes.stream().allMatch(o -> o == outcomes.get(0) && o instanceof AnalysisResult);
+        check("cancel: interrupted leader -> " + (runs.sum() - 1) + " re-run, " + requests + " requests served",
+                leaderOutcome instanceof InterruptedException && othersServed && runs.sum() == 2);
+    }
+
+    // -------------------------------------------------------
+    // HELPERS
+    // -------------------------------------------------------
+    /** Starts {@code requests} concurrent calls at once; returns each result or thrown exception. */
+    private List<Object> race(Callable<Object> call) throws Exception {
+        return race(call, () -> { });
+    }
+
+    private List<Object> race(Callable<Object> call, Runnable whileRunning) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(requests);
+        CountDownLatch go = new CountDownLatch(1);
+        List<Future<Object>> futures = new ArrayList<>();
+        for (int i = 0; i < requests; i++) {
+            futures.add(pool.submit(() -> {
+                go.await();
+                return outcome(call);
+            }));
+        }
+        go.countDown();
+        whileRunning.run();
+        List<Object> outcomes = new ArrayList<>();
+        for (Future<Object> f : futures) outcomes.add(f.get(30, TimeUnit.SECONDS));
+        pool.shutdown();
+        return outcomes;
+    }
+
+    private static Object outcome(Callable<Object> call) {
+        try {
+            return call.call();
+        } catch (Exception e) {
+            return e;
+        }
+    }
+
+    /** Holds the leader until every other request has joined, so the stampede is a true overlap. */
+    private void awaitSharers(Counter shared) {
+        awaitSharers(shared, requests - 1);
+    }
+
+    private static void awaitSharers(Counter shared, long count) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (shared.sum() < count && System.nanoTime() < deadline) Thread.onSpinWait();
+    }
+
+    private void check(String what, boolean ok) {
+        System.out.println((ok ? "OK    " : "FAIL  ") + what);
+        if (!ok) failures++;
+    }
+
+    // -------------------------------------------------------
+    // CLI
+    // -------------------------------------------------------
+    public static void main(String[] args) throws Exception {
+        var opts = LoadTestDriver.parseArgs(args);
+        int requests = Integer.parseInt(opts.getOrDefault("requests", "100"));
+        var spec = SyntheticMidiGenerator.profile(opts.getOrDefault("profile", "medium"));
+        byte[] midi = new SyntheticMidiGenerator().generateBytes(spec);
+
+        StampedeCheck check = new StampedeCheck(requests, midi);
+        check.stampede();
+        check.errorPropagation();
+        check.leaderCancelled();
+        if (check.failures > 0) System.exit(1);
+    }
+}
@@ -0,0 +1,192 @@
+package com.schoolproject.loadtest;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MetaMessage;
+import javax.sound.midi.MidiEvent;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Track;
+
+/**
+ * Writes parameterized synthetic MIDI files for load testing the analyzer.
+ * Files are deterministic for a given {@link Spec} (including its seed), so
+ * two load-test runs against the same corpus are directly comparable.
+ *
+ * Usage: SyntheticMidiGenerator [--out dir] [--profile small|medium|large|pathological|all] [--count n]
+ */
+public class SyntheticMidiGenerator {
+
+    // -------------------------------------------------------
+    // SPEC
+    // -------------------------------------------------------
+    /**
+     * Shape of a generated file.
+     *
+     * @param tracks       number of note tracks (track 0 additionally carries tempo/meter)
+     * @param bars         length in 4/4 bars
+     * @param notesPerBeat onsets per beat on each track (note density)
+     * @param polyphony    notes stacked at each onset
+     * @param tempoChanges tempo events spread evenly over the piece
+     * @param ppq          ticks per quarter note
+     * @param seed         random seed for pitches, velocities and durations
+     */
+    public record Spec(int tracks, int bars, int notesPerBeat, int polyphony,
+                       int tempoChanges, int ppq, long seed) {
+
+        public Spec withSeed(long newSeed) {
+            return new Spec(tracks, bars, notesPerBeat, polyphony, tempoChanges, ppq, newSeed);
+        }
+    }
+
+    public static Spec profile(String name) {
+        return switch (name) {
+            case "small"        -> new Spec(1,   32,  2,  3,    0, 480, 1);
+            case "medium"       -> new Spec(4,  128,  4,  4,    4, 480, 1);
+            case "large"        -> new Spec(8,  512,  4,  6,   32, 480, 1);
+            case "pathological" -> new Spec(16, 1024, 8,  8, 1024, 960, 1);
+            default -> throw new IllegalArgumentException("Unknown profile: " + name);
+        };
+    }
+
+    public static final List<String> PROFILES = List.of("small", "medium", "large", "pathological");
+
+    // triad / seventh stacks used to build each onset, as intervals above a root
+    private static final int[][] VOICINGS = {
+            {0, 4, 7, 12, 16, 19, 24, 28, 31, 36},
+            {0, 3, 7, 12, 15, 19, 24, 27, 31, 36},
+            {0, 4, 7, 10, 14, 17, 21, 24, 28, 31},
+            {0, 3, 7, 10, 14, 17, 21, 24, 27, 31},
+            {0, 4, 7, 11, 14, 18, 21, 24, 28, 31},
+            {0, 3, 6, 9, 12, 15, 18, 21, 24, 27},
+    };
+
+    // -------------------------------------------------------
+    // GENERATION
+    // -------------------------------------------------------
+    public Sequence generate(Spec spec) {
+        try {
+            Sequence seq = new Sequence(Sequence.PPQ, spec.ppq());
+            Random rnd = new Random(spec.seed());
+
+            long beats = (long) spec.bars() * 4;
+            long endTick = beats * spec.ppq();
+            int step = Math.max(1, spec.ppq() / Math.max(1, spec.notesPerBeat()));
+
+            for (int t = 0; t < Math.max(1, spec.tracks()); t++) {
+                Track track = seq.createTrack();
+
+                if (t == 0) {
+                    track.add(new MidiEvent(timeSignature(4, 4), 0));
+                    track.add(new MidiEvent(tempo(500_000), 0));
+                    for (int i = 1; i <= spec.tempoChanges(); i++) {
+                        long tick = endTick * i / (spec.tempoChanges() + 1);
+                        int bpm = 60 + rnd.nextInt(121);
+                        track.add(new MidiEvent(tempo(60_000_000 / bpm), tick));
+                    }
+                }
+
+                int channel = t % 15 >= 9 ? t % 15 + 1 : t % 15; // skip the drum channel
+                int register = 36 + (t % 4) * 12;
+
+                for (long tick = 0; tick < endTick; tick += step) {
+                    int root = register + rnd.nextInt(12);
+                    int[] voicing = VOICINGS[rnd.nextInt(VOICINGS.length)];
+                    int notes = Math.min(spec.polyphony(), voicing.length);
+                    long duration = step * (1 + rnd.nextInt(4));
+
+                    for (int n = 0; n < notes; n++) {
+                        int note = Math.min(127, root + voicing[n]);
+                        int velocity = 40 + rnd.nextInt(80);
+                        track.add(new MidiEvent(
+                                new ShortMessage(ShortMessage.NOTE_ON, channel, note, velocity), tick));
+                        track.add(new MidiEvent(
+                                new ShortMessage(ShortMessage.NOTE_OFF, channel, note, 0),
+                                Math.min(endTick, tick + duration)));
+                    }
+                }
+            }
+            return seq;
+        } catch (InvalidMidiDataException e) {
+            throw new RuntimeException("Failed to build synthetic sequence: " + e.getMessage(), e);
+        }
+    }
+
+    public byte[] generateBytes(Spec spec) {
+        try {
+            Path tmp = Files.createTempFile("synthetic", ".mid");
+            try {
+                MidiSystem.write(generate(spec), 1, tmp.toFile());
+                return Files.readAllBytes(tmp);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write synthetic MIDI: " + e.getMessage(), e);
+        }
+    }
+
+    /** Writes {@code count} files per profile into {@code outDir} and returns their paths. */
+    public List<Path> writeCorpus(Path outDir, List<String> profiles, int count) {
+        List<Path> written = new ArrayList<>();
+        try {
+            Files.createDirectories(outDir);
+            for (String name : profiles) {
+                Spec base = profile(name);
+                for (int i = 0; i < count; i++) {
+                    Spec spec = base.withSeed(base.seed() + i);
+                    File out = outDir.resolve("synthetic_" + name + "_" + i + ".mid").toFile();
+                    MidiSystem.write(generate(spec), 1, out);
+                    written.add(out.toPath());
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write corpus to " + outDir + ": " + e.getMessage(), e);
+        }
+        return written;
+    }
+
+    // -------------------------------------------------------
+    // META MESSAGES
+    // -------------------------------------------------------
+    private static MetaMessage tempo(int usPerQuarter) throws InvalidMidiDataException {
+        byte[] d = {(byte) (usPerQuarter >> 16), (byte) (usPerQuarter >> 8), (byte) usPerQuarter};
+        return new MetaMessage(0x51, d, 3);
+    }
+
+    private static MetaMessage timeSignature(int numerator, int denominator) throws InvalidMidiDataException {
+        int pow = Integer.numberOfTrailingZeros(denominator);
+        byte[] d = {(byte) numerator, (byte) pow, 24, 8};
+        return new MetaMessage(0x58, d, 4);
+    }
+
+    // -------------------------------------------------------
+    // CLI
+    // -------------------------------------------------------
+    public static void main(String[] args) {
+        var opts = LoadTestDriver.parseArgs(args);
+        Path out = Path.of(opts.getOrDefault("out", "loadtest/corpus"));
+        String profile = opts.getOrDefault("profile", "all");
+        int count = Integer.parseInt(opts.getOrDefault("count", "3"));
+
+        List<String> profiles = profile.equals("all") ? PROFILES : List.of(profile.split(","));
+        List<Path> files = new SyntheticMidiGenerator().writeCorpus(out, profiles, count);
+
+        for (Path p : files) {
+            try {
+                System.out.println(p + " (" + Files.size(p) + " bytes)");
+            } catch (IOException e) {
+                System.out.println(p);
+            }
+        }
+        System.out.println("Wrote " + files.size() + " files to " + out.toAbsolutePath());
+    }
+}
@@ -0,0 +1,87 @@
+package com.schoolproject.logging;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Marker;
+
+import com.schoolproject.metrics.Counter;
+import com.schoolproject.metrics.Metrics;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+
+/**
+ * Logback turbo filter that caps how often any single log statement can
+ * fire, keyed by its message template (so "Loaded file={} bytes={}" is one
+ * stream no matter which file). Runs before the message is formatted, so a
+ * suppressed line costs a map lookup and an atomic increment.
+ *
+ * <ul>
+ *   <li>{@code maxPerSecond}: per-template budget for every level (default 20)</li>
+ *   <li>{@code sampleEvery}: DEBUG/TRACE lines are additionally sampled 1-in-N (default 1 = off)</li>
+ * </ul>
+ */
+public class RateLimitFilter extends TurboFilter {
+
+    private static final int MAX_TEMPLATES = 2048;
+
+    private static final Counter SUPPRESSED = Metrics.REGISTRY.counter(
+            "analyzer_log_suppressed_total", "Log lines dropped by rate limiting or sampling.", null).get();
+
+    private int maxPerSecond = 20;
+    private int sampleEvery = 1;
+
+    private final ConcurrentHashMap<String, Window> windows = new ConcurrentHashMap<>();
+
+    /** Count of lines seen for one template in the current one-second window. */
+    private static final class Window {
+        final AtomicLong state = new AtomicLong(); // high 32 bits: epoch second, low 32: count
+        final AtomicLong seen = new AtomicLong();  // lifetime count, drives sampling
+    }
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level,
+                              String format, Object[] params, Throwable t) {
+
+        // level checks and template-less calls fall through to normal handling
+        if (format == null || !level.isGreaterOrEqual(logger.getEffectiveLevel())) {
+            return FilterReply.NEUTRAL;
+        }
+
+        Window w = windows.get(format);
+        if (w == null) {
+            if (windows.size() >= MAX_TEMPLATES) windows.clear();
+            w = windows.computeIfAbsent(format, k -> new Window());
+        }
+
+        if (sampleEvery > 1 && level.toInt() <= Level.DEBUG_INT
+                && w.seen.getAndIncrement() % sampleEvery != 0) {
+            SUPPRESSED.inc();
+            return FilterReply.DENY;
+        }
+
+        long second = System.currentTimeMillis() / 1000;
+        while (true) {
+            long s = w.state.get();
+            long count = (s >>> 32) == second ? (s & 0xFFFF_FFFFL) : 0;
+            if (count >= maxPerSecond) {
+                SUPPRESSED.inc();
+                return FilterReply.DENY;
+            }
+            if (w.state.compareAndSet(s, (second << 32) | (count + 1))) {
+                return FilterReply.NEUTRAL;
+            }
+        }
+    }
+
+    public void setMaxPerSecond(int maxPerSecond) {
+        this.maxPerSecond = Math.max(1, maxPerSecond);
+    }
+
+    public void setSampleEvery(int sampleEvery) {
+        this.sampleEvery = Math.max(1, sampleEvery);
+    }
+}
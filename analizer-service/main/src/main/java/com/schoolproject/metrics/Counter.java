@@ -0,0 +1,31 @@
+package com.schoolproject.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Monotonic counter backed by a striped {@link LongAdder}, so concurrent
+ * request threads increment without contending on a single cache line.
+ */
+public final class Counter implements Metric {
+
+    private final LongAdder value = new LongAdder();
+
+    public void inc() {
+        value.increment();
+    }
+
+    public void add(long n) {
+        value.add(n);
+    }
+
+    public long sum() {
+        return value.sum();
+    }
+
+    @Override
+    public void write(StringBuilder out, String name, String labels) {
+        out.append(name);
+        if (!labels.isEmpty()) out.append('{').append(labels).append('}');
+        out.append(' ').append(value.sum()).append('\n');
+    }
+}
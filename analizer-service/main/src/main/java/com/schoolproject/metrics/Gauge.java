@@ -0,0 +1,23 @@
+package com.schoolproject.metrics;
+
+import java.util.function.DoubleSupplier;
+
+/**
+ * Value computed at scrape time (JVM heap, GC totals, queue depths, ...).
+ * Nothing is recorded on the hot path.
+ */
+public final class Gauge implements Metric {
+
+    private final DoubleSupplier supplier;
+
+    public Gauge(DoubleSupplier supplier) {
+        this.supplier = supplier;
+    }
+
+    @Override
+    public void write(StringBuilder out, String name, String labels) {
+        out.append(name);
+        if (!labels.isEmpty()) out.append('{').append(labels).append('}');
+        out.append(' ').append(supplier.getAsDouble()).append('\n');
+    }
+}
@@ -0,0 +1,62 @@
+package com.schoolproject.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-bucket latency histogram. Bucket bounds are chosen once up front and
+ * each observation is a short linear scan plus two {@link LongAdder}
+ * increments, so recording stays lock-free and allocation-free.
+ */
+public final class Histogram implements Metric {
+
+    /** Default latency buckets in seconds (0.5 ms .. 10 s). */
+    public static final double[] LATENCY_SECONDS = {
+            0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10
+    };
+
+    private final double[] bounds;       // upper bounds in seconds, for exposition
+    private final long[] boundsNanos;    // same bounds in nanoseconds, for recording
+    private final LongAdder[] buckets;   // last slot is +Inf
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumNanos = new LongAdder();
+
+    public Histogram(double[] boundsSeconds) {
+        this.bounds = boundsSeconds.clone();
+        this.boundsNanos = new long[bounds.length];
+        for (int i = 0; i < bounds.length; i++) boundsNanos[i] = (long) (bounds[i] * 1e9);
+        this.buckets = new LongAdder[bounds.length + 1];
+        for (int i = 0; i < buckets.length; i++) buckets[i] = new LongAdder();
+    }
+
+    public void observeNanos(long nanos) {
+        int i = 0;
+        while (i < boundsNanos.length && nanos > boundsNanos[i]) i++;
+        buckets[i].increment();
+        count.increment();
+        sumNanos.add(nanos);
+    }
+
+    /** Convenience for timing a section started with {@link System#nanoTime()}. */
+    public void observeSince(long startNanos) {
+        observeNanos(System.nanoTime() - startNanos);
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    @Override
+    public void write(StringBuilder out, String name, String labels) {
+        String sep = labels.isEmpty() ? "" : ",";
+        long cumulative = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            cumulative += buckets[i].sum();
+            String le = i < bounds.length ? Double.toString(bounds[i]) : "+Inf";
+            out.append(name).append("_bucket{").append(labels).append(sep)
+                    .append("le=\"").append(le).append("\"} ").append(cumulative).append('\n');
+        }
+        String braces = labels.isEmpty() ? "" : "{" + labels + "}";
+        out.append(name).append("_sum").append(braces).append(' ').append(sumNanos.sum() / 1e9).append('\n');
+        out.append(name).append("_count").append(braces).append(' ').append(cumulative).append('\n');
+    }
+}
@@ -0,0 +1,16 @@
+package com.schoolproject.metrics;
+
+/**
+ * A single exported time series (or histogram series group) that knows how
+ * to render itself in the Prometheus text exposition format.
+ */
+interface Metric {
+
+    /**
+     * Appends this metric's sample lines.
+     *
+     * @param name   family name
+     * @param labels rendered label pairs without braces (may be empty)
+     */
+    void write(StringBuilder out, String name, String labels);
+}
@@ -0,0 +1,60 @@
+package com.schoolproject.metrics;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * A named metric with zero or one label dimension (route, phase, method, ...).
+ * Children are created on first use and cached, so callers should resolve
+ * {@link #labels(String)} once into a static field where the label is fixed.
+ */
+public final class MetricFamily<T extends Metric> {
+
+    final String name;
+    final String help;
+    final String type;
+    final String labelName;
+
+    private final Supplier<T> factory;
+    final ConcurrentHashMap<String, T> children = new ConcurrentHashMap<>();
+
+    MetricFamily(String name, String help, String type, String labelName, Supplier<T> factory) {
+        this.name = name;
+        this.help = help;
+        this.type = type;
+        this.labelName = labelName;
+        this.factory = factory;
+    }
+
+    /** Returns the unlabeled child. */
+    public T get() {
+        return labels("");
+    }
+
+    public T labels(String value) {
+        T child = children.get(value);
+        if (child != null) return child;
+        return children.computeIfAbsent(value, v -> factory.get());
+    }
+
+    /** Registers a pre-built child (used for scrape-time gauges). */
+    public void register(String value, T metric) {
+        children.put(value, metric);
+    }
+
+    void write(StringBuilder out) {
+        if (children.isEmpty()) return;
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        children.forEach((value, metric) -> {
+            String labels = labelName == null || value.isEmpty()
+                    ? ""
+                    : labelName + "=\"" + escape(value) + "\"";
+            metric.write(out, name, labels);
+        });
+    }
+
+    private static String escape(String v) {
+        return v.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
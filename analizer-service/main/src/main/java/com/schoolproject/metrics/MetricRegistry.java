@@ -0,0 +1,46 @@
+package com.schoolproject.metrics;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Holds metric families in registration order and renders them for scraping.
+ */
+public final class MetricRegistry {
+
+    private final List<MetricFamily<?>> families = new CopyOnWriteArrayList<>();
+
+    public MetricFamily<Counter> counter(String name, String help, String labelName) {
+        return add(new MetricFamily<>(name, help, "counter", labelName, Counter::new));
+    }
+
+    public MetricFamily<Histogram> histogram(String name, String help, String labelName, double[] buckets) {
+        return add(new MetricFamily<>(name, help, "histogram", labelName, () -> new Histogram(buckets)));
+    }
+
+    /** Gauge family; children are registered explicitly with their suppliers. */
+    public MetricFamily<Gauge> gauge(String name, String help, String labelName) {
+        return add(new MetricFamily<>(name, help, "gauge", labelName, () -> {
+            throw new IllegalStateException("Gauges must be registered with a supplier: " + name);
+        }));
+    }
+
+    /** Counter whose value is read from elsewhere at scrape time (e.g. GC totals). */
+    public MetricFamily<Gauge> counterFunction(String name, String help, String labelName) {
+        return add(new MetricFamily<>(name, help, "counter", labelName, () -> {
+            throw new IllegalStateException("Counter functions must be registered with a supplier: " + name);
+        }));
+    }
+
+    private <T extends Metric> MetricFamily<T> add(MetricFamily<T> family) {
+        families.add(family);
+        return family;
+    }
+
+    /** Renders every family in the Prometheus text exposition format (0.0.4). */
+    public String scrape() {
+        StringBuilder out = new StringBuilder(4096);
+        for (MetricFamily<?> f : families) f.write(out);
+        return out.toString();
+    }
+}
@@ -0,0 +1,143 @@
+package com.schoolproject.metrics;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+
+/**
+ * Process-wide instruments for the analyzer service, exposed on /metrics.
+ *
+ * Everything here is either a {@link Counter} / {@link Histogram} built on
+ * striped adders or a {@link Gauge} evaluated only when scraped.
+ */
+public final class Metrics {
+
+    private Metrics() {}
+
+    public static final MetricRegistry REGISTRY = new MetricRegistry();
+
+    // ---------- HTTP ----------
+    public static final MetricFamily<Counter> HTTP_REQUESTS = REGISTRY.counter(
+            "analyzer_http_requests_total", "HTTP requests handled, by route.", "route");
+
+    public static final MetricFamily<Counter> HTTP_ERRORS = REGISTRY.counter(
+            "analyzer_http_errors_total", "HTTP responses with status >= 500, by route.", "route");
+
+    public static final MetricFamily<Histogram> HTTP_LATENCY = REGISTRY.histogram(
+            "analyzer_http_request_duration_seconds", "HTTP request latency, by route.", "route",
+            Histogram.LATENCY_SECONDS);
+
+    public static final Counter HTTP_NOT_MODIFIED = REGISTRY.counter(
+            "analyzer_http_not_modified_total", "Conditional GETs answered with 304 from the ETag alone.", null).get();
+
+    public static final MetricFamily<Counter> ADMISSION = REGISTRY.counter(
+            "analyzer_admission_total", "Admission decisions for analysis requests, by result.", "result");
+
+    public static final Counter ADMISSION_ADMITTED = ADMISSION.labels("admitted");
+    public static final Counter ADMISSION_QUEUED = ADMISSION.labels("queued");
+    public static final Counter ADMISSION_REJECTED = ADMISSION.labels("rejected");
+
+    /** Admitted work in flight; suppliers are registered by the admission controller. */
+    public static final MetricFamily<Gauge> ADMISSION_IN_FLIGHT = REGISTRY.gauge(
+            "analyzer_admission_in_flight", "Admitted analysis work in flight, by resource.", "resource");
+
+    public static final MetricFamily<Counter> COALESCE = REGISTRY.counter(
+            "analyzer_coalesced_requests_total",
+            "Analysis requests by whether they ran the work or shared a concurrent identical run.", "role");
+
+    public static final Counter COALESCE_LEADER = COALESCE.labels("leader");
+    public static final Counter COALESCE_SHARED = COALESCE.labels("shared");
+
+    // ---------- ANALYSIS ----------
+    public static final MetricFamily<Histogram> ANALYSIS_PHASE = REGISTRY.histogram(
+            "analyzer_analysis_phase_seconds", "Time spent per analysis phase.", "phase",
+            Histogram.LATENCY_SECONDS);
+
+    public static final Histogram PHASE_PARSE = ANALYSIS_PHASE.labels("parse");
+    public static final Histogram PHASE_EVENTS = ANALYSIS_PHASE.labels("events");
+    public static final Histogram PHASE_DETECT = ANALYSIS_PHASE.labels("detect");
+    public static final Histogram PHASE_TIMELINE = ANALYSIS_PHASE.labels("timeline");
+
+    public static final Counter FILES_ANALYZED = REGISTRY.counter(
+            "analyzer_files_analyzed_total", "MIDI files analyzed.", null).get();
+
+    public static final Counter ANALYSIS_FAILURES = REGISTRY.counter(
+            "analyzer_analysis_failures_total", "MIDI files that could not be parsed.", null).get();
+
+    public static final Counter CHORD_DETECTIONS = REGISTRY.counter(
+            "analyzer_chord_detections_total", "Calls into the chord detection engine.", null).get();
+
+    public static final MetricFamily<Counter> COLUMNS_CACHE = REGISTRY.counter(
+            "analyzer_columns_cache_requests_total", "Decoded-event cache lookups, by result.", "result");
+
+    public static final Counter COLUMNS_CACHE_HITS = COLUMNS_CACHE.labels("hit");
+    public static final Counter COLUMNS_CACHE_MISSES = COLUMNS_CACHE.labels("miss");
+
+    /** Bytes held by the decoded-event cache; the supplier is registered by the cache. */
+    public static final MetricFamily<Gauge> COLUMNS_CACHE_BYTES = REGISTRY.gauge(
+            "analyzer_columns_cache_bytes", "Approximate size of the decoded-event cache.", null);
+
+    // ---------- DATABASE ----------
+    public static final MetricFamily<Histogram> DB_CALL = REGISTRY.histogram(
+            "analyzer_db_call_duration_seconds", "MidiDBOperations call latency, by method.", "method",
+            Histogram.LATENCY_SECONDS);
+
+    public static final Counter BYTES_LOADED = REGISTRY.counter(
+            "analyzer_db_bytes_loaded_total", "MIDI bytes loaded from the database.", null).get();
+
+    /** 0 closed, 1 open, 2 half-open; the supplier is registered by the connector. */
+    public static final MetricFamily<Gauge> DB_CIRCUIT_STATE = REGISTRY.gauge(
+            "analyzer_db_circuit_state", "Database circuit breaker state (0 closed, 1 open, 2 half-open).", null);
+
+    public static final Counter DB_CIRCUIT_REJECTED = REGISTRY.counter(
+            "analyzer_db_circuit_rejected_total", "Database calls refused without trying while the circuit was open.", null).get();
+
+    public static final Counter STALE_RESPONSES = REGISTRY.counter(
+            "analyzer_stale_responses_total", "Responses served from the stale cache while the database was unavailable.", null).get();
+
+    public static final MetricFamily<Counter> STALE_REVALIDATIONS = REGISTRY.counter(
+            "analyzer_stale_revalidations_total", "Background refreshes of stale cache entries, by result.", "result");
+
+    // ---------- BULK UPLOAD ----------
+    public static final MetricFamily<Counter> UPLOAD_FILES = REGISTRY.counter(
+            "analyzer_upload_files_total", "Files received by /upload-bulk, by outcome.", "status");
+
+    public static final Counter UPLOAD_BATCHES = REGISTRY.counter(
+            "analyzer_upload_batches_total", "Batched INSERT transactions run by /upload-bulk.", null).get();
+
+    // ---------- LIVE ----------
+    /** Open /live sessions; the supplier is registered by the endpoint. */
+    public static final MetricFamily<Gauge> LIVE_SESSIONS = REGISTRY.gauge(
+            "analyzer_live_sessions", "Open /live WebSocket sessions.", null);
+
+    public static final Counter LIVE_REJECTED = REGISTRY.counter(
+            "analyzer_live_rejected_total", "/live connections refused at the session limit.", null).get();
+
+    public static final Counter LIVE_EVENTS = REGISTRY.counter(
+            "analyzer_live_events_total", "Note events received over /live.", null).get();
+
+    public static final Histogram LIVE_FRAME_LATENCY = REGISTRY.histogram(
+            "analyzer_live_frame_seconds", "Time to apply one /live frame and send the update.", null,
+            Histogram.LATENCY_SECONDS).get();
+
+    // ---------- JVM ----------
+    static {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        MetricFamily<Gauge> heap = REGISTRY.gauge("jvm_memory_heap_bytes", "JVM heap usage.", "area");
+        heap.register("used", new Gauge(() -> memory.getHeapMemoryUsage().getUsed()));
+        heap.register("committed", new Gauge(() -> memory.getHeapMemoryUsage().getCommitted()));
+        heap.register("max", new Gauge(() -> memory.getHeapMemoryUsage().getMax()));
+
+        MetricFamily<Gauge> gcCount = REGISTRY.counterFunction(
+                "jvm_gc_collections_total", "GC collections, by collector.", "gc");
+        MetricFamily<Gauge> gcTime = REGISTRY.counterFunction(
+                "jvm_gc_collection_seconds_total", "Time spent in GC, by collector.", "gc");
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcCount.register(gc.getName(), new Gauge(gc::getCollectionCount));
+            gcTime.register(gc.getName(), new Gauge(() -> gc.getCollectionTime() / 1000.0));
+        }
+
+        REGISTRY.gauge("jvm_threads_live", "Live JVM threads.", null)
+                .register("", new Gauge(() -> ManagementFactory.getThreadMXBean().getThreadCount()));
+    }
+}
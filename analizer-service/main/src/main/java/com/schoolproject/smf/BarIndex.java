@@ -0,0 +1,232 @@
+package com.schoolproject.smf;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Per-file index from bar numbers to track byte offsets, so a bar range can
+ * be analyzed by decoding only the bytes inside it.
+ *
+ * Every {@code stride}-th bar boundary gets one entry per track holding the
+ * reader state just before the first event at or after the boundary (byte
+ * offset, tick of the previous event, running status) and the notes still
+ * sounding on that track. The stride grows with file size so the index stays
+ * under {@link #MAX_ENTRIES} entries (~120 KB).
+ *
+ * Bar lines come from the file's {@link MeterMap}; the tempo and meter maps
+ * are stored with the index so a windowed analysis needs nothing else from
+ * the file. The serialized form starts with {@link #VERSION}; stored indexes
+ * with another version are rebuilt.
+ */
+public final class BarIndex {
+
+    public static final int VERSION = 2;
+    static final int MAX_ENTRIES = 4096;
+
+    private static final int HEADER_BYTES = 4 * 6;
+    private static final int ENTRY_BYTES = 4 + 8 + 1 + 8 + 8;
+
+    public final int ppq;
+    public final int bars;
+    public final int stride;
+    public final TempoMap tempo;
+    public final MeterMap meter;
+    public final int[] trackStart;
+    public final int[] trackEnd;
+
+    // [slot * tracks + track]
+    private final int[] offset;
+    private final long[] tick;
+    private final byte[] status;
+    private final long[] heldLo;
+    private final long[] heldHi;
+
+    private BarIndex(int ppq, int bars, int stride, TempoMap tempo, MeterMap meter,
+                     int[] trackStart, int[] trackEnd) {
+        this.ppq = ppq;
+        this.bars = bars;
+        this.stride = stride;
+        this.tempo = tempo;
+        this.meter = meter;
+        this.trackStart = trackStart;
+        this.trackEnd = trackEnd;
+        int n = slots() * tracks();
+        offset = new int[n];
+        tick = new long[n];
+        status = new byte[n];
+        heldLo = new long[n];
+        heldHi = new long[n];
+    }
+
+    public int tracks() {
+        return trackStart.length;
+    }
+
+    public int slots() {
+        return (bars - 1) / stride + 1;
+    }
+
+    public long barStartTick(int bar) {
+        return meter.barStartTick(bar);
+    }
+
+    // -------------------------------------------------------
+    // BUILD
+    // -------------------------------------------------------
+    public static BarIndex build(byte[] data) {
+        SmfFile smf = SmfFile.parse(data);
+        SmfTrackReader r = new SmfTrackReader();
+
+        // first pass: length in ticks, tempo and meter
+        TempoMap tempo = new TempoMap(smf.ppq);
+        MeterMap meter = new MeterMap(smf.ppq);
+        long lastTick = 0;
+        for (int t = 0; t < smf.tracks(); t++) {
+            r.reset(data, smf.trackStart[t], smf.trackEnd[t]);
+            while (r.next()) {
+                if (r.type != SmfTrackReader.META) continue;
+                if (r.metaType == SmfTrackReader.META_TEMPO && r.payloadLength >= 3) {
+                    tempo.add(r.tick, r.payloadInt());
+                } else if (r.metaType == SmfTrackReader.META_TIME_SIGNATURE && r.payloadLength >= 2) {
+                    byte[] d = r.data();
+                    meter.add(r.tick, d[r.payloadOffset] & 0xFF, 1 << Math.min(d[r.payloadOffset + 1] & 0xFF, 6));
+                }
+            }
+            lastTick = Math.max(lastTick, r.tick);
+        }
+
+        int bars = meter.bar(lastTick);
+        int stride = Math.max(1, (int) Math.ceil((double) bars * Math.max(1, smf.tracks()) / MAX_ENTRIES));
+        BarIndex idx = new BarIndex(smf.ppq, bars, stride, tempo, meter, smf.trackStart, smf.trackEnd);
+
+        // second pass: reader state and sounding notes at each indexed boundary
+        int slots = idx.slots();
+        long[] slotTick = new long[slots];
+        for (int s = 0; s < slots; s++) slotTick[s] = meter.barStartTick(s * stride + 1);
+        for (int t = 0; t < smf.tracks(); t++) {
+            r.reset(data, smf.trackStart[t], smf.trackEnd[t]);
+            long lo = 0, hi = 0;
+            int slot = 0;
+            while (slot < slots) {
+                int pos = r.position();
+                long prevTick = r.tick;
+                int running = r.runningStatus();
+                if (!r.next()) break;
+                while (slot < slots && r.tick >= slotTick[slot]) {
+                    idx.set(slot++, t, pos, prevTick, running, lo, hi);
+                }
+                if (r.type == 0x90 && r.data2 > 0) {
+                    if (r.data1 < 64) lo |= 1L << r.data1; else hi |= 1L << (r.data1 - 64);
+                } else if (r.type == 0x80 || r.type == 0x90) {
+                    if (r.data1 < 64) lo &= ~(1L << r.data1); else hi &= ~(1L << (r.data1 - 64));
+                }
+            }
+            // boundaries after the track's last event
+            while (slot < slots) idx.set(slot++, t, smf.trackEnd[t], r.tick, 0, lo, hi);
+        }
+        return idx;
+    }
+
+    private void set(int slot, int track, int pos, long prevTick, int running, long lo, long hi) {
+        int i = slot * tracks() + track;
+        offset[i] = pos;
+        tick[i] = prevTick;
+        status[i] = (byte) running;
+        heldLo[i] = lo;
+        heldHi[i] = hi;
+    }
+
+    // -------------------------------------------------------
+    // LOOKUP
+    // -------------------------------------------------------
+    /** Index slot at or before the start of {@code bar}. */
+    public int slotFor(int bar) {
+        return Math.min(slots() - 1, (Math.max(1, bar) - 1) / stride);
+    }
+
+    /** File offset to start decoding {@code track} for a window beginning at {@code fromBar}. */
+    public int windowStart(int track, int fromBar) {
+        return offset[slotFor(fromBar) * tracks() + track];
+    }
+
+    /** File offset past which {@code track} has no events before the end of {@code toBar}. */
+    public int windowEnd(int track, int toBar) {
+        int slot = (int) Math.ceil((double) Math.max(1, toBar) / stride); // first boundary >= start of toBar + 1
+        return slot >= slots() ? trackEnd[track] : offset[slot * tracks() + track];
+    }
+
+    public long startTick(int track, int fromBar) {
+        return tick[slotFor(fromBar) * tracks() + track];
+    }
+
+    public int startStatus(int track, int fromBar) {
+        return status[slotFor(fromBar) * tracks() + track] & 0xFF;
+    }
+
+    /** Notes sounding on {@code track} at the indexed boundary for {@code fromBar}: [lo, hi] bitset. */
+    public long heldLo(int track, int fromBar) {
+        return heldLo[slotFor(fromBar) * tracks() + track];
+    }
+
+    public long heldHi(int track, int fromBar) {
+        return heldHi[slotFor(fromBar) * tracks() + track];
+    }
+
+    // -------------------------------------------------------
+    // SERIALIZATION
+    // -------------------------------------------------------
+    public byte[] toBytes() {
+        int n = offset.length;
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_BYTES + 8 + tempo.size() * 16 + meter.size() * 10
+                + tracks() * 8 + n * ENTRY_BYTES);
+        buf.putInt(VERSION).putInt(ppq).putInt(bars).putInt(stride).putInt(tracks()).putInt(n);
+
+        buf.putInt(tempo.size());
+        for (int i = 0; i < tempo.size(); i++) buf.putLong(tempo.tick(i)).putLong(tempo.usPerQuarter(i));
+        buf.putInt(meter.size());
+        for (int i = 0; i < meter.size(); i++) {
+            buf.putLong(meter.tick(i)).put((byte) meter.numerator(i)).put((byte) Integer.numberOfTrailingZeros(meter.denominator(i)));
+        }
+
+        for (int t = 0; t < tracks(); t++) buf.putInt(trackStart[t]).putInt(trackEnd[t]);
+        for (int i = 0; i < n; i++) {
+            buf.putInt(offset[i]).putLong(tick[i]).put(status[i]).putLong(heldLo[i]).putLong(heldHi[i]);
+        }
+        return buf.array();
+    }
+
+    /** Returns null for empty input or an index written by another {@link #VERSION}. */
+    public static BarIndex fromBytes(byte[] bytes) {
+        if (bytes == null || bytes.length < HEADER_BYTES) return null;
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+        if (buf.getInt() != VERSION) return null;
+
+        int ppq = buf.getInt();
+        int bars = buf.getInt();
+        int stride = buf.getInt();
+        int tracks = buf.getInt();
+        int n = buf.getInt();
+
+        TempoMap tempo = new TempoMap(ppq);
+        for (int i = buf.getInt(); i > 0; i--) tempo.add(buf.getLong(), buf.getLong());
+        MeterMap meter = new MeterMap(ppq);
+        for (int i = buf.getInt(); i > 0; i--) meter.add(buf.getLong(), buf.get() & 0xFF, 1 << buf.get());
+
+        int[] starts = new int[tracks];
+        int[] ends = new int[tracks];
+        for (int t = 0; t < tracks; t++) {
+            starts[t] = buf.getInt();
+            ends[t] = buf.getInt();
+        }
+
+        BarIndex idx = new BarIndex(ppq, bars, stride, tempo, meter, starts, ends);
+        if (idx.offset.length != n) throw new IllegalArgumentException("Corrupt bar index");
+        for (int i = 0; i < n; i++) {
+            idx.offset[i] = buf.getInt();
+            idx.tick[i] = buf.getLong();
+            idx.status[i] = buf.get();
+            idx.heldLo[i] = buf.getLong();
+            idx.heldHi[i] = buf.getLong();
+        }
+        return idx;
+    }
+}
@@ -0,0 +1,165 @@
+package com.schoolproject.smf;
+
+import java.util.Arrays;
+
+/**
+ * A MIDI file decoded once into parallel primitive columns, merged across
+ * tracks in time order. Analysis passes loop over these arrays instead of
+ * walking javax {@code Track}/{@code MidiEvent} objects.
+ *
+ * Only note events become rows; tempo and time-signature events go into
+ * {@link #tempo} and {@link #meter} during the same decode pass. At equal
+ * ticks, note-offs from any track sort before note-ons, and otherwise the
+ * lower track comes first; order within a track is preserved. Instances are
+ * immutable after decoding and safe to share (see {@link EventColumnsCache}).
+ */
+public final class EventColumns {
+
+    public static final byte NOTE_ON = 1;
+    public static final byte NOTE_OFF = 2;
+
+    public final int size;
+    public final long[] tick;
+    public final byte[] type;
+    public final byte[] note;
+    public final byte[] velocity;
+    public final short[] track;
+
+    public final TempoMap tempo;
+    public final MeterMap meter;
+
+    private EventColumns(int size, long[] tick, byte[] type, byte[] note, byte[] velocity, short[] track,
+                         TempoMap tempo, MeterMap meter) {
+        this.size = size;
+        this.tick = tick;
+        this.type = type;
+        this.note = note;
+        this.velocity = velocity;
+        this.track = track;
+        this.tempo = tempo;
+        this.meter = meter;
+    }
+
+    /** Approximate heap footprint, used for cache budgeting. */
+    public long sizeBytes() {
+        return 64 + (long) tick.length * 13;
+    }
+
+    /** Decodes a whole file. */
+    public static EventColumns decode(byte[] data) {
+        SmfFile smf = SmfFile.parse(data);
+        SmfTrackReader[] readers = new SmfTrackReader[smf.tracks()];
+        for (int t = 0; t < readers.length; t++) {
+            readers[t] = new SmfTrackReader().reset(data, smf.trackStart[t], smf.trackEnd[t]);
+        }
+        return decode(readers, new TempoMap(smf.ppq), new MeterMap(smf.ppq), true);
+    }
+
+    /**
+     * Decodes pre-positioned track readers (e.g. bar-window slices). With
+     * {@code collectMaps} false, tempo and meter events are skipped and the
+     * given maps are used as they are.
+     */
+    public static EventColumns decode(SmfTrackReader[] readers, TempoMap tempo, MeterMap meter, boolean collectMaps) {
+        if (readers.length > Short.MAX_VALUE) throw new IllegalArgumentException("Too many tracks: " + readers.length);
+
+        // 1) decode track after track into scratch columns
+        Columns raw = new Columns(1024);
+        int[] from = new int[readers.length + 1];
+        for (int t = 0; t < readers.length; t++) {
+            from[t] = raw.size;
+            SmfTrackReader r = readers[t];
+            while (r.next()) {
+                if (r.type == 0x90 || r.type == 0x80) {
+                    byte kind = r.type == 0x90 && r.data2 > 0 ? NOTE_ON : NOTE_OFF;
+                    raw.add(r.tick, kind, r.data1, r.data2, t);
+                } else if (collectMaps && r.type == SmfTrackReader.META) {
+                    if (r.metaType == SmfTrackReader.META_TEMPO && r.payloadLength >= 3) {
+                        tempo.add(r.tick, r.payloadInt());
+                    } else if (r.metaType == SmfTrackReader.META_TIME_SIGNATURE && r.payloadLength >= 2) {
+                        byte[] d = r.data();
+                        meter.add(r.tick, d[r.payloadOffset] & 0xFF, 1 << Math.min(d[r.payloadOffset + 1] & 0xFF, 6));
+                    }
+                }
+            }
+        }
+        from[readers.length] = raw.size;
+
+        // 2) k-way merge of the per-track runs by (tick, off-before-on, track)
+        Columns out = new Columns(raw.size);
+        int[] cursor = Arrays.copyOf(from, readers.length);
+        int[] heap = new int[readers.length];
+        int n = 0;
+        for (int t = 0; t < readers.length; t++) {
+            if (cursor[t] < from[t + 1]) heap[n++] = t;
+        }
+        for (int i = n / 2 - 1; i >= 0; i--) siftDown(heap, n, i, raw, cursor);
+
+        while (n > 0) {
+            int t = heap[0];
+            int i = cursor[t]++;
+            out.add(raw.tick[i], raw.type[i], raw.note[i], raw.velocity[i], t);
+            if (cursor[t] == from[t + 1]) heap[0] = heap[--n];
+            siftDown(heap, n, 0, raw, cursor);
+        }
+
+        return new EventColumns(out.size, out.tick, out.type, out.note, out.velocity, out.track, tempo, meter);
+    }
+
+    private static void siftDown(int[] heap, int n, int i, Columns raw, int[] cursor) {
+        while (true) {
+            int l = 2 * i + 1;
+            if (l >= n) return;
+            int m = l + 1 < n && before(heap[l + 1], heap[l], raw, cursor) ? l + 1 : l;
+            if (!before(heap[m], heap[i], raw, cursor)) return;
+            int tmp = heap[i];
+            heap[i] = heap[m];
+            heap[m] = tmp;
+            i = m;
+        }
+    }
+
+    /** True if the head event of track a sorts before the head of track b. */
+    private static boolean before(int a, int b, Columns raw, int[] cursor) {
+        int ia = cursor[a], ib = cursor[b];
+        if (raw.tick[ia] != raw.tick[ib]) return raw.tick[ia] < raw.tick[ib];
+        if (raw.type[ia] != raw.type[ib]) return raw.type[ia] == NOTE_OFF;
+        return a < b;
+    }
+
+    /** Growable column set used while decoding. */
+    private static final class Columns {
+        long[] tick;
+        byte[] type;
+        byte[] note;
+        byte[] velocity;
+        short[] track;
+        int size;
+
+        Columns(int capacity) {
+            capacity = Math.max(capacity, 16);
+            tick = new long[capacity];
+            type = new byte[capacity];
+            note = new byte[capacity];
+            velocity = new byte[capacity];
+            track = new short[capacity];
+        }
+
+        void add(long t, byte kind, int n, int v, int tr) {
+            if (size == tick.length) {
+                int cap = size * 2;
+                tick = Arrays.copyOf(tick, cap);
+                type = Arrays.copyOf(type, cap);
+                note = Arrays.copyOf(note, cap);
+                velocity = Arrays.copyOf(velocity, cap);
+                track = Arrays.copyOf(track, cap);
+            }
+            tick[size] = t;
+            type[size] = kind;
+            note[size] = (byte) n;
+            velocity[size] = (byte) v;
+            track[size] = (short) tr;
+            size++;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.schoolproject.smf;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.schoolproject.ServiceConfig;
+import com.schoolproject.metrics.Gauge;
+import com.schoolproject.metrics.Metrics;
+
+/**
+ * LRU cache of decoded {@link EventColumns}, keyed by the SHA-256 of the
+ * file bytes, so re-analyzing the same content (same file, or an identical
+ * upload under another name) skips decoding. Bounded by
+ * {@code analyzer.columns-cache-mb} (default 64, 0 disables).
+ */
+public final class EventColumnsCache {
+
+    public static final EventColumnsCache SHARED =
+            new EventColumnsCache(ServiceConfig.getLong("analyzer.columns-cache-mb", 64) * 1024 * 1024);
+
+    static {
+        Metrics.COLUMNS_CACHE_BYTES.register("", new Gauge(SHARED::sizeBytes));
+    }
+
+    private final long maxBytes;
+    private long bytes;
+    private final LinkedHashMap<String, EventColumns> entries = new LinkedHashMap<>(64, 0.75f, true);
+
+    public EventColumnsCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public static String sha256(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 not available", e);
+        }
+    }
+
+    public synchronized EventColumns get(String hash) {
+        EventColumns c = entries.get(hash);
+        (c == null ? Metrics.COLUMNS_CACHE_MISSES : Metrics.COLUMNS_CACHE_HITS).inc();
+        return c;
+    }
+
+    public synchronized void put(String hash, EventColumns columns) {
+        long size = columns.sizeBytes();
+        if (size > maxBytes) return; // would evict everything else
+        EventColumns old = entries.put(hash, columns);
+        if (old != null) bytes -= old.sizeBytes();
+        bytes += size;
+
+        Iterator<Map.Entry<String, EventColumns>> it = entries.entrySet().iterator();
+        while (bytes > maxBytes && it.hasNext()) {
+            bytes -= it.next().getValue().sizeBytes();
+            it.remove();
+        }
+    }
+
+    public synchronized long sizeBytes() {
+        return bytes;
+    }
+}
@@ -0,0 +1,119 @@
+package com.schoolproject.smf;
+
+import java.util.Arrays;
+
+/**
+ * Tick → bar / beat conversion across time-signature changes.
+ *
+ * Like {@link TempoMap}, segments are sorted by start tick and carry the bar
+ * number they start on, so lookups are a binary search with no allocation.
+ * A change that does not fall on a bar line starts a new bar there. Beats
+ * are counted in the signature's denominator unit (eighths in 6/8).
+ */
+public final class MeterMap {
+
+    private final int ppq;
+    private long[] tick = new long[4];
+    private int[] numerator = new int[4];
+    private int[] denominator = new int[4];
+    private long[] firstBar = new long[4];
+    private int size;
+
+    public MeterMap(int ppq) {
+        this.ppq = ppq;
+        numerator[0] = 4;
+        denominator[0] = 4;
+        firstBar[0] = 1;
+        size = 1;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long tick(int segment) {
+        return tick[segment];
+    }
+
+    public int numerator(int segment) {
+        return numerator[segment];
+    }
+
+    public int denominator(int segment) {
+        return denominator[segment];
+    }
+
+    /** Time signature {@code num/den} from {@code atTick} on; den is the actual note value (4, 8, ...). */
+    public void add(long atTick, int num, int den) {
+        if (num <= 0 || den <= 0) return; // malformed meta event; keep the previous meter
+        int i = find(atTick);
+        if (tick[i] == atTick) {
+            numerator[i] = num;
+            denominator[i] = den;
+        } else {
+            if (size == tick.length) grow();
+            i++;
+            System.arraycopy(tick, i, tick, i + 1, size - i);
+            System.arraycopy(numerator, i, numerator, i + 1, size - i);
+            System.arraycopy(denominator, i, denominator, i + 1, size - i);
+            tick[i] = atTick;
+            numerator[i] = num;
+            denominator[i] = den;
+            size++;
+        }
+        for (int k = Math.max(1, i); k < size; k++) {
+            long len = tick[k] - tick[k - 1];
+            long perBar = ticksPerBar(k - 1);
+            firstBar[k] = firstBar[k - 1] + (len + perBar - 1) / perBar;
+        }
+    }
+
+    public int bar(long atTick) {
+        int i = find(atTick);
+        return (int) (firstBar[i] + Math.max(0, atTick - tick[i]) / ticksPerBar(i));
+    }
+
+    /** 1-based beat within the bar, fractional between beats. */
+    public double beat(long atTick) {
+        int i = find(atTick);
+        long inBar = Math.max(0, atTick - tick[i]) % ticksPerBar(i);
+        return inBar / ticksPerBeat(i) + 1;
+    }
+
+    /** First tick of 1-based {@code bar}. */
+    public long barStartTick(int bar) {
+        int lo = 0, hi = size - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (firstBar[mid] <= bar) lo = mid;
+            else hi = mid - 1;
+        }
+        return tick[lo] + (bar - firstBar[lo]) * ticksPerBar(lo);
+    }
+
+    private long ticksPerBar(int segment) {
+        return Math.max(1, Math.round(ticksPerBeat(segment) * numerator[segment]));
+    }
+
+    private double ticksPerBeat(int segment) {
+        return ppq * 4.0 / denominator[segment];
+    }
+
+    private int find(long atTick) {
+        int lo = 0, hi = size - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (tick[mid] <= atTick) lo = mid;
+            else hi = mid - 1;
+        }
+        return lo;
+    }
+
+    private void grow() {
+        int n = tick.length * 2;
+        tick = Arrays.copyOf(tick, n);
+        numerator = Arrays.copyOf(numerator, n);
+        denominator = Arrays.copyOf(denominator, n);
+        firstBar = Arrays.copyOf(firstBar, n);
+    }
+}
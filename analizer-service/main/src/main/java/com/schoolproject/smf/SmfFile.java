@@ -0,0 +1,75 @@
+package com.schoolproject.smf;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Chunk layout of a Standard MIDI File: header fields and where each
+ * track's event data starts and ends. Events themselves are decoded lazily
+ * with {@link SmfTrackReader}.
+ */
+public final class SmfFile {
+
+    public final int format;
+    public final int ppq;
+    /** Byte offset of each track's first event (just past the MTrk header). */
+    public final int[] trackStart;
+    /** Byte offset just past each track's last event. */
+    public final int[] trackEnd;
+
+    private SmfFile(int format, int ppq, int[] trackStart, int[] trackEnd) {
+        this.format = format;
+        this.ppq = ppq;
+        this.trackStart = trackStart;
+        this.trackEnd = trackEnd;
+    }
+
+    public int tracks() {
+        return trackStart.length;
+    }
+
+    /** Reads the header and locates the track chunks; unknown chunks are skipped. */
+    public static SmfFile parse(byte[] data) {
+        if (data.length < 14 || !chunkIs(data, 0, "MThd"))
+            throw new IllegalArgumentException("Not a Standard MIDI File");
+
+        int headerLen = readInt(data, 4);
+        int format = readShort(data, 8);
+        int declaredTracks = readShort(data, 10);
+        int division = readShort(data, 12);
+        if ((division & 0x8000) != 0)
+            throw new IllegalArgumentException("SMPTE time division is not supported");
+
+        List<int[]> tracks = new ArrayList<>(declaredTracks);
+        int pos = 8 + headerLen;
+        while (pos + 8 <= data.length && tracks.size() < declaredTracks) {
+            int len = readInt(data, pos + 4);
+            int start = pos + 8;
+            int end = (int) Math.min((long) start + len, data.length); // tolerate truncated last chunk
+            if (len < 0) throw new IllegalArgumentException("Bad chunk length at offset " + pos);
+            if (chunkIs(data, pos, "MTrk")) tracks.add(new int[]{start, end});
+            pos = end;
+        }
+
+        int[] starts = new int[tracks.size()];
+        int[] ends = new int[tracks.size()];
+        for (int t = 0; t < starts.length; t++) {
+            starts[t] = tracks.get(t)[0];
+            ends[t] = tracks.get(t)[1];
+        }
+        return new SmfFile(format, division, starts, ends);
+    }
+
+    private static boolean chunkIs(byte[] d, int pos, String id) {
+        for (int i = 0; i < 4; i++) if (d[pos + i] != id.charAt(i)) return false;
+        return true;
+    }
+
+    static int readInt(byte[] d, int pos) {
+        return ((d[pos] & 0xFF) << 24) | ((d[pos + 1] & 0xFF) << 16) | ((d[pos + 2] & 0xFF) << 8) | (d[pos + 3] & 0xFF);
+    }
+
+    static int readShort(byte[] d, int pos) {
+        return ((d[pos] & 0xFF) << 8) | (d[pos + 1] & 0xFF);
+    }
+}
@@ -0,0 +1,128 @@
+package com.schoolproject.smf;
+
+/**
+ * Allocation-free cursor over one track's event bytes.
+ *
+ * {@link #next()} decodes one event into the public fields. The cursor
+ * state ({@link #position()}, {@link #tick}, {@link #runningStatus()}) can be
+ * saved before any event and restored later with {@link #reset}, which is
+ * what the {@link BarIndex} stores per bar.
+ */
+public final class SmfTrackReader {
+
+    public static final int META = 0xFF;
+    public static final int SYSEX = 0xF0;
+    public static final int META_TEMPO = 0x51;
+    public static final int META_TIME_SIGNATURE = 0x58;
+    public static final int META_END_OF_TRACK = 0x2F;
+
+    private byte[] data;
+    private int pos;
+    private int end;
+    private int base;          // file offset of data[0] when reading a slice
+    private int running;       // running status, 0 if none
+
+    // ---- last decoded event ----
+    public long tick;
+    /** Status with the channel stripped (0x80..0xE0), or META / SYSEX. */
+    public int type;
+    public int channel;
+    public int data1;
+    public int data2;
+    public int metaType;
+    /** Offset into {@link #data()} of the meta/sysex payload. */
+    public int payloadOffset;
+    public int payloadLength;
+
+    /** Positions the cursor on file bytes {@code [start, end)} of {@code data}, at tick 0. */
+    public SmfTrackReader reset(byte[] data, int start, int end) {
+        return reset(data, 0, start, end, 0, 0);
+    }
+
+    /**
+     * Positions the cursor on a slice. {@code base} is the file offset of
+     * {@code data[0]}; {@code start} and {@code end} are file offsets.
+     */
+    public SmfTrackReader reset(byte[] data, int base, int start, int end, long tick, int runningStatus) {
+        this.data = data;
+        this.base = base;
+        this.pos = start - base;
+        this.end = end - base;
+        this.tick = tick;
+        this.running = runningStatus;
+        return this;
+    }
+
+    public byte[] data() {
+        return data;
+    }
+
+    /** File offset of the next undecoded event. */
+    public int position() {
+        return pos + base;
+    }
+
+    public int runningStatus() {
+        return running;
+    }
+
+    /** Decodes the next event; false at the end of the range or after End of Track. */
+    public boolean next() {
+        if (pos >= end) return false;
+
+        tick += readVarLen();
+        if (pos >= end) return false;
+
+        int status = data[pos] & 0xFF;
+        if (status >= 0x80) pos++;
+        else if (running != 0) status = running;
+        else throw new IllegalArgumentException("Data byte without running status at offset " + position());
+
+        if (status == META) {
+            metaType = data[pos++] & 0xFF;
+            payloadLength = readVarLen();
+            payloadOffset = pos;
+            pos += payloadLength;
+            type = META;
+            if (metaType == META_END_OF_TRACK) {
+                pos = end;
+                return true;
+            }
+        } else if (status == 0xF0 || status == 0xF7) {
+            payloadLength = readVarLen();
+            payloadOffset = pos;
+            pos += payloadLength;
+            type = SYSEX;
+            running = 0;
+        } else if (status >= 0xF1) {
+            throw new IllegalArgumentException("Unexpected status 0x" + Integer.toHexString(status)
+                    + " at offset " + position());
+        } else {
+            running = status;
+            type = status & 0xF0;
+            channel = status & 0x0F;
+            data1 = data[pos++] & 0x7F;
+            data2 = type == 0xC0 || type == 0xD0 ? 0 : data[pos++] & 0x7F;
+        }
+        if (pos > end) throw new IllegalArgumentException("Event runs past end of track");
+        return true;
+    }
+
+    /** Big-endian unsigned value of the current meta payload (e.g. tempo). */
+    public int payloadInt() {
+        int v = 0;
+        for (int i = 0; i < payloadLength; i++) v = (v << 8) | (data[payloadOffset + i] & 0xFF);
+        return v;
+    }
+
+    private int readVarLen() {
+        int v = 0;
+        for (int i = 0; i < 4; i++) {
+            if (pos >= end) throw new IllegalArgumentException("Truncated variable-length value");
+            int b = data[pos++] & 0xFF;
+            v = (v << 7) | (b & 0x7F);
+            if ((b & 0x80) == 0) return v;
+        }
+        throw new IllegalArgumentException("Variable-length value longer than 4 bytes");
+    }
+}
@@ -0,0 +1,97 @@
+package com.schoolproject.smf;
+
+import java.util.Arrays;
+
+/**
+ * Tick → seconds conversion across tempo changes.
+ *
+ * Tempo segments are kept sorted by start tick together with the elapsed
+ * seconds at each segment start, so a lookup is one binary search plus one
+ * multiply, with no allocation. Segments are normally appended in tick
+ * order; an out-of-order event is inserted and the cumulative times after it
+ * are recomputed.
+ */
+public final class TempoMap {
+
+    public static final long DEFAULT_US_PER_QUARTER = 500_000; // 120 BPM
+
+    private final int ppq;
+    private long[] tick = new long[8];
+    private long[] usPerQuarter = new long[8];
+    private double[] seconds = new double[8];
+    private int size;
+
+    public TempoMap(int ppq) {
+        this.ppq = ppq;
+        tick[0] = 0;
+        usPerQuarter[0] = DEFAULT_US_PER_QUARTER;
+        size = 1;
+    }
+
+    public int ppq() {
+        return ppq;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long tick(int segment) {
+        return tick[segment];
+    }
+
+    public long usPerQuarter(int segment) {
+        return usPerQuarter[segment];
+    }
+
+    /** Tempo in effect from {@code atTick} on (until the next change). */
+    public void add(long atTick, long usPerQuarterNote) {
+        int i = find(atTick);
+        if (tick[i] == atTick) {
+            usPerQuarter[i] = usPerQuarterNote;
+        } else {
+            if (size == tick.length) grow();
+            i++;
+            System.arraycopy(tick, i, tick, i + 1, size - i);
+            System.arraycopy(usPerQuarter, i, usPerQuarter, i + 1, size - i);
+            tick[i] = atTick;
+            usPerQuarter[i] = usPerQuarterNote;
+            size++;
+        }
+        for (int k = Math.max(1, i); k < size; k++) {
+            seconds[k] = seconds[k - 1] + span(k - 1, tick[k]);
+        }
+    }
+
+    public double seconds(long atTick) {
+        int i = find(atTick);
+        return seconds[i] + span(i, atTick);
+    }
+
+    /** Tempo in effect at {@code atTick}. */
+    public long usPerQuarterAt(long atTick) {
+        return usPerQuarter[find(atTick)];
+    }
+
+    private double span(int segment, long toTick) {
+        return (toTick - tick[segment]) / (double) ppq * (usPerQuarter[segment] / 1_000_000.0);
+    }
+
+    /** Last segment starting at or before {@code atTick} (segment 0 for negative ticks). */
+    private int find(long atTick) {
+        int lo = 0, hi = size - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (tick[mid] <= atTick) lo = mid;
+            else hi = mid - 1;
+        }
+        return lo;
+    }
+
+    private void grow() {
+        int n = tick.length * 2;
+        tick = Arrays.copyOf(tick, n);
+        usPerQuarter = Arrays.copyOf(usPerQuarter, n);
+        seconds = Arrays.copyOf(seconds, n);
+    }
+}
@@ -0,0 +1,283 @@
+package com.schoolproject.web;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.schoolproject.ServiceConfig;
+import com.schoolproject.metrics.Gauge;
+import com.schoolproject.metrics.Metrics;
+
+import io.javalin.http.Context;
+
+/**
+ * Bounds the analysis work in flight, in requests and in estimated heap
+ * bytes, so a burst is shed at the door instead of thrashing GC and the
+ * database.
+ *
+ * A request that does not fit waits in a short FIFO queue for at most
+ * {@code analyzer.admission.wait-ms}; if the queue is full or the wait runs
+ * out it is rejected, and the caller answers 503 with {@link #retryAfterSeconds()}.
+ * Each client ({@link #clientId}) may hold at most its fair share of the
+ * request slots, {@code max-requests / clients with work}, so one busy
+ * client cannot starve the others: waiters over their share are skipped,
+ * not blocking the queue behind them, and a full queue sheds the busiest
+ * client's newest waiter to make room for a quieter client.
+ */
+final class AdmissionController {
+
+    private final int maxRequests;
+    private final long maxBytes;
+    private final int maxQueue;
+    private final long waitNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+
+    // guarded by lock
+    private int requests;
+    private long bytes;
+    private final Map<String, Integer> perClient = new HashMap<>();   // in flight + waiting, by client
+    private final Map<String, Integer> admittedPerClient = new HashMap<>();
+    private final ArrayDeque<Waiter> queue = new ArrayDeque<>();
+    private double avgHoldSeconds = 0.1;                             // EWMA, for Retry-After
+
+    private static final class Waiter {
+        final String client;
+        final long bytes;
+        boolean granted;
+        boolean evicted;
+
+        Waiter(String client, long bytes) {
+            this.client = client;
+            this.bytes = bytes;
+        }
+    }
+
+    /** Held while the admitted work runs; closing it frees the budget. */
+    final class Permit implements AutoCloseable {
+        private final String client;
+        private final long bytes;
+        private final long start = System.nanoTime();
+        private boolean closed;
+
+        private Permit(String client, long bytes) {
+            this.client = client;
+            this.bytes = bytes;
+        }
+
+        @Override
+        public void close() {
+            if (closed) return;
+            closed = true;
+            release(this);
+        }
+    }
+
+    AdmissionController() {
+        this(ServiceConfig.getInt("analyzer.admission.max-requests", 2 * Runtime.getRuntime().availableProcessors()),
+                ServiceConfig.getLong("analyzer.admission.max-mb", 256) << 20,
+                ServiceConfig.getInt("analyzer.admission.queue", 32),
+                ServiceConfig.getLong("analyzer.admission.wait-ms", 250));
+    }
+
+    AdmissionController(int maxRequests, long maxBytes, int maxQueue, long waitMs) {
+        this.maxRequests = Math.max(1, maxRequests);
+        this.maxBytes = maxBytes;
+        this.maxQueue = maxQueue;
+        this.waitNanos = TimeUnit.MILLISECONDS.toNanos(waitMs);
+        Metrics.ADMISSION_IN_FLIGHT.register("requests", new Gauge(() -> snapshot(false)));
+        Metrics.ADMISSION_IN_FLIGHT.register("bytes", new Gauge(() -> snapshot(true)));
+    }
+
+    /**
+     * Admits work expected to need about {@code costBytes} of heap, waiting
+     * briefly if needed. Returns null if the request should be rejected.
+     */
+    Permit tryAcquire(String client, long costBytes) throws InterruptedException {
+        lock.lock();
+        try {
+            perClient.merge(client, 1, Integer::sum);
+            if (queue.isEmpty() && fits(client, costBytes)) {
+                admit(client, costBytes);
+                Metrics.ADMISSION_ADMITTED.inc();
+                return new Permit(client, costBytes);
+            }
+            if (queue.size() >= maxQueue && !evictFor(client)) {
+                leave(client);
+                Metrics.ADMISSION_REJECTED.inc();
+                return null;
+            }
+
+            Waiter w = new Waiter(client, costBytes);
+            queue.addLast(w);
+            grantWaiters(); // earlier waiters may not fit where this one does
+            Metrics.ADMISSION_QUEUED.inc();
+            long remaining = waitNanos;
+            try {
+                while (!w.granted && !w.evicted && remaining > 0) remaining = changed.awaitNanos(remaining);
+            } catch (InterruptedException e) {
+                if (w.granted) release(new Permit(client, costBytes));
+                else {
+                    queue.remove(w);
+                    leave(client);
+                }
+                throw e;
+            }
+            if (w.granted) {
+                Metrics.ADMISSION_ADMITTED.inc();
+                return new Permit(client, costBytes);
+            }
+            if (!w.evicted) queue.remove(w);
+            leave(client);
+            Metrics.ADMISSION_REJECTED.inc();
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // rough heap needed per stored file byte: raw bytes plus decoded columns (~13 bytes per event)
+    private static final int HEAP_PER_FILE_BYTE = 6;
+
+    /** Thrown by {@link #acquire} when the request is shed; carries the Retry-After to send. */
+    static final class Busy extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final int retryAfterSeconds;
+
+        Busy(int retryAfterSeconds) {
+            super("Server busy, retry later", null, false, false);
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+
+        void respond(Context ctx) {
+            ctx.header("Retry-After", String.valueOf(retryAfterSeconds));
+            ctx.status(503).json("{\"error\":\"Server busy, retry later\"}");
+        }
+    }
+
+    /** Admits analysis of {@code fileBytes} of MIDI data for {@code client}, or throws {@link Busy}. */
+    Permit acquire(String client, long fileBytes) throws InterruptedException {
+        Permit permit = tryAcquire(client, fileBytes * HEAP_PER_FILE_BYTE);
+        if (permit == null) throw new Busy(retryAfterSeconds());
+        return permit;
+    }
+
+    /**
+     * Admits analysis of {@code fileBytes} of MIDI data for this request's
+     * client, or answers 503 with Retry-After and returns null.
+     */
+    Permit admit(Context ctx, long fileBytes) throws InterruptedException {
+        try {
+            return acquire(clientId(ctx), fileBytes);
+        } catch (Busy e) {
+            e.respond(ctx);
+            return null;
+        }
+    }
+
+    /** X-Client-Id when the caller sends one (dashboards, the desktop client), else the remote address. */
+    static String clientId(Context ctx) {
+        String id = ctx.header("X-Client-Id");
+        return id != null && !id.isBlank() ? id : ctx.ip();
+    }
+
+    /** Suggested Retry-After: time for the current queue to drain, at least one second. */
+    int retryAfterSeconds() {
+        lock.lock();
+        try {
+            return (int) Math.max(1, Math.ceil(avgHoldSeconds * (queue.size() + 1) / maxRequests));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(Permit p) {
+        lock.lock();
+        try {
+            requests--;
+            bytes -= p.bytes;
+            admittedPerClient.merge(p.client, -1, (a, b) -> a + b == 0 ? null : a + b);
+            leave(p.client);
+            avgHoldSeconds += ((System.nanoTime() - p.start) / 1e9 - avgHoldSeconds) * 0.1;
+            grantWaiters();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Hands free budget to waiters in arrival order, skipping those that don't fit or are over their share. */
+    private void grantWaiters() {
+        boolean any = false;
+        for (Iterator<Waiter> it = queue.iterator(); it.hasNext(); ) {
+            Waiter w = it.next();
+            if (!fits(w.client, w.bytes)) continue;
+            admit(w.client, w.bytes);
+            w.granted = true;
+            it.remove();
+            any = true;
+        }
+        if (any) changed.signalAll();
+    }
+
+    /**
+     * Full queue: makes room for {@code client} by evicting the newest waiter
+     * of the client with the most waiters, if that client has more than
+     * {@code client} would have once queued.
+     */
+    private boolean evictFor(String client) {
+        Map<String, Integer> waiting = new HashMap<>();
+        for (Waiter w : queue) waiting.merge(w.client, 1, Integer::sum);
+        String heaviest = null;
+        int most = 0;
+        for (Map.Entry<String, Integer> e : waiting.entrySet()) {
+            if (e.getValue() > most) {
+                heaviest = e.getKey();
+                most = e.getValue();
+            }
+        }
+        if (heaviest == null || most <= waiting.getOrDefault(client, 0) + 1) return false;
+        for (Iterator<Waiter> it = queue.descendingIterator(); it.hasNext(); ) {
+            Waiter w = it.next();
+            if (w.client.equals(heaviest)) {
+                it.remove();
+                w.evicted = true;
+                changed.signalAll();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** A single request larger than the byte budget is still admitted when nothing else runs. */
+    private boolean fits(String client, long cost) {
+        if (requests >= maxRequests) return false;
+        if (requests > 0 && bytes + cost > maxBytes) return false;
+        int share = Math.max(1, maxRequests / Math.max(1, perClient.size()));
+        return admittedPerClient.getOrDefault(client, 0) < share;
+    }
+
+    private void admit(String client, long cost) {
+        requests++;
+        bytes += cost;
+        admittedPerClient.merge(client, 1, Integer::sum);
+    }
+
+    private void leave(String client) {
+        perClient.merge(client, -1, (a, b) -> a + b == 0 ? null : a + b);
+    }
+
+    private double snapshot(boolean inBytes) {
+        lock.lock();
+        try {
+            return inBytes ? bytes : requests;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
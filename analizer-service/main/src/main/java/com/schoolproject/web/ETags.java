@@ -0,0 +1,63 @@
+package com.schoolproject.web;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+import com.schoolproject.ServiceConfig;
+import com.schoolproject.analyzer.MidiDifficultyAnalyzer;
+import com.schoolproject.metrics.Metrics;
+
+import io.javalin.http.Context;
+import io.javalin.http.HttpStatus;
+
+/**
+ * Strong ETags for analysis responses. A tag covers the stored file's
+ * content hash, {@link MidiDifficultyAnalyzer#FINGERPRINT} and the response
+ * variant (route and query parameters), so it changes exactly when the
+ * response body could. Checking it needs only the content hash, not the
+ * file or an analysis.
+ */
+final class ETags {
+
+    // 0 = always revalidate; polling clients then get cheap 304s
+    private static final int MAX_AGE = ServiceConfig.getInt("analyzer.http.max-age-seconds", 0);
+
+    private ETags() {}
+
+    static String of(byte[] contentHash, String variant) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            md.update(contentHash);
+            md.update((MidiDifficultyAnalyzer.FINGERPRINT + '\n' + variant).getBytes(StandardCharsets.UTF_8));
+            return '"' + HexFormat.of().formatHex(md.digest(), 0, 16) + '"';
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Sets ETag and Cache-Control; answers 304 and returns true if the
+     * request's If-None-Match already has this tag.
+     */
+    static boolean notModified(Context ctx, String etag) {
+        ctx.header("ETag", etag);
+        ctx.header("Cache-Control", MAX_AGE > 0 ? "private, max-age=" + MAX_AGE : "no-cache");
+        if (!matches(ctx.header("If-None-Match"), etag)) return false;
+        Metrics.HTTP_NOT_MODIFIED.inc();
+        ctx.status(HttpStatus.NOT_MODIFIED);
+        return true;
+    }
+
+    /** If-None-Match uses weak comparison: "W/" prefixes are ignored; "*" matches any tag. */
+    static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) return false;
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) tag = tag.substring(2);
+            if (tag.equals("*") || tag.equals(etag)) return true;
+        }
+        return false;
+    }
+}
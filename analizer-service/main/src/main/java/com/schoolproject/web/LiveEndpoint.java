@@ -0,0 +1,135 @@
+package com.schoolproject.web;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.websocket.api.StatusCode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.schoolproject.ServiceConfig;
+import com.schoolproject.analyzer.ChordAnalysisEngine;
+import com.schoolproject.analyzer.ChordId;
+import com.schoolproject.metrics.Gauge;
+import com.schoolproject.metrics.Metrics;
+
+import io.javalin.Javalin;
+import io.javalin.websocket.WsContext;
+
+/**
+ * {@code /live}: streaming analysis for performing clients.
+ * See {@link LiveProtocol} for the wire format.
+ *
+ * Every frame with events gets an UPDATE. When a frame leaves an onset
+ * cluster open, one shared timer thread closes it once its window has
+ * passed and sends another UPDATE, unless a later frame closed it first.
+ * Sends for a session happen under the session's lock.
+ */
+final class LiveEndpoint {
+
+    private static final Logger log = LoggerFactory.getLogger(LiveEndpoint.class);
+
+    private final int maxSessions = ServiceConfig.getInt("analyzer.live.max-sessions", 10_000);
+
+    private final Map<String, LiveSession> sessions = new ConcurrentHashMap<>();
+
+    // shared by all sessions; chord lookups hit its per-mask cache, nothing is allocated per session
+    private final ChordAnalysisEngine engine = new ChordAnalysisEngine();
+
+    private final String hello;
+
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "live-flush");
+        t.setDaemon(true);
+        return t;
+    });
+
+    LiveEndpoint() {
+        String[] names = new String[ChordId.COUNT];
+        for (int id = 0; id < names.length; id++) names[id] = ChordId.name(id);
+        try {
+            hello = new ObjectMapper().writeValueAsString(Map.of(
+                    "protocol", LiveProtocol.VERSION,
+                    "eventBytes", LiveProtocol.EVENT_BYTES,
+                    "chordNames", names));
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to build live hello message: " + e.getMessage(), e);
+        }
+        Metrics.LIVE_SESSIONS.register("", new Gauge(sessions::size));
+    }
+
+    void register(Javalin app) {
+        app.ws("/live", ws -> {
+
+            ws.onConnect(ctx -> {
+                if (sessions.size() >= maxSessions) {
+                    Metrics.LIVE_REJECTED.inc();
+                    ctx.closeSession(StatusCode.TRY_AGAIN_LATER, "Too many live sessions");
+                    return;
+                }
+                ctx.session.setIdleTimeout(Duration.ofMinutes(10));
+                sessions.put(ctx.getSessionId(), new LiveSession(engine));
+                ctx.send(hello);
+            });
+
+            ws.onBinaryMessage(ctx -> {
+                LiveSession session = sessions.get(ctx.getSessionId());
+                if (session == null) return;
+
+                long t0 = System.nanoTime();
+                synchronized (session) {
+                    int events = session.apply(ctx.data(), ctx.offset(), ctx.length());
+                    if (events == 0) return;
+                    ctx.send(session.update());
+                    scheduleFlush(ctx, session, session.flushAtNanos() - System.nanoTime());
+                    Metrics.LIVE_EVENTS.add(events);
+                }
+                Metrics.LIVE_FRAME_LATENCY.observeSince(t0);
+            });
+
+            ws.onClose(ctx -> sessions.remove(ctx.getSessionId()));
+
+            ws.onError(ctx -> {
+                sessions.remove(ctx.getSessionId());
+                log.debug("Live session {} failed: {}", ctx.getSessionId(), String.valueOf(ctx.error()));
+            });
+        });
+    }
+
+    void stop() {
+        flusher.shutdownNow();
+    }
+
+    // -------------------------------------------------------
+    // CLUSTER FLUSH
+    // -------------------------------------------------------
+    /** Caller holds the session lock. One pending timer per session; it re-arms itself if a frame moved the deadline. */
+    private void scheduleFlush(WsContext ctx, LiveSession session, long delayNanos) {
+        if (session.flushScheduled || session.flushAtNanos() < 0) return;
+        session.flushScheduled = true;
+        flusher.schedule(() -> flush(ctx, session), Math.max(0, delayNanos), TimeUnit.NANOSECONDS);
+    }
+
+    private void flush(WsContext ctx, LiveSession session) {
+        synchronized (session) {
+            session.flushScheduled = false;
+            if (sessions.get(ctx.getSessionId()) != session || session.flushAtNanos() < 0) return;
+            long wait = session.flushAtNanos() - System.nanoTime();
+            if (wait > 0) {
+                scheduleFlush(ctx, session, wait);
+                return;
+            }
+            session.flushCluster();
+            try {
+                ctx.send(session.update());
+            } catch (RuntimeException e) {
+                log.debug("Live session {} flush update failed: {}", ctx.getSessionId(), e.toString());
+            }
+        }
+    }
+}
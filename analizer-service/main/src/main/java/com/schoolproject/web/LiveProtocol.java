@@ -0,0 +1,58 @@
+package com.schoolproject.web;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Wire format of the {@code /live} WebSocket. All values are big-endian.
+ *
+ * <pre>
+ * client → server, binary: one or more 8-byte events per frame
+ *   int  timeMs    milliseconds since the performance started
+ *   byte status    NOTE_ON (0x90) or NOTE_OFF (0x80); channel bits ignored
+ *   byte note      0-127
+ *   byte velocity  0-127 (NOTE_ON with velocity 0 is a note-off)
+ *   byte reserved
+ *
+ * server → client, text (once, on connect):
+ *   {"protocol":1,"eventBytes":8,"chordNames":["Cmaj", ...]}   index = chord id
+ *
+ * server → client, binary: one 24-byte UPDATE per frame with at least one whole event
+ *   byte  type = 1
+ *   byte  activeNotes
+ *   short chordId          current timeline chord, -1 = none yet
+ *   int   timeMs           time of the last event in the frame (for latency)
+ *   int   noteCount
+ *   int   chordDifficulty  running sum, same scale as /analyze
+ *   int   totalDifficulty  running, same formula as /analyze
+ *   int   recentDifficulty rolling chord difficulty × 100
+ * </pre>
+ *
+ * Onsets are clustered across frames as in /analyze, so clients may send
+ * each event as it arrives. A chord is scored once its onset window
+ * ({@code analyzer.onset-window-ms}) has passed: on the next frame with a
+ * later onset or a release, or else by the server clock, which sends one
+ * more UPDATE carrying the same timeMs as the frame's.
+ */
+public final class LiveProtocol {
+
+    private LiveProtocol() {}
+
+    public static final int VERSION = 1;
+
+    public static final int EVENT_BYTES = 8;
+    public static final int NOTE_ON = 0x90;
+    public static final int NOTE_OFF = 0x80;
+
+    public static final int UPDATE = 1;
+    public static final int UPDATE_BYTES = 24;
+
+    /** Appends one event to {@code buf}. */
+    public static void putEvent(ByteBuffer buf, int timeMs, int status, int note, int velocity) {
+        buf.putInt(timeMs).put((byte) status).put((byte) note).put((byte) velocity).put((byte) 0);
+    }
+
+    /** Reads the timeMs field of an UPDATE starting at {@code buf.position()}. */
+    public static int updateTimeMs(ByteBuffer buf) {
+        return buf.getInt(buf.position() + 4);
+    }
+}
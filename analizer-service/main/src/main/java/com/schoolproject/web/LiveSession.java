@@ -0,0 +1,101 @@
+package com.schoolproject.web;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.schoolproject.ServiceConfig;
+import com.schoolproject.analyzer.AnalysisPasses;
+import com.schoolproject.analyzer.AnalysisSession;
+import com.schoolproject.analyzer.ChordAnalysisEngine;
+import com.schoolproject.smf.MeterMap;
+import com.schoolproject.smf.TempoMap;
+
+/**
+ * One {@code /live} performer: decodes frames into an {@link AnalysisSession}
+ * and encodes its snapshot as an UPDATE.
+ *
+ * The analysis runs at 1000 ticks per quarter and one quarter per second, so
+ * one tick is one millisecond and the batch thresholds apply unchanged. Only
+ * the passes an UPDATE reports run, and no timeline is kept, so memory stays
+ * flat for long performances.
+ *
+ * Onsets are clustered across frames exactly as in /analyze, so a rolled
+ * chord sent one note per frame still counts once. A cluster closes when a
+ * later onset falls outside its window or a note is released; if neither
+ * happens, {@link LiveEndpoint} calls {@link #flushCluster()} at
+ * {@link #flushAtNanos()} so the chord is not held back until the next frame.
+ * Not thread-safe; callers lock the session.
+ */
+final class LiveSession {
+
+    private static final int PPQ = 1000;
+    private static final List<String> PASSES = List.of("polyphony", "chords", "rhythm");
+    // slack for network jitter before an open cluster is closed by the clock rather than by the next onset
+    private static final long FLUSH_GRACE_MS = ServiceConfig.getInt("analyzer.live.flush-grace-ms", 20);
+
+    private final AnalysisSession analysis;
+
+    private int lastTimeMs;
+    private long flushAtNanos = -1;
+    boolean flushScheduled;              // owned by LiveEndpoint
+    private final ByteBuffer out = ByteBuffer.allocate(LiveProtocol.UPDATE_BYTES);
+
+    LiveSession(ChordAnalysisEngine engine) {
+        analysis = new AnalysisSession(engine, new TempoMap(PPQ), new MeterMap(PPQ), false,
+                AnalysisPasses.create(PASSES));
+        analysis.onTempo(0, 1_000_000);
+    }
+
+    /**
+     * Applies every event in one frame.
+     * @return number of events applied; trailing partial events are ignored
+     */
+    int apply(byte[] data, int offset, int length) {
+        int events = length / LiveProtocol.EVENT_BYTES;
+        ByteBuffer in = ByteBuffer.wrap(data, offset, length);
+        for (int e = 0; e < events; e++) {
+            int timeMs = in.getInt();
+            int status = in.get() & 0xF0;
+            int note = in.get() & 0x7F;
+            int velocity = in.get() & 0x7F;
+            in.get();
+
+            lastTimeMs = timeMs;
+            if (status == LiveProtocol.NOTE_ON) analysis.onNoteOn(timeMs, note, velocity);
+            else if (status == LiveProtocol.NOTE_OFF) analysis.onNoteOff(timeMs, note);
+        }
+
+        // the cluster's window is in the performer's time; map what is left of it onto the server clock
+        double end = analysis.openClusterEndSeconds();
+        flushAtNanos = end < 0 ? -1 : System.nanoTime()
+                + TimeUnit.MILLISECONDS.toNanos(Math.max(0, Math.round(end * 1000) - lastTimeMs) + FLUSH_GRACE_MS);
+        return events;
+    }
+
+    /** Server time ({@link System#nanoTime()}) at which the open onset cluster is due, or -1 if none is open. */
+    long flushAtNanos() {
+        return flushAtNanos;
+    }
+
+    /** Detects the open onset cluster's chord without waiting for another onset. */
+    void flushCluster() {
+        analysis.flush();
+        flushAtNanos = -1;
+    }
+
+    /** Current scores as an UPDATE message; the buffer is reused by the next call. */
+    ByteBuffer update() {
+        AnalysisSession.Snapshot s = analysis.snapshot();
+        out.clear();
+        out.put((byte) LiveProtocol.UPDATE)
+                .put((byte) s.activeNotes())
+                .putShort((short) s.chordId())
+                .putInt(lastTimeMs)
+                .putInt(s.noteCount())
+                .putInt(s.chordDifficulty())
+                .putInt(s.totalDifficulty())
+                .putInt(s.recentDifficulty());
+        return out.flip();
+    }
+}
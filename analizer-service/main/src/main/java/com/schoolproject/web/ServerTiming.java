@@ -0,0 +1,60 @@
+package com.schoolproject.web;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import com.schoolproject.analyzer.MidiDifficultyAnalyzer.PhaseTimings;
+
+/**
+ * Collects named phase durations for one request and renders them as a
+ * standard Server-Timing header (and, on request, a JSON debug block).
+ * Phases recorded more than once (e.g. per file in a bulk upload) are summed.
+ */
+final class ServerTiming {
+
+    private final long startNanos = System.nanoTime();
+    private final Map<String, Long> phases = new LinkedHashMap<>();
+
+    void add(String phase, long nanos) {
+        phases.merge(phase, nanos, Long::sum);
+    }
+
+    /** Records the time since {@code startNanos} and returns the current nanoTime. */
+    long since(String phase, long startNanos) {
+        long now = System.nanoTime();
+        add(phase, now - startNanos);
+        return now;
+    }
+
+    void addAnalysis(PhaseTimings t) {
+        add("parse", t.parseNanos);
+        add("events", t.eventsNanos);
+        add("detect", t.detectNanos);
+        add("timeline", t.timelineNanos);
+    }
+
+    long totalNanos() {
+        return System.nanoTime() - startNanos;
+    }
+
+    /** e.g. {@code db;dur=12.41, parse;dur=3.02, ..., total;dur=18.77} */
+    String header() {
+        StringBuilder sb = new StringBuilder();
+        phases.forEach((name, nanos) -> sb.append(name).append(";dur=").append(ms(nanos)).append(", "));
+        sb.append("total;dur=").append(ms(totalNanos()));
+        return sb.toString();
+    }
+
+    /** Phase name → milliseconds, in recording order, ending with "total". */
+    Map<String, Double> toMap() {
+        Map<String, Double> out = new LinkedHashMap<>();
+        phases.forEach((name, nanos) -> out.put(name, nanos / 1e6));
+        out.put("total", totalNanos() / 1e6);
+        return out;
+    }
+
+    private static String ms(long nanos) {
+        return String.format(Locale.ROOT, "%.2f", nanos / 1e6);
+    }
+}
@@ -0,0 +1,103 @@
+package com.schoolproject.web;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import com.schoolproject.metrics.Counter;
+
+/**
+ * Coalesces concurrent calls for the same key into one execution.
+ *
+ * The first caller for a key (the leader) runs the work on its own thread;
+ * callers arriving while it runs wait and receive the same result, or the
+ * same exception. Nothing is cached: once the work completes the key is
+ * free and the next caller runs it again, so callers should key on
+ * everything the result depends on (e.g. the content hash).
+ *
+ * Cancellation is per caller. A waiting caller that is interrupted simply
+ * stops waiting. If the leader is interrupted, the shared work is not
+ * failed for everyone: the callers still waiting elect a new leader and the
+ * work runs again for them.
+ */
+public final class SingleFlight<K, V> {
+
+    // completes a flight whose leader was interrupted; waiters retry instead of failing
+    private static final Exception ABANDONED = new Exception("leader interrupted", null, false, false) {
+    };
+
+    private final Map<K, CompletableFuture<V>> flights = new HashMap<>();
+    private final Counter executions;
+    private final Counter shared;
+
+    /** @param executions counts work actually run; {@code shared} counts joins of a run already in flight */
+    public SingleFlight(Counter executions, Counter shared) {
+        this.executions = executions;
+        this.shared = shared;
+    }
+
+    /** Runs {@code work} for {@code key}, or joins the run already in flight. */
+    public V run(K key, Callable<V> work) throws Exception {
+        while (true) {
+            CompletableFuture<V> flight;
+            boolean leader;
+            synchronized (flights) {
+                flight = flights.get(key);
+                leader = flight == null;
+                if (leader) {
+                    flight = new CompletableFuture<>();
+                    flights.put(key, flight);
+                }
+            }
+            if (leader) return lead(key, flight, work);
+
+            shared.inc();
+            try {
+                return flight.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() == ABANDONED) continue;
+                throw rethrow(e.getCause());
+            }
+        }
+    }
+
+    /** Number of keys with work in flight. */
+    public int inFlight() {
+        synchronized (flights) {
+            return flights.size();
+        }
+    }
+
+    private V lead(K key, CompletableFuture<V> flight, Callable<V> work) throws Exception {
+        executions.inc();
+        V value;
+        try {
+            value = work.call();
+        } catch (InterruptedException e) {
+            finish(key);
+            flight.completeExceptionally(ABANDONED);
+            throw e;
+        } catch (Throwable t) {
+            finish(key);
+            flight.completeExceptionally(Thread.currentThread().isInterrupted() ? ABANDONED : t);
+            throw rethrow(t);
+        }
+        finish(key);
+        flight.complete(value);
+        return value;
+    }
+
+    // the key is freed before completion, so a caller arriving afterwards starts a fresh run
+    private void finish(K key) {
+        synchronized (flights) {
+            flights.remove(key);
+        }
+    }
+
+    private static Exception rethrow(Throwable t) {
+        if (t instanceof Error e) throw e;
+        return (Exception) t;
+    }
+}
@@ -0,0 +1,142 @@
+package com.schoolproject.web;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.schoolproject.ServiceConfig;
+import com.schoolproject.db.DbUnavailableException;
+import com.schoolproject.metrics.Metrics;
+
+import io.javalin.http.Context;
+
+/**
+ * Last good response bodies for listing and analysis routes, served while
+ * the database is unavailable.
+ *
+ * Routes {@link #put} every fresh body. When a route's DB call fails with
+ * {@link DbUnavailableException}, {@link #serve} answers from here with
+ * {@code Warning: 110} and {@code X-Stale: true}, and queues the key for
+ * background revalidation: every {@code analyzer.stale.revalidate-ms} a
+ * single thread re-runs the queued loaders, which fail fast while the
+ * circuit is open and refresh the entries once the database is back.
+ * Loaders that analyze go through admission control; a refused one throws
+ * {@link AdmissionController.Busy} and stays queued for the next round.
+ * LRU, bounded by {@code analyzer.stale-cache-mb} (default 32, 0 disables).
+ */
+final class StaleCache {
+
+    private static final Logger log = LoggerFactory.getLogger(StaleCache.class);
+
+    /** A stored response; {@code etag} may be null. */
+    record Entry(byte[] body, String contentType, String etag, long storedAtMillis) {
+        Entry(byte[] body, String contentType, String etag) {
+            this(body, contentType, etag, System.currentTimeMillis());
+        }
+    }
+
+    private final long maxBytes;
+    private long bytes;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final LinkedHashMap<String, Callable<Entry>> pending = new LinkedHashMap<>();
+    private final ScheduledExecutorService revalidator;
+
+    StaleCache() {
+        this(ServiceConfig.getLong("analyzer.stale-cache-mb", 32) << 20,
+                ServiceConfig.getLong("analyzer.stale.revalidate-ms", 1000));
+    }
+
+    StaleCache(long maxBytes, long revalidateMs) {
+        this.maxBytes = maxBytes;
+        revalidator = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "stale-revalidate");
+            t.setDaemon(true);
+            return t;
+        });
+        revalidator.scheduleWithFixedDelay(this::revalidate, revalidateMs, revalidateMs, TimeUnit.MILLISECONDS);
+    }
+
+    synchronized void put(String key, Entry entry) {
+        long size = entry.body().length;
+        if (size > maxBytes) return;
+        Entry old = entries.put(key, entry);
+        if (old != null) bytes -= old.body().length;
+        bytes += size;
+
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (bytes > maxBytes && it.hasNext()) {
+            bytes -= it.next().getValue().body().length;
+            it.remove();
+        }
+    }
+
+    /**
+     * Answers from the stored entry for {@code key}, marked stale, and
+     * queues {@code reload} to refresh it. Returns false if nothing is stored.
+     */
+    boolean serve(Context ctx, String key, Callable<Entry> reload) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry == null) return false;
+            pending.putIfAbsent(key, reload);
+        }
+        Metrics.STALE_RESPONSES.inc();
+        ctx.header("Warning", "110 - \"Response is Stale\"");
+        ctx.header("X-Stale", "true");
+        ctx.header("Age", String.valueOf(Math.max(0, (System.currentTimeMillis() - entry.storedAtMillis()) / 1000)));
+        if (entry.etag() != null && ETags.notModified(ctx, entry.etag())) return true;
+        ctx.contentType(entry.contentType()).result(entry.body());
+        return true;
+    }
+
+    private void revalidate() {
+        List<Map.Entry<String, Callable<Entry>>> work;
+        synchronized (this) {
+            if (pending.isEmpty()) return;
+            work = new ArrayList<>(pending.entrySet());
+        }
+        for (Map.Entry<String, Callable<Entry>> job : work) {
+            String key = job.getKey();
+            try {
+                Entry fresh = job.getValue().call();
+                synchronized (this) {
+                    pending.remove(key);
+                    if (fresh != null) {
+                        put(key, fresh);
+                    } else {
+                        // gone from the database: stop serving it
+                        Entry old = entries.remove(key);
+                        if (old != null) bytes -= old.body().length;
+                    }
+                }
+                Metrics.STALE_REVALIDATIONS.labels("refreshed").inc();
+            } catch (DbUnavailableException e) {
+                Metrics.STALE_REVALIDATIONS.labels("unavailable").inc();
+                return; // still down; the rest would fail the same way
+            } catch (AdmissionController.Busy e) {
+                Metrics.STALE_REVALIDATIONS.labels("busy").inc();
+                return; // server is full; retry the rest next round
+            } catch (Exception e) {
+                log.warn("Revalidation of {} failed: {}", key.replace('\n', ' '), e.toString());
+                synchronized (this) {
+                    pending.remove(key);
+                }
+                Metrics.STALE_REVALIDATIONS.labels("failed").inc();
+            }
+        }
+    }
+
+    void stop() {
+        revalidator.shutdownNow();
+    }
+}
@@ -0,0 +1,327 @@
+package com.schoolproject.web;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.schoolproject.ServiceConfig;
+import com.schoolproject.analyzer.MidiDifficultyAnalyzer;
+import com.schoolproject.db.MidiDBOperations;
+import com.schoolproject.db.MidiDBOperations.NewFile;
+import com.schoolproject.db.MidiDBOperations.StoreOutcome;
+import com.schoolproject.metrics.Metrics;
+
+import io.javalin.Javalin;
+import io.javalin.http.Context;
+import io.javalin.http.UploadedFile;
+
+/**
+ * {@code POST /upload-bulk}: stores and analyzes many files in one request.
+ *
+ * Each upload moves through three stages joined by bounded queues:
+ * <ol>
+ *   <li>request thread: read, hash, build the bar index; a repeat of content
+ *       already in this request waits for the first copy's outcome and is
+ *       reported as its duplicate, or stored under its own name if the
+ *       first copy was not stored;</li>
+ *   <li>store thread: batches of up to {@code analyzer.upload.batch-size} files
+ *       (or whatever arrived within {@link #LINGER_MS}) go to
+ *       {@link MidiDBOperations#saveBatch} in one transaction;</li>
+ *   <li>analysis pool: stored files, and files whose content was already
+ *       stored, are analyzed.</li>
+ * </ol>
+ * A full store queue blocks the reader and a full analysis queue makes the
+ * store thread analyze itself, so a fast uploader cannot run ahead of the
+ * database or the CPUs. Results stream back as NDJSON, one line per file as
+ * soon as it is done, followed by a summary line:
+ * <pre>
+ * {"file":"a.mid","status":"stored","analysis":{...}}
+ * {"file":"b.mid","status":"duplicate","existing":"old.mid","analysis":{...}}
+ * {"summary":{"files":2,"stored":1,"duplicate":1,"name_taken":0,"error":0}}
+ * </pre>
+ */
+final class UploadEndpoint {
+
+    private static final Logger log = LoggerFactory.getLogger(UploadEndpoint.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final long LINGER_MS = 20;
+    private static final long RESULT_TIMEOUT_SECONDS = 300;
+
+    private final int batchSize = ServiceConfig.getInt("analyzer.upload.batch-size", 32);
+    private final int queueSize = ServiceConfig.getInt("analyzer.upload.queue", 64);
+
+    private final MidiDBOperations dbOps;
+    private final MidiDifficultyAnalyzer analyzer;
+    private final AdmissionController admission;
+
+    private final ExecutorService storers;
+    private final ThreadPoolExecutor analysts;
+
+    /** Request-side handoff to the store stage; {@code END} closes a request's queue. */
+    private record Item(String filename, byte[] data, byte[] hash, byte[] barIndex) {
+    }
+
+    private static final Item END = new Item(null, null, null, null);
+
+    /** Store/analysis-side handoff back to the request: the response line for {@code item}. */
+    private record Result(Item item, Map<String, Object> line) {
+    }
+
+    UploadEndpoint(MidiDBOperations dbOps, MidiDifficultyAnalyzer analyzer, AdmissionController admission) {
+        this.dbOps = dbOps;
+        this.analyzer = analyzer;
+        this.admission = admission;
+        storers = Executors.newFixedThreadPool(ServiceConfig.getInt("analyzer.upload.store-threads", 2),
+                daemonThreads("upload-store"));
+        int workers = ServiceConfig.getInt("analyzer.upload.workers", Runtime.getRuntime().availableProcessors());
+        analysts = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), daemonThreads("upload-analyze"),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    void register(Javalin app) {
+        app.post("/upload-bulk", this::handle);
+    }
+
+    void stop() {
+        storers.shutdownNow();
+        analysts.shutdownNow();
+    }
+
+    // -------------------------------------------------------
+    // REQUEST (STAGE 1 + RESPONSE)
+    // -------------------------------------------------------
+    private void handle(Context ctx) throws Exception {
+        List<UploadedFile> files = ctx.uploadedFiles("files");
+        if (files.isEmpty()) {
+            ctx.status(400).json("{\"error\":\"No files uploaded\"}");
+            return;
+        }
+        List<String> passes = WebServer.passesParam(ctx);
+        if (passes == null) return;
+
+        long bytes = 0;
+        for (UploadedFile uf : files) bytes += uf.size();
+        try (AdmissionController.Permit permit = admission.admit(ctx, bytes)) {
+            if (permit != null) stream(ctx, files, passes);
+        }
+    }
+
+    private void stream(Context ctx, List<UploadedFile> files, List<String> passes) throws Exception {
+        BlockingQueue<Item> toStore = new ArrayBlockingQueue<>(queueSize);
+        BlockingQueue<Result> results = new LinkedBlockingQueue<>();
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (String s : List.of("stored", "duplicate", "name_taken", "error")) counts.put(s, 0);
+
+        ctx.status(200).contentType("application/x-ndjson");
+        OutputStream out = ctx.res().getOutputStream();
+
+        storers.execute(() -> storeLoop(toStore, results, passes));
+        // content hash -> later files with that content, waiting on the outcome of the first one in flight
+        Map<String, List<Item>> waiting = new HashMap<>();
+        int pending = 0;
+        boolean ended = false;
+        try {
+            for (UploadedFile uf : files) {
+                try {
+                    byte[] data = uf.content().readAllBytes();
+                    byte[] hash = MidiDBOperations.sha256(data);
+                    String key = HexFormat.of().formatHex(hash);
+                    List<Item> repeats = waiting.get(key);
+                    if (repeats != null) {
+                        repeats.add(new Item(uf.filename(), data, hash, null));
+                    } else {
+                        waiting.put(key, new ArrayList<>());
+                        toStore.put(new Item(uf.filename(), data, hash, MidiDBOperations.buildBarIndex(uf.filename(), data)));
+                        pending++;
+                    }
+                } catch (IOException e) {
+                    write(out, error(uf.filename(), e), counts);
+                }
+                for (Result r; (r = results.poll()) != null; pending--) pending += settle(r, waiting, toStore, out, counts);
+            }
+
+            while (pending > 0) {
+                if (!ended && waiting.values().stream().allMatch(List::isEmpty)) {
+                    // nothing left to re-queue: let the store stage flush its last batch now
+                    toStore.put(END);
+                    ended = true;
+                }
+                Result r = results.poll(RESULT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                if (r == null) {
+                    log.warn("/upload-bulk gave up waiting for {} results", pending);
+                    break;
+                }
+                pending += settle(r, waiting, toStore, out, counts) - 1;
+            }
+            if (!ended) {
+                toStore.put(END);
+                ended = true;
+            }
+
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("files", files.size());
+            summary.putAll(counts);
+            writeLine(out, Map.of("summary", summary));
+        } finally {
+            if (!ended) {
+                // client went away or reading failed: stop the store stage after what it already has
+                toStore.clear();
+                toStore.offer(END);
+            }
+        }
+    }
+
+    /**
+     * Writes the line for a file that went through the store stage, then
+     * settles the repeats of its content waiting in this request: if the
+     * content is now stored they are duplicates of it, with its analysis;
+     * otherwise the first repeat is queued to be stored under its own name
+     * and the rest wait on that one. Returns the number of files queued.
+     */
+    private int settle(Result r, Map<String, List<Item>> waiting, BlockingQueue<Item> toStore,
+                       OutputStream out, Map<String, Integer> counts) throws IOException, InterruptedException {
+        write(out, r.line(), counts);
+        String key = HexFormat.of().formatHex(r.item().hash());
+        List<Item> repeats = waiting.remove(key);
+        if (repeats == null || repeats.isEmpty()) return 0;
+
+        String status = (String) r.line().get("status");
+        if (status.equals("stored") || status.equals("duplicate")) {
+            String existing = status.equals("stored") ? r.item().filename() : (String) r.line().get("existing");
+            for (Item repeat : repeats) {
+                Map<String, Object> line = line(repeat.filename(), "duplicate", existing);
+                if (r.line().containsKey("analysis")) line.put("analysis", r.line().get("analysis"));
+                if (r.line().containsKey("error")) line.put("error", r.line().get("error"));
+                write(out, line, counts);
+            }
+            return 0;
+        }
+
+        Item next = repeats.remove(0);
+        waiting.put(key, repeats);
+        toStore.put(new Item(next.filename(), next.data(), next.hash(), MidiDBOperations.buildBarIndex(next.filename(), next.data())));
+        return 1;
+    }
+
+    // -------------------------------------------------------
+    // STORE (STAGE 2) AND ANALYSIS (STAGE 3)
+    // -------------------------------------------------------
+    private void storeLoop(BlockingQueue<Item> toStore, BlockingQueue<Result> results, List<String> passes) {
+        List<Item> batch = new ArrayList<>(batchSize);
+        try {
+            boolean end = false;
+            while (!end) {
+                Item item = toStore.take();
+                if (item == END) break;
+                batch.add(item);
+
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(LINGER_MS);
+                while (batch.size() < batchSize) {
+                    Item next = toStore.poll(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    if (next == END) {
+                        end = true;
+                        break;
+                    }
+                    batch.add(next);
+                }
+                storeBatch(batch, results, passes);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void storeBatch(List<Item> batch, BlockingQueue<Result> results, List<String> passes) {
+        List<NewFile> files = new ArrayList<>(batch.size());
+        for (Item i : batch) files.add(new NewFile(i.filename(), i.data(), i.hash(), i.barIndex()));
+        Metrics.UPLOAD_BATCHES.inc();
+
+        List<StoreOutcome> outcomes;
+        try {
+            outcomes = dbOps.saveBatch(files);
+        } catch (RuntimeException e) {
+            log.warn("/upload-bulk batch of {} failed: {}", batch.size(), e.getMessage());
+            for (Item i : batch) results.add(new Result(i, error(i.filename(), e)));
+            return;
+        }
+
+        for (int k = 0; k < batch.size(); k++) {
+            Item item = batch.get(k);
+            StoreOutcome outcome = outcomes.get(k);
+            switch (outcome.status()) {
+                case NAME_TAKEN -> results.add(new Result(item, line(item.filename(), "name_taken", null)));
+                case STORED, DUPLICATE_CONTENT -> analysts.execute(() -> {
+                    Map<String, Object> line = line(item.filename(),
+                            outcome.existing() == null ? "stored" : "duplicate", outcome.existing());
+                    try {
+                        line.put("analysis", analyzer.analyzeBytes(item.data(), passes));
+                    } catch (RuntimeException e) {
+                        line.put("error", e.getMessage());
+                    }
+                    results.add(new Result(item, line));
+                });
+            }
+        }
+    }
+
+    // -------------------------------------------------------
+    // HELPERS
+    // -------------------------------------------------------
+    private static Map<String, Object> line(String file, String status, String existing) {
+        Map<String, Object> line = new LinkedHashMap<>();
+        line.put("file", file);
+        line.put("status", status);
+        if (existing != null) line.put("existing", existing);
+        return line;
+    }
+
+    private static Map<String, Object> error(String file, Exception e) {
+        Map<String, Object> line = line(file, "error", null);
+        line.put("error", e.getMessage());
+        return line;
+    }
+
+    private static void write(OutputStream out, Map<String, Object> line, Map<String, Integer> counts) throws IOException {
+        String status = (String) line.get("status");
+        counts.merge(status, 1, Integer::sum);
+        Metrics.UPLOAD_FILES.labels(status).inc();
+        writeLine(out, line);
+    }
+
+    private static void writeLine(OutputStream out, Object value) throws IOException {
+        out.write(MAPPER.writeValueAsBytes(value));
+        out.write('\n');
+        out.flush();
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger n = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + "-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
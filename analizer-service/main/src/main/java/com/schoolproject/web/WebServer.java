@@ -1,30 +1,87 @@
 package com.schoolproject.web;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.schoolproject.ServiceConfig;
+import com.schoolproject.analyzer.AnalysisPasses;
 import com.schoolproject.analyzer.MidiDifficultyAnalyzer;
+import com.schoolproject.db.DbUnavailableException;
 import com.schoolproject.db.MidiDBOperations;
+import com.schoolproject.metrics.Metrics;
+import com.schoolproject.smf.BarIndex;
 
 import io.javalin.Javalin;
+import io.javalin.http.Context;
 
 public class WebServer {
 
+    private static final Logger log = LoggerFactory.getLogger(WebServer.class);
+
     private final MidiDBOperations dbOps;
     private final MidiDifficultyAnalyzer analyzer;
 
+    private Javalin app;
+    private UploadEndpoint uploads;
+    private LiveEndpoint live;
+    private final AdmissionController admission = new AdmissionController();
+    private final StaleCache stale = new StaleCache();
+    private final SingleFlight<String, MidiDifficultyAnalyzer.AnalysisResult> analyses =
+            new SingleFlight<>(Metrics.COALESCE_LEADER, Metrics.COALESCE_SHARED);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String HTML = "text/html; charset=utf-8";
+
+    // requests slower than this are logged with their full phase breakdown
+    private final long slowRequestNanos =
+            ServiceConfig.getLong("analyzer.slow-request-ms", 500) * 1_000_000L;
+
     public WebServer(MidiDBOperations dbOps) {
         this.dbOps = dbOps;
         this.analyzer = new MidiDifficultyAnalyzer();
     }
 
     public void start() {
+        start(3000);
+    }
+
+    public void start(int port) {
 
-        Javalin app = Javalin.create(config -> {
+        app = Javalin.create(config -> {
             config.http.defaultContentType = "application/json";
             config.plugins.enableCors(cors -> cors.add(it -> it.anyHost()));
         });
 
+        // =====================================================================
+        // REQUEST INSTRUMENTATION
+        // =====================================================================
+        app.before(ctx -> ctx.attribute(REQUEST_START, System.nanoTime()));
+
+        // any other route that needs the database while it is unreachable
+        app.exception(DbUnavailableException.class, (e, ctx) -> {
+            ctx.header("Retry-After", String.valueOf(e.retryAfterSeconds()));
+            ctx.status(503).json(Map.of("error", e.getMessage()));
+        });
+
+        app.after(ctx -> {
+            Long start = ctx.attribute(REQUEST_START);
+            if (start == null) return;
+            String route = routeLabel(ctx);
+            Metrics.HTTP_REQUESTS.labels(route).inc();
+            Metrics.HTTP_LATENCY.labels(route).observeSince(start);
+            if (ctx.statusCode() >= 500) Metrics.HTTP_ERRORS.labels(route).inc();
+        });
+
+
         // =====================================================================
         // HEALTH CHECK
         // =====================================================================
@@ -32,53 +89,44 @@ public class WebServer {
 
 
         // =====================================================================
-        // LIST STORED DB FILES (HTML PAGE)
+        // METRICS (PROMETHEUS TEXT FORMAT)
         // =====================================================================
-        app.get("/files", ctx -> {
+        app.get("/metrics", ctx -> ctx
+                .contentType("text/plain; version=0.0.4; charset=utf-8")
+                .result(Metrics.REGISTRY.scrape()));
 
-            List<String> files = dbOps.listAll();
-            StringBuilder links = new StringBuilder();
 
-            for (String f : files) {
-                links.append("<li>")
-                        .append("<a href=\"/analyze/").append(f).append("\">Raw JSON</a> | ")
-                        .append("<a href=\"/analyze-html/").append(f).append("\">HTML View</a> — ")
-                        .append(f)
-                        .append("</li>");
-            }
+        // =====================================================================
+        // LIVE PERFORMANCE ANALYSIS (WEBSOCKET)
+        // =====================================================================
+        live = new LiveEndpoint();
+        live.register(app);
 
-            String html = """
-                    <html>
-                    <head>
-                        <title>MIDI Files</title>
-                        <style>
-                            body { background:#111; color:#eee; font-family:Arial; padding:30px; }
-                            h1 { color:#88b4ff; }
-                            ul { list-style:none; padding-left:0; }
-                            li { margin:8px 0; font-size:18px; }
-                            a { color:#66aaff; text-decoration:none; }
-                            a:hover { text-decoration:underline; }
-                            .box { background:#1a1a1a; padding:20px; border-radius:8px; border:1px solid #333; }
-                        </style>
-                    </head>
-                    <body>
 
-                        <h1>Stored MIDI Files</h1>
+        // =====================================================================
+        // BULK STORE + ANALYZE (NDJSON STREAM)
+        // =====================================================================
+        uploads = new UploadEndpoint(dbOps, analyzer, admission);
+        uploads.register(app);
 
-                        <div class="box">
-                            <ul>
-                                %s
-                            </ul>
-                        </div>
 
-                        <br>
-                        <a href="/">← Back to Home</a>
+        // =====================================================================
+        // LIST STORED DB FILES (HTML PAGE)
+        // =====================================================================
+        app.get("/files", ctx -> {
 
-                    </body>
-                    </html>
-                    """;
+            List<String> files;
+            try {
+                files = dbOps.listAll();
+            } catch (DbUnavailableException e) {
+                serveStale(ctx, e, "files", () -> new StaleCache.Entry(
+                        fileListPage(dbOps.listAll()).getBytes(StandardCharsets.UTF_8), HTML, null));
+                return;
+            }
 
-            ctx.html(String.format(html, links.toString()));
+            String page = fileListPage(files);
+            stale.put("files", new StaleCache.Entry(page.getBytes(StandardCharsets.UTF_8), HTML, null));
+            ctx.html(page);
         });
 
         // =====================================================================
@@ -86,16 +134,97 @@ public class WebServer {
         // =====================================================================
         app.get("/analyze/{filename}", ctx -> {
 
+            ServerTiming timing = new ServerTiming();
             String name = ctx.pathParam("filename");
-            byte[] data = dbOps.load(name);
 
-            if (data == null) {
-                ctx.status(404).json("{\"error\":\"File not found\"}");
+            List<String> passes = passesParam(ctx);
+            if (passes == null) return;
+
+            String fromParam = ctx.queryParam("fromBar");
+            String toParam = ctx.queryParam("toBar");
+            boolean windowed = fromParam != null || toParam != null;
+            int fromBar = 1, toBar = Integer.MAX_VALUE - 1;
+            if (windowed) {
+                try {
+                    if (fromParam != null) fromBar = Integer.parseInt(fromParam);
+                    if (toParam != null) toBar = Integer.parseInt(toParam);
+                } catch (NumberFormatException e) {
+                    ctx.status(400).json("{\"error\":\"fromBar/toBar must be integers\"}");
+                    return;
+                }
+                if (fromBar < 1 || toBar < fromBar) {
+                    ctx.status(400).json("{\"error\":\"Expected 1 <= fromBar <= toBar\"}");
+                    return;
+                }
+            }
+
+            boolean debugTiming = "timing".equals(ctx.queryParam("debug"));
+            String variant = "json;passes=" + String.join(",", passes) + (windowed ? ";bars=" + fromBar + "-" + toBar : "");
+            int first = fromBar, last = toBar;
+
+            byte[] body;
+            try {
+                long t0 = System.nanoTime();
+                MidiDBOperations.FileInfo info = dbOps.loadInfo(name);
+                timing.since("db", t0);
+                if (info == null) {
+                    ctx.status(404).json("{\"error\":\"File not found\"}");
+                    return;
+                }
+
+                // conditional GET: answered from the content hash alone (timing output is never cacheable)
+                String etag = ETags.of(info.contentHash(), variant);
+                if (!debugTiming && ETags.notModified(ctx, etag)) {
+                    finishTiming(ctx, timing);
+                    return;
+                }
+
+                // identical concurrent requests share one load and analysis; the tag covers content and variant
+                String client = AdmissionController.clientId(ctx);
+                MidiDifficultyAnalyzer.AnalysisResult result;
+                try {
+                    result = analyses.run(name + '\n' + etag, () -> {
+                        AdmissionController.Permit permit = admission.acquire(client, info.size());
+                        try {
+                            return analyzeStored(name, windowed, first, last, passes, timing);
+                        } finally {
+                            permit.close();
+                        }
+                    });
+                } catch (AdmissionController.Busy e) {
+                    e.respond(ctx);
+                    return;
+                }
+
+                if (result == null) {
+                    ctx.status(404).json("{\"error\":\"File not found\"}");
+                    return;
+                }
+                timing.addAnalysis(result.timings);
+
+                long t = System.nanoTime();
+                if (debugTiming) {
+                    ObjectNode node = MAPPER.valueToTree(result);
+                    timing.since("serialize", t);
+                    node.set("timing", MAPPER.valueToTree(timing.toMap()));
+                    body = MAPPER.writeValueAsBytes(node);
+                } else {
+                    body = MAPPER.writeValueAsBytes(result);
+                    timing.since("serialize", t);
+                    stale.put("json\n" + name + '\n' + variant, new StaleCache.Entry(body, "application/json", etag));
+                }
+            } catch (DbUnavailableException e) {
+                serveStale(ctx, e, "json\n" + name + '\n' + variant, () -> {
+                    MidiDBOperations.FileInfo info = dbOps.loadInfo(name);
+                    var result = info == null ? null : revalidate(name, info, windowed, first, last, passes);
+                    return result == null ? null : new StaleCache.Entry(MAPPER.writeValueAsBytes(result),
+                            "application/json", ETags.of(info.contentHash(), variant));
+                });
                 return;
             }
 
-            var result = analyzer.analyzeBytes(data);
-            ctx.json(result);
+            finishTiming(ctx, timing);
+            ctx.contentType("application/json").result(body);
         });
 
 
@@ -104,74 +233,63 @@ public class WebServer {
         // =====================================================================
         app.get("/analyze-html/{filename}", ctx -> {
 
+            ServerTiming timing = new ServerTiming();
             String name = ctx.pathParam("filename");
-            byte[] data = dbOps.load(name);
+            String staleKey = "html\n" + name;
+
+            String page;
+            try {
+                long t = System.nanoTime();
+                MidiDBOperations.FileInfo info = dbOps.loadInfo(name);
+                timing.since("db", t);
+                if (info == null) {
+                    ctx.html("<h2 style='color:red'>File not found: " + name + "</h2>");
+                    return;
+                }
+                String etag = ETags.of(info.contentHash(), "html");
+                if (ETags.notModified(ctx, etag)) {
+                    finishTiming(ctx, timing);
+                    return;
+                }
 
-            if (data == null) {
-                ctx.html("<h2 style='color:red'>File not found: " + name + "</h2>");
+                // a link shared with a class arrives as many identical requests at once: analyze it once
+                String client = AdmissionController.clientId(ctx);
+                MidiDifficultyAnalyzer.AnalysisResult result;
+                try {
+                    result = analyses.run(name + '\n' + etag, () -> {
+                        AdmissionController.Permit permit = admission.acquire(client, info.size());
+                        try {
+                            return analyzeStored(name, false, 0, 0, null, timing);
+                        } finally {
+                            permit.close();
+                        }
+                    });
+                } catch (AdmissionController.Busy e) {
+                    e.respond(ctx);
+                    return;
+                }
+                if (result == null) {
+                    ctx.html("<h2 style='color:red'>File not found: " + name + "</h2>");
+                    return;
+                }
+                timing.addAnalysis(result.timings);
+
+                t = System.nanoTime();
+                page = analysisPage(name, result);
+                timing.since("render", t);
+                stale.put(staleKey, new StaleCache.Entry(page.getBytes(StandardCharsets.UTF_8), HTML, etag));
+            } catch (DbUnavailableException e) {
+                serveStale(ctx, e, staleKey, () -> {
+                    MidiDBOperations.FileInfo info = dbOps.loadInfo(name);
+                    var result = info == null ? null : revalidate(name, info, false, 0, 0, null);
+                    return result == null ? null : new StaleCache.Entry(analysisPage(name, result)
+                            .getBytes(StandardCharsets.UTF_8), HTML, ETags.of(info.contentHash(), "html"));
+                });
                 return;
             }
 
-            var result = analyzer.analyzeBytes(data);
-
-            StringBuilder timeline = new StringBuilder();
-            for (String entry : result.chordTimeline) {
-                timeline.append("<li>").append(entry).append("</li>");
-            }
-
-            String html = """
-                    <html>
-                    <head>
-                        <title>Analysis for %s</title>
-                        <style>
-                            body { font-family:Arial; background:#111; color:#eee; padding:30px; }
-                            h1 { color:#88b4ff; }
-                            .box { background:#1a1a1a; padding:20px; border-radius:8px; border:1px solid #333; margin-bottom:25px; }
-                            table { width:100%%; border-collapse:collapse; }
-                            td, th { border:1px solid #333; padding:10px; }
-                            th { background:#222; }
-                            ul { line-height:1.7; }
-                            a { color:#66aaff; }
-                        </style>
-                    </head>
-
-                    <body>
-
-                        <h1>Analysis for %s</h1>
-
-                        <div class="box">
-                            <h2>Summary</h2>
-                            <table>
-                                <tr><th>Max Polyphony</th><td>%d</td></tr>
-                                <tr><th>Note Count</th><td>%d</td></tr>
-                                <tr><th>Chord Difficulty</th><td>%d</td></tr>
-                                <tr><th>Rhythm Difficulty</th><td>%d</td></tr>
-                                <tr><th>Total Difficulty</th><td>%d</td></tr>
-                            </table>
-                        </div>
-
-                        <div class="box">
-                            <h2>Chord Timeline</h2>
-                            <ul>%s</ul>
-                        </div>
-
-                        <a href="/files">← Back to Files</a>
-
-                    </body>
-                    </html>
-                    """;
-
-            ctx.html(String.format(
-                    html,
-                    name,    // title
-                    name,    // heading
-                    result.maxPolyphony,
-                    result.noteCount,
-                    result.chordDifficulty,
-                    result.rhythmDifficulty,
-                    result.totalDifficulty,
-                    timeline.toString()
-            ));
+            finishTiming(ctx, timing);
+            ctx.html(page);
         });
 
 
@@ -187,23 +305,40 @@ public class WebServer {
                 ctx.status(400).json("{\"error\":\"No files uploaded\"}");
                 return;
             }
+            List<String> passes = passesParam(ctx);
+            if (passes == null) return;
 
+            ServerTiming timing = new ServerTiming();
             HashMap<String, Object> results = new HashMap<>();
 
-            for (var uf : uploadedFiles) {
-                try {
-                    byte[] data = uf.content().readAllBytes();
-                    var analysis = analyzer.analyzeBytes(data);
-                    results.put(uf.filename(), analysis);
-
-                } catch (Exception e) {
-                    results.put(uf.filename(), new HashMap<>() {{
-                        put("error", e.getMessage());
-                    }});
+            long uploadBytes = 0;
+            for (var uf : uploadedFiles) uploadBytes += uf.size();
+            try (AdmissionController.Permit permit = admission.admit(ctx, uploadBytes)) {
+                if (permit == null) return;
+                for (var uf : uploadedFiles) {
+                    try {
+                        long t = System.nanoTime();
+                        byte[] data = uf.content().readAllBytes();
+                        timing.since("upload", t);
+
+                        var analysis = analyzer.analyzeBytes(data, passes);
+                        timing.addAnalysis(analysis.timings);
+                        results.put(uf.filename(), analysis);
+
+                    } catch (Exception e) {
+                        results.put(uf.filename(), new HashMap<>() {{
+                            put("error", e.getMessage());
+                        }});
+                    }
                 }
             }
 
-            ctx.json(results);
+            long t = System.nanoTime();
+            byte[] body = MAPPER.writeValueAsBytes(results);
+            timing.since("serialize", t);
+
+            finishTiming(ctx, timing);
+            ctx.contentType("application/json").result(body);
         });
 
 
@@ -234,7 +369,10 @@ public class WebServer {
                             <h3>Available Endpoints</h3>
                             <ul>
                                 <li><a href="/health">/health</a></li>
+                                <li><a href="/metrics">/metrics</a></li>
                                 <li><a href="/files">/files</a></li>
+                                <li>/live (WebSocket, binary note events)</li>
+                                <li>POST /upload-bulk (store + analyze, NDJSON results)</li>
                             </ul>
                         </div>
 
@@ -254,7 +392,265 @@ public class WebServer {
         });
 
         // Start server
-        app.start(3000);
-        System.out.println("Analyzer-service running on http://localhost:3000");
+        app.start(port);
+        log.info("Analyzer-service running on http://localhost:{}", port);
+    }
+
+    // admission client for background refreshes of stale entries
+    private static final String REVALIDATE_CLIENT = "stale-revalidate";
+
+    /**
+     * {@link #analyzeStored} for a stale-cache refresh, admitted like a request
+     * so refreshes never run beside a full server; throws
+     * {@link AdmissionController.Busy} to skip the refresh until the next round.
+     */
+    private MidiDifficultyAnalyzer.AnalysisResult revalidate(String name, MidiDBOperations.FileInfo info, boolean windowed,
+                                                             int fromBar, int toBar, List<String> passes)
+            throws InterruptedException {
+        AdmissionController.Permit permit = admission.acquire(REVALIDATE_CLIENT, info.size());
+        try {
+            return analyzeStored(name, windowed, fromBar, toBar, passes, new ServerTiming());
+        } finally {
+            permit.close();
+        }
+    }
+
+    /**
+     * Loads and analyzes a stored file, or only bars {@code fromBar..toBar}
+     * when {@code windowed}. Returns null if the file does not exist.
+     */
+    private MidiDifficultyAnalyzer.AnalysisResult analyzeStored(String name, boolean windowed, int fromBar, int toBar,
+                                                                List<String> passes, ServerTiming timing) {
+        if (windowed) return analyzeBars(name, fromBar, toBar, passes, timing);
+        long t = System.nanoTime();
+        byte[] data = dbOps.load(name);
+        timing.since("db", t);
+        return data == null ? null : analyzer.analyzeBytes(data, passes);
+    }
+
+    /** The /files listing page. */
+    private static String fileListPage(List<String> files) {
+        StringBuilder links = new StringBuilder();
+
+        for (String f : files) {
+            links.append("<li>")
+                    .append("<a href=\"/analyze/").append(f).append("\">Raw JSON</a> | ")
+                    .append("<a href=\"/analyze-html/").append(f).append("\">HTML View</a> — ")
+                    .append(f)
+                    .append("</li>");
+        }
+
+        String html = """
+                <html>
+                <head>
+                    <title>MIDI Files</title>
+                    <style>
+                        body { background:#111; color:#eee; font-family:Arial; padding:30px; }
+                        h1 { color:#88b4ff; }
+                        ul { list-style:none; padding-left:0; }
+                        li { margin:8px 0; font-size:18px; }
+                        a { color:#66aaff; text-decoration:none; }
+                        a:hover { text-decoration:underline; }
+                        .box { background:#1a1a1a; padding:20px; border-radius:8px; border:1px solid #333; }
+                    </style>
+                </head>
+                <body>
+
+                    <h1>Stored MIDI Files</h1>
+
+                    <div class="box">
+                        <ul>
+                            %s
+                        </ul>
+                    </div>
+
+                    <br>
+                    <a href="/">← Back to Home</a>
+
+                </body>
+                </html>
+                """;
+
+        return String.format(html, links.toString());
+    }
+
+    /** The /analyze-html page for a stored file's analysis. */
+    private static String analysisPage(String name, MidiDifficultyAnalyzer.AnalysisResult result) {
+        StringBuilder timeline = new StringBuilder();
+        for (int i = 0; i < result.chordTimeline.size(); i++) {
+            timeline.append("<li>").append(result.chordTimeline.label(i)).append("</li>");
+        }
+
+        String html = """
+                <html>
+                <head>
+                    <title>Analysis for %s</title>
+                    <style>
+                        body { font-family:Arial; background:#111; color:#eee; padding:30px; }
+                        h1 { color:#88b4ff; }
+                        .box { background:#1a1a1a; padding:20px; border-radius:8px; border:1px solid #333; margin-bottom:25px; }
+                        table { width:100%%; border-collapse:collapse; }
+                        td, th { border:1px solid #333; padding:10px; }
+                        th { background:#222; }
+                        ul { line-height:1.7; }
+                        a { color:#66aaff; }
+                    </style>
+                </head>
+
+                <body>
+
+                    <h1>Analysis for %s</h1>
+
+                    <div class="box">
+                        <h2>Summary</h2>
+                        <table>
+                            <tr><th>Key</th><td>%s</td></tr>
+                            <tr><th>Max Polyphony</th><td>%d</td></tr>
+                            <tr><th>Note Count</th><td>%d</td></tr>
+                            <tr><th>Chord Difficulty</th><td>%d</td></tr>
+                            <tr><th>Rhythm Difficulty</th><td>%d</td></tr>
+                            <tr><th>Total Difficulty</th><td>%d</td></tr>
+                        </table>
+                    </div>
+
+                    <div class="box">
+                        <h2>Chord Timeline</h2>
+                        <ul>%s</ul>
+                    </div>
+
+                    <a href="/files">← Back to Files</a>
+
+                </body>
+                </html>
+                """;
+
+        return String.format(
+                html,
+                name,    // title
+                name,    // heading
+                result.key == null ? "—" : result.key,
+                result.maxPolyphony,
+                result.noteCount,
+                result.chordDifficulty,
+                result.rhythmDifficulty,
+                result.totalDifficulty,
+                timeline.toString()
+        );
+    }
+
+    /**
+     * Analyzes a bar range using the file's stored {@link BarIndex}, fetching
+     * only the indexed byte ranges. Files stored without a (current) index
+     * are loaded once in full to build and persist it. Returns null if the
+     * file does not exist.
+     */
+    private MidiDifficultyAnalyzer.AnalysisResult analyzeBars(String name, int fromBar, int toBar,
+                                                              List<String> passes, ServerTiming timing) {
+        long t = System.nanoTime();
+        byte[] stored = dbOps.loadBarIndex(name);
+        t = timing.since("db", t);
+        if (stored == null) return null;
+
+        BarIndex index = BarIndex.fromBytes(stored);
+        byte[] data = null;
+        if (index == null) {
+            data = dbOps.load(name);
+            t = timing.since("db", t);
+            if (data == null) return null;
+            try {
+                index = BarIndex.build(data);
+            } catch (RuntimeException e) {
+                // not readable by the SMF reader; fall back to analyzing the whole file
+                log.warn("Cannot index file={}: {}", name, e.getMessage());
+                return analyzer.analyzeBytes(data, passes);
+            }
+            dbOps.saveBarIndex(name, index.toBytes());
+            t = timing.since("index", t);
+        }
+
+        int tracks = index.tracks();
+        int[] start = new int[tracks];
+        int[] end = new int[tracks];
+        for (int i = 0; i < tracks; i++) {
+            start[i] = index.windowStart(i, fromBar);
+            end[i] = index.windowEnd(i, toBar);
+        }
+
+        byte[][] ranges;
+        if (data != null) {
+            ranges = new byte[tracks][];
+            for (int i = 0; i < tracks; i++) ranges[i] = Arrays.copyOfRange(data, start[i], end[i]);
+        } else {
+            ranges = dbOps.loadRanges(name, start, end);
+            timing.since("db", t);
+            if (ranges == null) return null;
+        }
+        return analyzer.analyzeWindow(index, ranges, fromBar, toBar, passes);
+    }
+
+    /**
+     * Parses {@code ?passes=chords,rhythm}; absent selects every registered
+     * pass. Answers 400 and returns null for an unknown pass name.
+     */
+    static List<String> passesParam(Context ctx) {
+        try {
+            return AnalysisPasses.parse(ctx.queryParam("passes"));
+        } catch (IllegalArgumentException e) {
+            ctx.status(400).json(Map.of("error", e.getMessage()));
+            return null;
+        }
+    }
+
+    /** Sets the Server-Timing header and logs the breakdown if the request was slow. */
+    private void finishTiming(Context ctx, ServerTiming timing) {
+        ctx.header("Server-Timing", timing.header());
+        if (timing.totalNanos() >= slowRequestNanos) {
+            log.warn("Slow request method={} path={} phasesMs={}", ctx.method(), ctx.path(), timing.toMap());
+        }
+    }
+
+    /**
+     * The database is unavailable: answers with the last good response for
+     * {@code key}, marked stale, and revalidates it in the background once
+     * the database is back; 503 with Retry-After if nothing is cached.
+     */
+    private void serveStale(Context ctx, DbUnavailableException e, String key, Callable<StaleCache.Entry> reload) {
+        if (stale.serve(ctx, key, reload)) return;
+        ctx.header("Retry-After", String.valueOf(e.retryAfterSeconds()));
+        ctx.status(503).json(Map.of("error", e.getMessage()));
+    }
+
+    private static final String REQUEST_START = "requestStartNanos";
+
+    /**
+     * Route template for metric labels ("GET /analyze/{filename}"), so label
+     * cardinality is bounded by the route table rather than by file names.
+     */
+    private static String routeLabel(Context ctx) {
+        String path;
+        try {
+            path = ctx.endpointHandlerPath();
+        } catch (RuntimeException e) {
+            path = "";
+        }
+        if (!path.startsWith("/")) path = "unmatched"; // 404/405 report a message, not a path
+        return ctx.method().name() + " " + path;
+    }
+
+    /** Stops the server if it was started (used by the load-test harness). */
+    public void stop() {
+        if (app != null) {
+            app.stop();
+            app = null;
+        }
+        if (uploads != null) {
+            uploads.stop();
+            uploads = null;
+        }
+        if (live != null) {
+            live.stop();
+            live = null;
+        }
+        stale.stop();
     }
 }
@@ -1,9 +1,7 @@
 package com.schoolproject;
 
-import java.sql.Connection;
-import java.sql.SQLException;
-
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
@@ -21,23 +19,10 @@ import javafx.stage.Stage;
 
 public class App extends Application {
 
-    // DB connector + operations shared for the whole app
-    private MidiDBConnector connector;
-    private MidiDBOperations dbOps;
-
     @Override
     public void start(Stage stage) {
-        // Create connector once
-        connector = new MidiDBConnector();
-
-        // Try to create DB ops; if it fails (DB offline / bad creds),
-        // keep dbOps = null and let the UI still start.
-        try {
-            dbOps = new MidiDBOperations(connector);
-        } catch (RuntimeException ex) {
-            System.err.println("WARNING: DB initialization failed: " + ex.getMessage());
-            dbOps = null; // app can still run; DB features will show errors when used
-        }
+        // DB init and soundbank loading run in the background; nothing here blocks the first frame
+        Startup startup = Startup.begin();
 
         // === Main Menu Layout ===
         VBox menuLayout = new VBox(20);
@@ -61,44 +46,55 @@ public class App extends Application {
         startBtn.setStyle(btnStyle);
         quitBtn.setStyle(btnStyle);
 
-        // DB Status Label
-        Label dbStatus = new Label("Checking database status...");
+        // Status labels, updated when the background startup tasks finish
+        Label dbStatus = new Label("Database: connecting...");
         dbStatus.setStyle("-fx-text-fill: #cccccc; -fx-font-size: 12px;");
+        Label audioStatus = new Label("Audio: loading sounds...");
+        audioStatus.setStyle("-fx-text-fill: #cccccc; -fx-font-size: 12px;");
 
-        // Run a lightweight connectivity check
-        updateDbStatus(dbStatus);
+        startup.db.whenComplete((ops, ex) -> Platform.runLater(() -> {
+            if (ex == null) {
+                setStatus(dbStatus, "Database: Online", true);
+            } else {
+                // app can still run; DB features will show errors when used
+                setStatus(dbStatus, "Database: Offline", false);
+            }
+        }));
+        startup.audio.whenComplete((engine, ex) -> Platform.runLater(() -> {
+            if (ex == null) {
+                setStatus(audioStatus, "Audio: Ready", true);
+            } else {
+                setStatus(audioStatus, "Audio: Unavailable", false);
+            }
+        }));
 
-        // Start: create a controller wired to the (possibly null) dbOps
+        // Start: the controller picks up the database and audio engine as they become ready
         startBtn.setOnAction(e -> {
-            KeyController controller = new KeyController(dbOps);
+            KeyController controller = new KeyController(startup.db, startup.audio);
             new KeyboardUI(stage, controller).show();
         });
 
         quitBtn.setOnAction(e -> stage.close());
 
-        menuLayout.getChildren().addAll(startBtn, quitBtn, dbStatus);
+        menuLayout.getChildren().addAll(startBtn, quitBtn, dbStatus, audioStatus);
 
         // === Scene Setup ===
         Scene scene = new Scene(menuLayout, 800, 400);
         stage.setScene(scene);
         stage.setTitle("🎼 MIDI Keyboard - Main Menu");
+        startup.watchFirstFrame(scene);
         stage.show();
     }
 
-    /** Try a short-lived DB connection and update the label. */
-    private void updateDbStatus(Label statusLabel) {
-        try (Connection conn = connector.connect()) {
-            if (conn != null && !conn.isClosed()) {
-                statusLabel.setText("Database: Online");
-                statusLabel.setStyle("-fx-text-fill: #55dd55; -fx-font-size: 12px;");
-            } else {
-                statusLabel.setText("Database: Offline");
-                statusLabel.setStyle("-fx-text-fill: #ff6666; -fx-font-size: 12px;");
-            }
-        } catch (SQLException ex) {
-            statusLabel.setText("Database: Offline");
-            statusLabel.setStyle("-fx-text-fill: #ff6666; -fx-font-size: 12px;");
-        }
+    @Override
+    public void stop() {
+        InputLatency.get().dumpConfigured(null);
+        AudioEngine.get().shutdown();
+    }
+
+    private static void setStatus(Label statusLabel, String text, boolean ok) {
+        statusLabel.setText(text);
+        statusLabel.setStyle("-fx-text-fill: " + (ok ? "#55dd55" : "#ff6666") + "; -fx-font-size: 12px;");
     }
 
     public static void main(String[] args) {
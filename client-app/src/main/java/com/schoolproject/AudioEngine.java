@@ -0,0 +1,211 @@
+package com.schoolproject;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.prefs.BackingStoreException;
+import java.util.prefs.Preferences;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiChannel;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.MidiUnavailableException;
+import javax.sound.midi.Soundbank;
+import javax.sound.midi.Synthesizer;
+
+/**
+ * The one synthesizer of the process, shared by every keyboard view.
+ *
+ * {@link #start()} opens it once in the background and preloads the whole
+ * soundbank, so views created later only {@link #allocate} a channel and
+ * {@link #release} it when they go away. {@link #shutdown()} closes it on exit.
+ *
+ * Tuning, read when the synthesizer is opened:
+ *   -Dtheorybench.audio.latency-ms=N      output line buffer (the synthesizer's default is ~120 ms)
+ *   -Dtheorybench.audio.buffer-frames=N   render block size in frames at 44.1 kHz
+ *   -Dtheorybench.audio.polyphony=N       max simultaneous voices
+ *   -Dtheorybench.audio.soundbank=file    .sf2/.dls to load instead of the default bank
+ */
+final class AudioEngine {
+
+    private static final AudioEngine INSTANCE = new AudioEngine();
+
+    // the built-in (Gervill) synthesizer reads its open() settings from this node
+    private static final String SYNTH_PREFS = "/com/sun/media/sound/softsynthesizer";
+    private static final float SAMPLE_RATE = 44100f;
+    private static final int DRUM_CHANNEL = 9;
+
+    private CompletableFuture<AudioEngine> opening;
+    private Synthesizer synth;
+    private MidiChannel[] channels;
+    private int[] users;
+
+    private AudioEngine() {
+    }
+
+    static AudioEngine get() {
+        return INSTANCE;
+    }
+
+    /** Opens the synthesizer in the background on the first call; later calls return the same future. */
+    synchronized CompletableFuture<AudioEngine> start() {
+        if (opening == null) {
+            opening = Startup.background("audio-engine", this::open);
+        }
+        return opening;
+    }
+
+    private AudioEngine open() {
+        long t0 = System.nanoTime();
+        Synthesizer s;
+        Soundbank bank;
+        try {
+            s = MidiSystem.getSynthesizer();
+            openTuned(s);
+            bank = preload(s);
+        } catch (MidiUnavailableException e) {
+            throw new RuntimeException("Synthesizer unavailable: " + e.getMessage(), e);
+        }
+
+        MidiChannel[] chs = s.getChannels();
+        for (MidiChannel ch : chs) {
+            if (ch != null) ch.programChange(0); // Acoustic Grand Piano
+        }
+        synchronized (this) {
+            if (opening == null) {
+                // shut down while we were opening
+                s.close();
+                throw new IllegalStateException("Audio engine was shut down");
+            }
+            synth = s;
+            channels = chs;
+            users = new int[chs.length];
+        }
+        System.out.printf("🔊 Audio engine ready in %d ms: latency %d ms, %d voices, soundbank %s%n",
+                (System.nanoTime() - t0) / 1_000_000, s.getLatency() / 1000, s.getMaxPolyphony(),
+                bank == null ? "none" : bank.getName());
+        return this;
+    }
+
+    /** Opens {@code s} with the configured settings applied for the duration of the call. */
+    private static void openTuned(Synthesizer s) throws MidiUnavailableException {
+        Map<String, String> tuning = new LinkedHashMap<>();
+        Long latencyMs = Long.getLong("theorybench.audio.latency-ms");
+        if (latencyMs != null) tuning.put("latency", String.valueOf(latencyMs * 1000)); // microseconds
+        Integer frames = Integer.getInteger("theorybench.audio.buffer-frames");
+        if (frames != null && frames > 0) tuning.put("control rate", String.valueOf(SAMPLE_RATE / frames));
+        Integer polyphony = Integer.getInteger("theorybench.audio.polyphony");
+        if (polyphony != null) tuning.put("max polyphony", String.valueOf(polyphony));
+
+        if (tuning.isEmpty()) {
+            s.open();
+            return;
+        }
+
+        // there is no public open(settings), so pass them the way the synthesizer
+        // looks for stored settings, and put back whatever the user had there
+        Preferences root = Preferences.userRoot();
+        Preferences prefs;
+        boolean existed;
+        Map<String, String> previous = new LinkedHashMap<>();
+        try {
+            existed = root.nodeExists(SYNTH_PREFS);
+            prefs = root.node(SYNTH_PREFS);
+            for (Map.Entry<String, String> e : tuning.entrySet()) {
+                previous.put(e.getKey(), prefs.get(e.getKey(), null));
+                prefs.put(e.getKey(), e.getValue());
+            }
+        } catch (BackingStoreException | SecurityException e) {
+            System.err.println("WARNING: audio settings " + tuning + " not applied: " + e);
+            s.open();
+            return;
+        }
+        try {
+            s.open();
+        } finally {
+            try {
+                if (!existed) {
+                    prefs.removeNode();
+                } else {
+                    for (Map.Entry<String, String> e : previous.entrySet()) {
+                        if (e.getValue() == null) prefs.remove(e.getKey());
+                        else prefs.put(e.getKey(), e.getValue());
+                    }
+                }
+            } catch (BackingStoreException | IllegalStateException e) {
+                System.err.println("WARNING: could not restore synthesizer preferences: " + e);
+            }
+        }
+    }
+
+    /** Loads every instrument of the configured (or default) soundbank up front, so no note waits on it. */
+    private static Soundbank preload(Synthesizer s) {
+        Soundbank bank = s.getDefaultSoundbank();
+        String file = System.getProperty("theorybench.audio.soundbank");
+        if (file != null) {
+            try {
+                Soundbank custom = MidiSystem.getSoundbank(new File(file));
+                if (s.isSoundbankSupported(custom)) {
+                    if (bank != null) s.unloadAllInstruments(bank);
+                    bank = custom;
+                } else {
+                    System.err.println("WARNING: soundbank " + file + " is not supported by " + s.getDeviceInfo().getName());
+                }
+            } catch (InvalidMidiDataException | IOException e) {
+                System.err.println("WARNING: could not load soundbank " + file + ": " + e.getMessage());
+            }
+        }
+        if (bank != null && !s.loadAllInstruments(bank)) {
+            System.err.println("WARNING: not all instruments of " + bank.getName() + " could be loaded");
+        }
+        return bank;
+    }
+
+    // ---------------- Channels ----------------
+
+    /**
+     * A channel for one view, set to piano. Picks the least used melodic
+     * channel, so views only share a channel once all fifteen are taken.
+     */
+    synchronized MidiChannel allocate() {
+        if (channels == null) throw new IllegalStateException("Audio engine is not running");
+        int best = -1;
+        for (int i = 0; i < channels.length; i++) {
+            if (i == DRUM_CHANNEL || channels[i] == null) continue;
+            if (best < 0 || users[i] < users[best]) best = i;
+        }
+        if (best < 0) throw new IllegalStateException("Synthesizer has no melodic channels");
+        MidiChannel ch = channels[best];
+        if (users[best]++ == 0) {
+            ch.resetAllControllers();
+            ch.programChange(0); // Acoustic Grand Piano
+        }
+        return ch;
+    }
+
+    /** Gives back a channel from {@link #allocate}, silencing it. */
+    synchronized void release(MidiChannel ch) {
+        if (channels == null) return;
+        for (int i = 0; i < channels.length; i++) {
+            if (channels[i] == ch && users[i] > 0) {
+                if (--users[i] == 0) ch.allNotesOff();
+                return;
+            }
+        }
+    }
+
+    // ---------------- Lifecycle ----------------
+
+    /** Closes the synthesizer; a later {@link #start()} opens a fresh one. */
+    synchronized void shutdown() {
+        opening = null;
+        if (synth != null) {
+            synth.close();
+            synth = null;
+            channels = null;
+            users = null;
+        }
+    }
+}
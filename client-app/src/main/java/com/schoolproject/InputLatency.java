@@ -0,0 +1,196 @@
+package com.schoolproject;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javafx.scene.Scene;
+
+/**
+ * Key-press-to-sound and key-press-to-pixel latency, per input source.
+ *
+ * Each input is stamped where it enters the app (the MIDI receiver callback,
+ * or the FX key/mouse handler). "sound" ends when {@code channel.noteOn}
+ * has been issued; "frame" ends at the first pulse after the key recolor,
+ * once layout is done and the frame is handed to the renderer (the latest
+ * point JavaFX exposes). Samples go into fixed-bucket histograms kept for
+ * the whole process, so runs on different machines, pipelines
+ * ({@code -Dprism.order}) or builds compare bucket for bucket.
+ *
+ *   -Dtheorybench.latency-overlay=true   show the overlay from the start (F3 toggles it)
+ *   -Dtheorybench.latency-log=file       append the histograms to a CSV file on exit (F4 dumps now)
+ *
+ * Only used from the FX thread, apart from {@link #now()}.
+ */
+final class InputLatency {
+
+    private static final InputLatency INSTANCE = new InputLatency();
+
+    /** Bucket upper bounds in microseconds; the last bucket is everything above. */
+    private static final long[] BOUNDS_US = {
+            250, 500, 1_000, 2_000, 4_000, 8_000, 12_000, 16_000, 20_000, 25_000,
+            33_000, 50_000, 75_000, 100_000, 150_000, 250_000, 500_000
+    };
+
+    static final String SOUND = "sound";
+    static final String FRAME = "frame";
+
+    // ---------------- One histogram ----------------
+
+    static final class Histogram {
+        private final long[] counts = new long[BOUNDS_US.length + 1];
+        private long count;
+        private long maxUs;
+
+        void record(long us) {
+            int i = 0;
+            while (i < BOUNDS_US.length && us > BOUNDS_US[i]) i++;
+            counts[i]++;
+            count++;
+            maxUs = Math.max(maxUs, us);
+        }
+
+        long count() {
+            return count;
+        }
+
+        /** Upper bound of the bucket holding quantile {@code q}, in ms; the max for the overflow bucket. */
+        double percentileMs(double q) {
+            if (count == 0) return 0;
+            long rank = (long) Math.ceil(q * count);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    long us = i < BOUNDS_US.length ? Math.min(BOUNDS_US[i], maxUs) : maxUs;
+                    return us / 1000.0;
+                }
+            }
+            return maxUs / 1000.0;
+        }
+
+        double maxMs() {
+            return maxUs / 1000.0;
+        }
+    }
+
+    private record Pending(String source, long startNanos) {
+    }
+
+    private final Map<String, Histogram> histograms = new LinkedHashMap<>(); // "source/stage"
+    private final List<Pending> awaitingFrame = new ArrayList<>();
+    private Scene scene;
+    private final Runnable onPulse = this::pulse;
+
+    private InputLatency() {
+    }
+
+    static InputLatency get() {
+        return INSTANCE;
+    }
+
+    /** Timestamp for an input, taken at its source. */
+    static long now() {
+        return System.nanoTime();
+    }
+
+    /** Measures frames on {@code scene} from now on (the keyboard view's scene). */
+    void attach(Scene scene) {
+        if (this.scene != null) this.scene.removePostLayoutPulseListener(onPulse);
+        awaitingFrame.clear();
+        this.scene = scene;
+        scene.addPostLayoutPulseListener(onPulse);
+    }
+
+    void detach(Scene scene) {
+        if (this.scene != scene) return;
+        scene.removePostLayoutPulseListener(onPulse);
+        awaitingFrame.clear();
+        this.scene = null;
+    }
+
+    /** The note-on for an input stamped at {@code startNanos} has just been issued to the synthesizer. */
+    void soundIssued(String source, long startNanos) {
+        record(source, SOUND, startNanos);
+    }
+
+    /** The key for an input stamped at {@code startNanos} has been recolored; timed at the next pulse. */
+    void keyRecolored(String source, long startNanos) {
+        if (scene != null) awaitingFrame.add(new Pending(source, startNanos));
+    }
+
+    private void pulse() {
+        if (awaitingFrame.isEmpty()) return;
+        long now = now();
+        for (Pending p : awaitingFrame) histogram(p.source(), FRAME).record((now - p.startNanos()) / 1000);
+        awaitingFrame.clear();
+    }
+
+    private void record(String source, String stage, long startNanos) {
+        histogram(source, stage).record((now() - startNanos) / 1000);
+    }
+
+    private Histogram histogram(String source, String stage) {
+        return histograms.computeIfAbsent(source + "/" + stage, k -> new Histogram());
+    }
+
+    // ---------------- Reporting ----------------
+
+    /** One line per source and stage, for the overlay. */
+    String summary() {
+        if (histograms.isEmpty()) return "Latency: play some notes (F3 hides, F4 dumps)";
+        StringBuilder sb = new StringBuilder("Latency ms      p50     p95     p99     max       n");
+        for (Map.Entry<String, Histogram> e : histograms.entrySet()) {
+            Histogram h = e.getValue();
+            sb.append(String.format("%n%-14s %6.1f  %6.1f  %6.1f  %6.1f  %6d", e.getKey(),
+                    h.percentileMs(0.50), h.percentileMs(0.95), h.percentileMs(0.99), h.maxMs(), h.count()));
+        }
+        return sb.toString();
+    }
+
+    /** Appends every histogram to {@code file} as CSV, writing the header if the file is new. */
+    void dump(Path file) throws IOException {
+        if (histograms.isEmpty()) return;
+        StringBuilder sb = new StringBuilder();
+        if (!Files.exists(file)) {
+            sb.append("time,os,javafx,pipeline,source,stage,count,p50Ms,p95Ms,p99Ms,maxMs");
+            for (long b : BOUNDS_US) sb.append(",le").append(b).append("us");
+            sb.append(",over\n");
+        }
+        String time = Instant.now().toString();
+        String os = System.getProperty("os.name") + " " + System.getProperty("os.arch");
+        String javafx = System.getProperty("javafx.runtime.version", "?");
+        String pipeline = System.getProperty("prism.order", "default");
+        for (Map.Entry<String, Histogram> e : histograms.entrySet()) {
+            String[] key = e.getKey().split("/");
+            Histogram h = e.getValue();
+            sb.append(String.join(",", time, os, javafx, pipeline, key[0], key[1], String.valueOf(h.count()),
+                    String.valueOf(h.percentileMs(0.50)), String.valueOf(h.percentileMs(0.95)),
+                    String.valueOf(h.percentileMs(0.99)), String.valueOf(h.maxMs())));
+            for (long c : h.counts) sb.append(',').append(c);
+            sb.append('\n');
+        }
+        Files.writeString(file, sb, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /** Dumps to {@code -Dtheorybench.latency-log}, or {@code fallback} if that is not set; null to skip. */
+    Path dumpConfigured(Path fallback) {
+        String log = System.getProperty("theorybench.latency-log");
+        Path file = log != null ? Path.of(log) : fallback;
+        if (file == null || histograms.isEmpty()) return null;
+        try {
+            dump(file);
+            return file;
+        } catch (IOException e) {
+            System.err.println("WARNING: could not write latency log " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+}
@@ -6,19 +6,19 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 import javax.sound.midi.MidiChannel;
 import javax.sound.midi.MidiEvent;
 import javax.sound.midi.MidiSystem;
 import javax.sound.midi.Sequence;
 import javax.sound.midi.ShortMessage;
-import javax.sound.midi.Synthesizer;
 import javax.sound.midi.Track;
 
 public class KeyController {
 
-    // ---- DB injected from App ----
-    private final MidiDBOperations dbOps;
+    // ---- DB injected from App (completes when the background connect finishes) ----
+    private final CompletableFuture<MidiDBOperations> dbOps;
 
     // ---- MIDI / State ----
     private static final int BASE_MIDI_NOTE = 60; // Middle C
@@ -26,8 +26,10 @@ public class KeyController {
     private boolean sustainEnabled = false;
     private final Set<Integer> sustainedNotes = new HashSet<>();
 
-    private Synthesizer synth;
-    private MidiChannel channel;
+    // channel on the shared AudioEngine, set once it is running; null again after close()
+    private final CompletableFuture<AudioEngine> audio;
+    private volatile MidiChannel channel;
+    private boolean closed;
 
     // Recording fields
     private boolean recording = false;
@@ -67,22 +69,84 @@ public class KeyController {
         ROOT_PRIORITIES.put("Bm", new int[]{11, 4, 6, 1, 8, 3, 0, 2, 5, 7, 9, 10});
     }
 
-    // App will call this: new KeyController(dbOps)
-    public KeyController(MidiDBOperations dbOps) {
+    // App will call this: new KeyController(startup.db, startup.audio)
+    public KeyController(CompletableFuture<MidiDBOperations> dbOps, CompletableFuture<AudioEngine> audio) {
         this.dbOps = dbOps; // do NOT create/connect DB here
-        try {
-            synth = MidiSystem.getSynthesizer();
-            synth.open();
-            channel = synth.getChannels()[0]; // channel 0
-            channel.programChange(0); // Acoustic Grand Piano
-        } catch (Exception e) {
+        this.audio = audio;
+        // immediate once the engine is running; until then notes are recorded, just not heard
+        audio.thenAccept(engine -> {
+            MidiChannel ch = engine.allocate();
+            synchronized (this) {
+                if (!closed) {
+                    channel = ch;
+                    return;
+                }
+            }
+            engine.release(ch);
+        }).exceptionally(e -> {
             e.printStackTrace();
-        }
+            return null;
+        });
+    }
+
+    public KeyController(MidiDBOperations dbOps) {
+        this(CompletableFuture.completedFuture(dbOps), AudioEngine.get().start());
     }
 
     // Optional: keep backward compatibility if anything still calls new KeyController()
     public KeyController() {
-        this(null);
+        this((MidiDBOperations) null);
+    }
+
+    /** Gives the channel back to the audio engine; the controller plays nothing afterwards. */
+    public void close() {
+        MidiChannel ch;
+        synchronized (this) {
+            closed = true;
+            ch = channel;
+            channel = null;
+        }
+        if (ch != null) audio.join().release(ch);
+    }
+
+    /** Whether notes are heard yet (the audio engine has given this controller a channel). */
+    public boolean isAudioReady() {
+        return channel != null;
+    }
+
+    /** The database, or null while it is still connecting or if it failed. */
+    private MidiDBOperations db() {
+        return dbOps.isDone() && !dbOps.isCompletedExceptionally() ? dbOps.join() : null;
+    }
+
+    private MidiDBOperations requireDb() {
+        MidiDBOperations db = db();
+        if (db != null)
+            return db;
+        throw new RuntimeException(dbOps.isDone() ? "Database not connected." : "Database still connecting, try again shortly.");
+    }
+
+    /**
+     * Uploads a saved recording: right away if the database is connected,
+     * once it connects if it is still connecting. The future is true when
+     * uploaded, false if there is no database, and failed if the upload
+     * (or the connection it waited for) failed.
+     */
+    private CompletableFuture<Boolean> upload(File out) {
+        MidiDBOperations db = db();
+        if (db != null) {
+            db.save(out.getName(), out.toPath()); // stores raw bytes in DB
+            System.out.println("✅ Uploaded to DB as: " + out.getName());
+            return CompletableFuture.completedFuture(true);
+        }
+        if (dbOps.isDone())
+            return CompletableFuture.completedFuture(false);
+        System.out.println("⏳ Database still connecting; " + out.getName() + " will be uploaded once it is.");
+        return dbOps.thenApply(connected -> {
+            connected.save(out.getName(), out.toPath());
+            System.out.println("✅ Uploaded to DB as: " + out.getName());
+            return true;
+        });
     }
 
     // --- Key selection for chord detection ---
@@ -119,26 +183,31 @@ public class KeyController {
             MidiSystem.write(sequence, 1, out);
             System.out.println("💾 Saved MIDI file: " + out.getAbsolutePath());
 
-            if (dbOps != null) {
-                dbOps.save(out.getName(), out.toPath());
-                System.out.println("✅ Uploaded to DB as: " + out.getName());
-            }
+            upload(out).exceptionally(e -> {
+                System.err.println("Upload of " + out.getName() + " failed: " + e.getMessage());
+                return false;
+            });
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
-    // DB-aware save with name (used by the UI dialog)
-    public void saveRecordingWithName(String name) {
+    /**
+     * DB-aware save with name (used by the UI dialog). The file is written
+     * locally before this returns; see {@link #upload} for the returned future.
+     * Returns null if nothing was being recorded.
+     */
+    public CompletableFuture<Boolean> saveRecordingWithName(String name) {
         if (!recording)
-            return; // nothing to save
+            return null; // nothing to save
         if (name == null || name.isBlank())
             throw new RuntimeException("Filename cannot be empty.");
 
         String filename = name.endsWith(".mid") ? name : name + ".mid";
         try {
             // Optional UX check (DB also enforces UNIQUE)
-            if (dbOps != null && dbOps.exists(filename)) {
+            MidiDBOperations db = db();
+            if (db != null && db.exists(filename)) {
                 throw new RuntimeException("A file named '" + filename + "' already exists. Choose another name.");
             }
 
@@ -147,10 +216,7 @@ public class KeyController {
             MidiSystem.write(sequence, 1, out);
             System.out.println("💾 Saved MIDI file: " + out.getAbsolutePath());
 
-            if (dbOps != null) {
-                dbOps.save(out.getName(), out.toPath()); // stores raw bytes in DB
-                System.out.println("✅ Uploaded to DB as: " + out.getName());
-            }
+            return upload(out);
         } catch (Exception e) {
             String msg = e.getMessage() == null ? e.toString() : e.getMessage();
             throw new RuntimeException(msg, e);
@@ -159,42 +225,32 @@ public class KeyController {
 
     // ---- DB helpers exposed to UI ----
     public java.util.List<String> listRecentFiles(int limit) {
-        if (dbOps == null)
-            throw new RuntimeException("Database not connected.");
-        return dbOps.listAll().stream().limit(Math.max(1, limit)).toList();
+        return requireDb().listAll().stream().limit(Math.max(1, limit)).toList();
     }
 
     public java.util.List<String> searchFiles(String query, int limit) {
-        if (dbOps == null)
-            throw new RuntimeException("Database not connected.");
-        return dbOps.search(query, limit);
+        return requireDb().search(query, limit);
     }
 
     public void downloadFromDB(String filename) {
-        if (dbOps == null)
-            throw new RuntimeException("Database not connected.");
         Path dest = Path.of(filename.endsWith(".mid") ? filename : filename + ".mid");
-        boolean ok = dbOps.download(filename, dest);
+        boolean ok = requireDb().download(filename, dest);
         if (!ok)
             throw new RuntimeException("File not found in DB: " + filename);
     }
 
     public void downloadFromDBTo(String filename, Path destination) {
-        if (dbOps == null)
-            throw new RuntimeException("Database not connected.");
-        boolean ok = dbOps.download(filename, destination);
+        boolean ok = requireDb().download(filename, destination);
         if (!ok)
             throw new RuntimeException("File not found in DB: " + filename);
     }
 
     public boolean deleteFromDB(String filename) {
-        if (dbOps == null)
-            throw new RuntimeException("Database not connected.");
-        return dbOps.delete(filename);
+        return requireDb().delete(filename);
     }
 
     public boolean isDatabaseAvailable() {
-        return dbOps != null;
+        return db() != null;
     }
 
     // ---------------- Note / Playback ----------------
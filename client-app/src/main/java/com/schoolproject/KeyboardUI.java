@@ -1,8 +1,10 @@
 package com.schoolproject;
 
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 import javax.sound.midi.MidiDevice;
 import javax.sound.midi.MidiMessage;
@@ -12,6 +14,9 @@ import javax.sound.midi.Receiver;
 import javax.sound.midi.ShortMessage;
 import javax.sound.midi.Transmitter;
 
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
 import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
@@ -27,6 +32,7 @@ import javafx.scene.control.MenuItem;
 import javafx.scene.control.ScrollPane;
 import javafx.scene.control.TextInputDialog;
 import javafx.scene.control.ToggleButton;
+import javafx.scene.input.KeyCode;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.Background;
 import javafx.scene.layout.BackgroundFill;
@@ -44,6 +50,7 @@ import javafx.scene.paint.Stop;
 import javafx.scene.shape.Rectangle;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
+import javafx.util.Duration;
 
 public class KeyboardUI {
 
@@ -55,6 +62,17 @@ public class KeyboardUI {
     private final List<Rectangle> whiteKeys = new ArrayList<>();
     private final List<Rectangle> blackKeys = new ArrayList<>();
 
+    // external MIDI inputs feeding this view, closed when it is left
+    private final List<Transmitter> transmitters = new ArrayList<>();
+    private volatile boolean disposed;
+
+    // key-press-to-sound / key-press-to-pixel histograms, optional overlay (F3)
+    private final InputLatency latency = InputLatency.get();
+    private final Label latencyOverlay = new Label();
+    private final Timeline latencyRefresh = new Timeline(
+            new KeyFrame(Duration.millis(500), e -> latencyOverlay.setText(latency.summary())));
+    private Scene scene;
+
     private final HBox chordHistoryRow = new HBox(10); // scrollable log row
     private final ScrollPane chordScroll = new ScrollPane(chordHistoryRow);
 
@@ -146,7 +164,10 @@ public class KeyboardUI {
         deleteButton.setStyle(buttonStyle);
         keyButton.setStyle(buttonStyle);
 
-        backButton.setOnAction(e -> new App().start(stage));
+        backButton.setOnAction(e -> {
+            dispose();
+            new App().start(stage);
+        });
         quitButton.setOnAction(e -> stage.close());
         recordButton.setOnAction(e -> controller.startRecording());
 
@@ -163,7 +184,7 @@ public class KeyboardUI {
                     return; // user pressed cancel
 
                 try {
-                    controller.saveRecordingWithName(result.get());
+                    CompletableFuture<Boolean> upload = controller.saveRecordingWithName(result.get());
 
                     String finalName = result.get().endsWith(".mid")
                             ? result.get()
@@ -172,7 +193,13 @@ public class KeyboardUI {
                     Alert ok = new Alert(AlertType.INFORMATION);
                     ok.setHeaderText(null);
 
-                    if (controller.isDatabaseAvailable()) {
+                    if (upload == null) {
+                        ok.setContentText("Nothing recorded yet. Press Record first.");
+                    } else if (!upload.isDone()) {
+                        ok.setContentText("Saved locally as: " + finalName
+                                + "\nThe cloud database is still connecting; it will be uploaded once connected.");
+                        upload.whenComplete((uploaded, err) -> Platform.runLater(() -> reportUpload(finalName, uploaded, err)));
+                    } else if (upload.join()) {
                         ok.setContentText("Saved and uploaded to cloud as: " + finalName);
                     } else {
                         ok.setContentText(
@@ -419,8 +446,11 @@ public class KeyboardUI {
             whiteKey.setStroke(Color.BLACK);
 
             whiteKey.addEventHandler(MouseEvent.MOUSE_PRESSED, e -> {
+                long t0 = InputLatency.now();
                 whiteKey.setFill(Color.LIGHTGRAY);
+                latency.keyRecolored("mouse", t0);
                 controller.noteOnWhite(keyIndex);
+                if (controller.isAudioReady()) latency.soundIssued("mouse", t0);
                 updateChordDisplay(chordLabel);
             });
             whiteKey.addEventHandler(MouseEvent.MOUSE_RELEASED, e -> {
@@ -446,8 +476,11 @@ public class KeyboardUI {
                 blackKey.setStroke(Color.BLACK);
 
                 blackKey.addEventHandler(MouseEvent.MOUSE_PRESSED, e -> {
+                    long t0 = InputLatency.now();
                     blackKey.setFill(Color.DARKGRAY);
+                    latency.keyRecolored("mouse", t0);
                     controller.noteOnBlack(keyIndex);
+                    if (controller.isAudioReady()) latency.soundIssued("mouse", t0);
                     updateChordDisplay(chordLabel);
                 });
                 blackKey.addEventHandler(MouseEvent.MOUSE_RELEASED, e -> {
@@ -476,33 +509,60 @@ public class KeyboardUI {
 
         root.setCenter(mainLayout);
 
-        Scene scene = new Scene(root);
+        latencyOverlay.setStyle("-fx-font-family: monospace; -fx-font-size: 12px; -fx-text-fill: #aaffaa; "
+                + "-fx-background-color: rgba(0,0,0,0.6); -fx-padding: 6px;");
+        latencyOverlay.setMaxWidth(Double.MAX_VALUE);
+        latencyRefresh.setCycleCount(Animation.INDEFINITE);
+        root.setBottom(latencyOverlay);
+        showLatencyOverlay(Boolean.getBoolean("theorybench.latency-overlay"));
+
+        scene = new Scene(root);
+        latency.attach(scene);
 
         // Keyboard mapping (new QWERTY layout)
         scene.setOnKeyPressed(e -> {
+            long t0 = InputLatency.now();
+            if (e.getCode() == KeyCode.F3) {
+                showLatencyOverlay(!latencyOverlay.isVisible());
+                return;
+            }
+            if (e.getCode() == KeyCode.F4) {
+                Path file = latency.dumpConfigured(Path.of("latency.csv"));
+                if (file != null) System.out.println("📊 Latency histograms appended to " + file.toAbsolutePath());
+                return;
+            }
             int midiNote = keyCharToMidiNote(e.getCode());
             if (midiNote != -1) {
+                MidiInputEvent event = beginInputEvent("keyboard", midiNote, 90, true);
                 if (controller.getPressedNotes().add(midiNote)) {
                     controller.playNoteOn(midiNote);
+                    if (controller.isAudioReady()) latency.soundIssued("keyboard", t0);
                     updateKeyColor(midiNote, true);
+                    latency.keyRecolored("keyboard", t0);
                     updateChordDisplayFromController();
                 }
+                commitInputEvent(event);
             }
         });
 
         scene.setOnKeyReleased(e -> {
             int midiNote = keyCharToMidiNote(e.getCode());
             if (midiNote != -1) {
+                MidiInputEvent event = beginInputEvent("keyboard", midiNote, 0, false);
                 if (controller.getPressedNotes().remove(midiNote)) {
                     controller.playNoteOff(midiNote);
                     updateKeyColor(midiNote, false);
                     updateChordDisplayFromController();
                 }
+                commitInputEvent(event);
             }
         });
 
         stage.setScene(scene);
-        setupExternalMidiInput();
+        // device enumeration/open can take a while; the receiver already hops to the FX thread
+        Thread midiScan = new Thread(this::setupExternalMidiInput, "midi-input-scan");
+        midiScan.setDaemon(true);
+        midiScan.start();
         stage.setTitle("🎹 Scrollable Chord Log + Fixed Keyboard");
         stage.show();
     }
@@ -524,6 +584,7 @@ public class KeyboardUI {
                         device.open();
                         Transmitter transmitter = device.getTransmitter();
                         transmitter.setReceiver(new ExternalMidiReceiver());
+                        if (!track(transmitter)) return; // view already left
                         System.out.println("🎹 Connected to MIDI device: " + info.getName());
                         found = true;
                     } catch (MidiUnavailableException e) {
@@ -541,10 +602,54 @@ public class KeyboardUI {
         }
     }
 
+    private synchronized boolean track(Transmitter transmitter) {
+        if (disposed) {
+            transmitter.close();
+            return false;
+        }
+        transmitters.add(transmitter);
+        return true;
+    }
+
+    /** Leaving the view: stop listening to MIDI inputs and hand the audio channel back. */
+    private synchronized void dispose() {
+        disposed = true;
+        for (Transmitter t : transmitters) t.close();
+        transmitters.clear();
+        controller.close();
+        latencyRefresh.stop();
+        if (scene != null) latency.detach(scene);
+    }
+
+    /** Outcome of an upload that waited for the database to connect; on the FX thread. */
+    private void reportUpload(String fileName, Boolean uploaded, Throwable err) {
+        Alert alert = new Alert(err == null && Boolean.TRUE.equals(uploaded) ? AlertType.INFORMATION : AlertType.ERROR);
+        alert.setHeaderText(null);
+        if (err == null && Boolean.TRUE.equals(uploaded)) {
+            alert.setContentText("Uploaded to cloud as: " + fileName);
+        } else {
+            Throwable cause = err != null && err.getCause() != null ? err.getCause() : err;
+            alert.setContentText("Not uploaded to cloud: " + fileName + " (kept locally)."
+                    + (cause == null ? "" : "\n" + cause.getMessage()));
+        }
+        alert.show();
+    }
+
+    private void showLatencyOverlay(boolean show) {
+        latencyOverlay.setVisible(show);
+        latencyOverlay.setManaged(show);
+        if (show) {
+            latencyOverlay.setText(latency.summary());
+            latencyRefresh.play();
+        } else {
+            latencyRefresh.stop();
+        }
+    }
 
     private class ExternalMidiReceiver implements Receiver {
         @Override
         public void send(MidiMessage message, long timeStamp) {
+            long t0 = InputLatency.now(); // before the hop to the FX thread
             if (!(message instanceof ShortMessage sm)) return;
 
             int cmd = sm.getCommand();
@@ -553,24 +658,30 @@ public class KeyboardUI {
 
             // Note ON
             if (cmd == ShortMessage.NOTE_ON && vel > 0) {
+                MidiInputEvent event = beginInputEvent("external", note, vel, true);
                 Platform.runLater(() -> {
                     if (controller.getPressedNotes().add(note)) {
                         controller.playNoteOn(note);
+                        if (controller.isAudioReady()) latency.soundIssued("external", t0);
                         updateKeyColor(note, true);
+                        latency.keyRecolored("external", t0);
                         updateChordDisplayFromController();
                     }
+                    commitInputEvent(event);
                 });
             }
 
             // Note OFF (or velocity 0)
             else if (cmd == ShortMessage.NOTE_OFF ||
                 (cmd == ShortMessage.NOTE_ON && vel == 0)) {
+                MidiInputEvent event = beginInputEvent("external", note, vel, false);
                     Platform.runLater(() -> {
                     if (controller.getPressedNotes().remove(note)) {
                         controller.playNoteOff(note);
                         updateKeyColor(note, false);
                         updateChordDisplayFromController();
                     }
+                    commitInputEvent(event);
                 });
             }
         }
@@ -581,6 +692,22 @@ public class KeyboardUI {
 
 
 
+    // JFR: input callback -> screen update. Costs nothing unless a recording is running.
+    private static MidiInputEvent beginInputEvent(String source, int note, int velocity, boolean noteOn) {
+        MidiInputEvent event = new MidiInputEvent();
+        if (!event.isEnabled()) return event;
+        event.begin();
+        event.source = source;
+        event.note = note;
+        event.velocity = velocity;
+        event.noteOn = noteOn;
+        return event;
+    }
+
+    private static void commitInputEvent(MidiInputEvent event) {
+        if (event.shouldCommit()) event.commit();
+    }
+
     // Helper method: map KeyCode to MIDI note (new mapping)
     private int keyCharToMidiNote(javafx.scene.input.KeyCode keyCode) {
         return switch (keyCode) {
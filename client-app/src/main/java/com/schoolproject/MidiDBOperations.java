@@ -3,6 +3,8 @@ package com.schoolproject;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -39,6 +41,9 @@ public class MidiDBOperations {
                         uploaded_at TIMESTAMPTZ DEFAULT NOW()
                     );
                     CREATE INDEX IF NOT EXISTS idx_midi_uploaded_at ON midi_files (uploaded_at DESC);
+                    -- SHA-256 of data, shared with the analyzer's bulk import dedupe
+                    ALTER TABLE midi_files ADD COLUMN IF NOT EXISTS content_hash BYTEA;
+                    CREATE INDEX IF NOT EXISTS idx_midi_content_hash ON midi_files (content_hash);
                 """;
         try (Connection conn = db.connect(); Statement st = conn.createStatement()) {
             st.execute(ddl);
@@ -72,12 +77,13 @@ public class MidiDBOperations {
     public void save(String filename, Path midiPath) {
         try {
             byte[] bytes = Files.readAllBytes(midiPath);
-            String sql = "INSERT INTO midi_files (filename, data, uploaded_at) VALUES (?, ?, ?)";
+            String sql = "INSERT INTO midi_files (filename, data, uploaded_at, content_hash) VALUES (?, ?, ?, ?)";
             try (Connection conn = db.connect();
                     PreparedStatement ps = conn.prepareStatement(sql)) {
                 ps.setString(1, filename);
                 ps.setBytes(2, bytes);
                 ps.setTimestamp(3, Timestamp.from(Instant.now()));
+                ps.setBytes(4, sha256(bytes));
                 ps.executeUpdate();
                 System.out.println("✅ Saved '" + filename + "' to DB (" + bytes.length + " bytes).");
             }
@@ -92,6 +98,15 @@ public class MidiDBOperations {
         }
     }
 
+    /** Content hash as stored in {@code content_hash}. */
+    private static byte[] sha256(byte[] bytes) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(bytes);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
     /** Deletes a file by its exact (case-sensitive) name. */
     public boolean delete(String filename) {
         String sql = "DELETE FROM midi_files WHERE filename = ?";
@@ -0,0 +1,32 @@
+package com.schoolproject;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event spanning one MIDI input, from the receiver / key handler
+ * callback to the point where the keyboard and chord label are updated.
+ */
+@Name("com.schoolproject.MidiInput")
+@Label("MIDI Input")
+@Category({"TheoryBench", "Client"})
+@Description("Input callback to screen update for one note on/off")
+@StackTrace(false)
+public class MidiInputEvent extends jdk.jfr.Event {
+
+    @Label("Source")
+    @Description("external (MIDI device) or keyboard (computer keys)")
+    public String source;
+
+    @Label("Note")
+    public int note;
+
+    @Label("Velocity")
+    public int velocity;
+
+    @Label("Note On")
+    public boolean noteOn;
+}
@@ -0,0 +1,119 @@
+package com.schoolproject;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import javafx.application.Platform;
+import javafx.scene.Scene;
+
+/**
+ * Slow startup work, run in the background so the first window appears at once.
+ *
+ * Opening the database (connect + ensureTableExists) and starting the
+ * {@link AudioEngine} (which loads the soundbank) run in parallel on daemon
+ * threads; the UI listens on the futures. Started once per process, so
+ * returning to the main menu does not repeat it.
+ *
+ * Cold start is measured from process start to the first frame shown, and
+ * reported with the background task times once all three are known:
+ *   -Dtheorybench.startup-log=file   also append a CSV line to file
+ *   -Dtheorybench.exit-after-startup=true   quit after the report (for scripted runs)
+ */
+final class Startup {
+
+    private static Startup instance;
+
+    final CompletableFuture<MidiDBOperations> db;
+    final CompletableFuture<AudioEngine> audio;
+
+    private final long processStartMillis = ProcessHandle.current().info().startInstant()
+            .map(Instant::toEpochMilli).orElse(System.currentTimeMillis());
+    private final long appStartMillis = System.currentTimeMillis();
+    private volatile long firstFrameMillis;
+    private volatile long dbMillis;
+    private volatile long audioMillis;
+    private final AtomicBoolean frameSeen = new AtomicBoolean();
+    private final AtomicBoolean reported = new AtomicBoolean();
+
+    private Startup() {
+        db = background("startup-db", () -> new MidiDBOperations(new MidiDBConnector()));
+        audio = AudioEngine.get().start();
+        db.whenComplete((ops, e) -> {
+            dbMillis = System.currentTimeMillis();
+            if (e != null) System.err.println("WARNING: DB initialization failed: " + e.getCause());
+            maybeReport();
+        });
+        audio.whenComplete((engine, e) -> {
+            audioMillis = System.currentTimeMillis();
+            if (e != null) System.err.println("WARNING: Audio initialization failed: " + e.getCause());
+            maybeReport();
+        });
+    }
+
+    /** The process-wide startup, begun on the first call. */
+    static synchronized Startup begin() {
+        if (instance == null) instance = new Startup();
+        return instance;
+    }
+
+    static <T> CompletableFuture<T> background(String name, Supplier<T> task) {
+        return CompletableFuture.supplyAsync(task, r -> {
+            Thread t = new Thread(r, name);
+            t.setDaemon(true);
+            t.start();
+        });
+    }
+
+    // ---------------- Cold-start timing ----------------
+
+    /** Records the first pulse of {@code scene} after it is shown as the first interactive frame. */
+    void watchFirstFrame(Scene scene) {
+        if (frameSeen.get()) return;
+        Runnable[] listener = new Runnable[1];
+        listener[0] = () -> {
+            if (!frameSeen.compareAndSet(false, true)) return;
+            firstFrameMillis = System.currentTimeMillis();
+            // not from inside the pulse that is iterating the listeners
+            Platform.runLater(() -> scene.removePostLayoutPulseListener(listener[0]));
+            maybeReport();
+        };
+        scene.addPostLayoutPulseListener(listener[0]);
+    }
+
+    private void maybeReport() {
+        if (firstFrameMillis == 0 || !db.isDone() || !audio.isDone() || dbMillis == 0 || audioMillis == 0) return;
+        if (!reported.compareAndSet(false, true)) return;
+
+        long jvm = appStartMillis - processStartMillis;
+        long frame = firstFrameMillis - processStartMillis;
+        long dbReady = dbMillis - processStartMillis;
+        long audioReady = audioMillis - processStartMillis;
+        String dbState = db.isCompletedExceptionally() ? "offline" : "online";
+        String audioState = audio.isCompletedExceptionally() ? "unavailable" : "ready";
+        System.out.printf("⏱️ Startup: first frame %d ms (App.start at %d ms), database %s at %d ms, audio %s at %d ms%n",
+                frame, jvm, dbState, dbReady, audioState, audioReady);
+
+        String log = System.getProperty("theorybench.startup-log");
+        if (log != null) {
+            Path file = Path.of(log);
+            String line = String.join(",", Instant.now().toString(), String.valueOf(jvm), String.valueOf(frame),
+                    String.valueOf(dbReady), dbState, String.valueOf(audioReady), audioState) + "\n";
+            try {
+                if (!Files.exists(file)) {
+                    Files.writeString(file, "time,appStartMs,firstFrameMs,dbMs,db,audioMs,audio\n", StandardCharsets.UTF_8);
+                }
+                Files.writeString(file, line, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                System.err.println("WARNING: could not write startup log " + file + ": " + e.getMessage());
+            }
+        }
+        if (Boolean.getBoolean("theorybench.exit-after-startup")) Platform.exit();
+    }
+}
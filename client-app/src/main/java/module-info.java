@@ -3,6 +3,8 @@ module com.schoolproject {
     requires javafx.fxml;
     requires java.desktop;
     requires java.sql;
+    requires java.prefs;
+    requires jdk.jfr;
 
     opens com.schoolproject to javafx.fxml;
     exports com.schoolproject;